@@ -13,14 +13,44 @@ public class BeefsEnergySimulationConstants {
 	public static final String EMULATION_START_TIME = "simulation_start";
 	public static final String REPLICATOR = "replicator";
 	public static final String FREE_SPACE = "_free_space";
+	public static final String FS_TRACE_READER = "fs_trace_reader";
+	public static final String PREFETCH_THREADS = "prefetch_threads";
+	public static final String PREFETCH_QUEUE_SIZE = "prefetch_queue_size";
+	public static final String KEEP_STATE_INTERVALS = "keep_state_intervals";
+	public static final String EVENT_LOG = "event_log";
+	public static final String EVENT_LOG_FILE = "event_log_file";
+	public static final String EVENT_LOG_ASYNC = "event_log_async";
+	public static final String EVENT_LOG_CATEGORIES = "event_log_categories";
+	public static final String RANDOM_SEED = "random_seed";
+	public static final String PARALLEL_MACHINES = "parallel_machines";
+	public static final String PARALLEL_MACHINES_WINDOW = "parallel_machines_window";
+	public static final String MACHINE_ONLY = "machine_only";
+	public static final String CHECKPOINT_DIR = "checkpoint_dir";
+	public static final String CHECKPOINT_INTERVAL = "checkpoint_interval";
+	public static final String RESUME_FROM = "resume_from";
+	
+	// fs_trace_reader values
+	public static final String STREAM_FS_TRACE_READER = "stream";
+	public static final String MAPPED_FS_TRACE_READER = "mapped";
+	
+	// event_log values
+	public static final String TEXT_EVENT_LOG = "text";
+	public static final String BINARY_EVENT_LOG = "binary";
+	
+	// resume_from values, besides a checkpoint file
+	public static final String LATEST_CHECKPOINT = "latest";
 	
 	// Context keys
 	public static final String MACHINES = "machines";
 	public static final String DATA_SERVERS = "data_serves";
 	public static final String METADATA_SERVER = "metadata_server";
 	public static final String CLIENTS = "clients";
+	public static final String MACHINE_PROCESSES = "machine_processes";
+	public static final String PREFETCH_POOL = "prefetch_pool";
+	public static final String RESTORED_EVENTS_COUNT = "restored_events_count";
 	
 	// Both
 	public static final String ENERGY_CONSUMPTION_MODEL = "energy_consumption_model";
+	public static final String TIMELINES_DIR = "timelines_dir";
 	
 }
@@ -1,46 +1,72 @@
 package simulation.beefs;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.FilenameFilter;
+import java.io.IOException;
 import java.io.InputStream;
-import java.util.Arrays;
-import java.util.HashSet;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
 
 import manelsim.Context;
+import manelsim.Event;
 import manelsim.EventSource;
 import manelsim.EventSourceMultiplexer;
 import manelsim.Initializer;
 import manelsim.Time;
 import manelsim.Time.Unit;
+import simulation.beefs.checkpoint.CheckpointEvent;
+import simulation.beefs.checkpoint.CountingEventSource;
+import simulation.beefs.checkpoint.SimulationCheckpoint;
 import simulation.beefs.energy.EnergyConsumptionModel;
 import simulation.beefs.event.DataServersSpaceLogger;
+import simulation.beefs.event.PrefetchingEventSource;
+import simulation.beefs.event.filesystem.BinaryFileSystemTraceEventSource;
 import simulation.beefs.event.filesystem.FileSystemTraceEventSource;
-import simulation.beefs.event.machine.UserActivityTraceEventSource;
+import simulation.beefs.event.filesystem.MappedFileSystemTraceEventSource;
+import simulation.beefs.event.machine.UserActivityTrace;
+import simulation.beefs.event.machine.UserActivityTraces;
+import simulation.beefs.log.AsyncEventLogSink;
+import simulation.beefs.log.BinaryEventLogSink;
+import simulation.beefs.log.EventLog;
+import simulation.beefs.log.EventLogSink;
+import simulation.beefs.log.TextEventLogSink;
 import simulation.beefs.model.DataServer;
 import simulation.beefs.model.FileSystemClient;
 import simulation.beefs.model.Machine;
 import simulation.beefs.model.MetadataServer;
+import simulation.beefs.parallel.MachineProcess;
+import simulation.beefs.parallel.MachineProcesses;
 import simulation.beefs.placement.DataPlacement;
 import simulation.beefs.replication.Replicator;
+import simulation.beefs.trace.BinaryTraceFormat;
+import simulation.beefs.trace.TraceFiles;
+import simulation.beefs.trace.TraceIndex;
+import simulation.beefs.util.Micros;
+import simulation.beefs.util.SplitRandom;
 
 public class BeefsEnergySimulationInitializer implements Initializer {
 	
 	private static final FilenameFilter fsTracesFilter = new FilenameFilter() {
 		@Override
 		public boolean accept(File dir, String name) {
-			return name.startsWith("fs-");
+			return name.startsWith("fs-") && !BinaryTraceFormat.isBinaryTrace(name) && !TraceIndex.isIndex(name);
 		}
 	};
 
 	private static final FilenameFilter idlenessTracesFilter = new FilenameFilter() {
 		@Override
 		public boolean accept(File dir, String name) {
-			return name.startsWith("idleness-");
+			return name.startsWith("idleness-") && !BinaryTraceFormat.isBinaryTrace(name) && !TraceIndex.isIndex(name);
 		}
 	};
 	
@@ -49,15 +75,57 @@ public class BeefsEnergySimulationInitializer implements Initializer {
 	public Context initialize(Properties config) {
 		this.config = config;
 		
+		EventLog.setSink(eventLogSink());
+		String eventLogCategories = config.getProperty(BeefsEnergySimulationConstants.EVENT_LOG_CATEGORIES);
+		if(eventLogCategories != null) {
+			EventLog.enable(EventLog.parseCategories(eventLogCategories));
+		}
+		
 		Context context = new Context(eventSourceMultiplexer());
 		context.add(BeefsEnergySimulationConstants.MACHINES, machines());
 		context.add(BeefsEnergySimulationConstants.DATA_SERVERS, dataServers());
-		context.add(BeefsEnergySimulationConstants.METADATA_SERVER, metadataServer());
-		context.add(BeefsEnergySimulationConstants.CLIENTS, clients());
+		if(!machineOnly()) {
+			context.add(BeefsEnergySimulationConstants.METADATA_SERVER, metadataServer());
+			context.add(BeefsEnergySimulationConstants.CLIENTS, clients());
+		}
 		context.add(BeefsEnergySimulationConstants.ENERGY_CONSUMPTION_MODEL, energyConsumptionModel());
+		if(timelinesDir() != null) {
+			context.add(BeefsEnergySimulationConstants.TIMELINES_DIR, timelinesDir());
+		}
+		if(prefetchPool != null) {
+			context.add(BeefsEnergySimulationConstants.PREFETCH_POOL, prefetchPool);
+		}
 		
 		Time simulationStart = new Time(Long.parseLong(config.getProperty("simulation_start")), Unit.SECONDS);
-		eventSourceMultiplexer().addNewEvent(new DataServersSpaceLogger(simulationStart, new Time(60*60, Unit.SECONDS), dataServers()));
+		long resumedAt = Micros.of(simulationStart);
+		if(restoredEvents != null) {
+			resumedAt = simulationCheckpoint().time();
+			context.add(BeefsEnergySimulationConstants.RESTORED_EVENTS_COUNT, simulationCheckpoint().eventsCountByType());
+			for(Event event : restoredEvents) {
+				eventSourceMultiplexer().addNewEvent(event);
+			}
+		}
+		if(!machineOnly()) {
+			long spaceLoggerInterval = 60 * 60 * Micros.PER_SECOND;
+			long firstSample = Micros.of(simulationStart);
+			if(resumedAt > firstSample) {
+				// the first sample after the checkpoint; one at the time of the checkpoint may have been taken already
+				firstSample += ((resumedAt - firstSample) / spaceLoggerInterval + 1) * spaceLoggerInterval;
+			}
+			eventSourceMultiplexer().addNewEvent(new DataServersSpaceLogger(Micros.toTime(firstSample), 
+					Micros.toTime(spaceLoggerInterval), dataServers()));
+		}
+		if(checkpointDir() != null) {
+			long interval = Long.parseLong(config.getProperty(
+					BeefsEnergySimulationConstants.CHECKPOINT_INTERVAL, "86400")) * Micros.PER_SECOND;
+			eventSourceMultiplexer().addNewEvent(new CheckpointEvent(resumedAt + interval, interval, 
+					simulationCheckpoint(), checkpointDir(), (restoredEvents != null) ? 
+							simulationCheckpoint().eventsCountByType() : null));
+		}
+		if(machineProcesses() != null) {
+			context.add(BeefsEnergySimulationConstants.MACHINE_PROCESSES, machineProcesses());
+			eventSourceMultiplexer().addNewEvent(machineProcesses().firstAdvance(Micros.of(simulationStart)));
+		}
 
 		return context;
 	}
@@ -68,30 +136,183 @@ public class BeefsEnergySimulationInitializer implements Initializer {
 			Time emulationStartTime = 
 					new Time(Long.parseLong(config.getProperty(BeefsEnergySimulationConstants.EMULATION_START_TIME)), Unit.SECONDS);
 
-			EventSource []  parsers = new EventSource[machines().size() + clients().size()];
+			boolean parallelMachines = parallelMachines() > 0 || machineOnly();
+			EventSource []  parsers = new EventSource[(parallelMachines ? 0 : machines().size()) + 
+			                                          (machineOnly() ? 0 : clients().size())];
 
 			try {
 				int parserCount = 0;
-				InputStream traceStream;
+				List<MachineProcess> processes = new ArrayList<MachineProcess>();
 				for(Machine machine : machines()) {
-					traceStream = 
-							new FileInputStream(new File(tracesDir(), "idleness-" + machine.name()));
-					parsers[parserCount++] = new UserActivityTraceEventSource(machine, traceStream, emulationStartTime);
+					if(parallelMachines) {
+						processes.add(new MachineProcess(machine, userActivityEventSource(machine, emulationStartTime)));
+					} else {
+						parsers[parserCount++] = userActivityEventSource(machine, emulationStartTime);
+					}
+				}
+				if(parallelMachines) {
+					long end = Long.parseLong(config.getProperty("simulation_end")) * Micros.PER_SECOND;
+					if(machineOnly()) {
+						// nothing else touches the machines, so each one runs to the end in a single advance
+						int threads = (parallelMachines() > 0) ? parallelMachines() : 
+							Runtime.getRuntime().availableProcessors();
+						_machineProcesses = new MachineProcesses(processes, threads, 
+								end - Micros.of(emulationStartTime), end);
+					} else {
+						long window = Long.parseLong(config.getProperty(
+								BeefsEnergySimulationConstants.PARALLEL_MACHINES_WINDOW, "3600")) * Micros.PER_SECOND;
+						_machineProcesses = new MachineProcesses(processes, parallelMachines(), window, end);
+					}
 				}
-				for(FileSystemClient client : clients()) {
-					traceStream = 
-							new FileInputStream(new File(tracesDir(), "fs-" + client.host().name()));
-					parsers[parserCount++] = new FileSystemTraceEventSource(client, traceStream);
+				if(!machineOnly()) {
+					for(FileSystemClient client : clients()) {
+						parsers[parserCount++] = fileSystemEventSource(client, emulationStartTime);
+					}
 				}
 
-			} catch (FileNotFoundException e) {
+			} catch (IOException e) {
 				throw new IllegalStateException(e);
 			}
 
+			int prefetchThreads = Integer.parseInt(config.getProperty(BeefsEnergySimulationConstants.PREFETCH_THREADS, "0"));
+			if(prefetchThreads > 0) {
+				int queueSize = 
+						Integer.parseInt(config.getProperty(BeefsEnergySimulationConstants.PREFETCH_QUEUE_SIZE, "4096"));
+				prefetchPool = PrefetchingEventSource.newPool(prefetchThreads);
+				for(int i = 0; i < parsers.length; i++) {
+					parsers[i] = new PrefetchingEventSource(parsers[i], prefetchPool, queueSize);
+				}
+			}
+
+			if(checkpointDir() != null || resumeFrom() != null) {
+				if(parallelMachines) {
+					throw new IllegalArgumentException("checkpoints can't be taken with " + 
+							BeefsEnergySimulationConstants.PARALLEL_MACHINES + " nor " + 
+							BeefsEnergySimulationConstants.MACHINE_ONLY);
+				}
+				for(int i = 0; i < parsers.length; i++) {
+					CountingEventSource source = new CountingEventSource(parsers[i]);
+					countingSources.add(source);
+					parsers[i] = source;
+				}
+				if(resumeFrom() != null) {
+					try {
+						restoredEvents = simulationCheckpoint().restore(resumeFrom());
+					} catch (IOException e) {
+						throw new IllegalStateException("could not resume from " + resumeFrom(), e);
+					}
+				}
+			}
+
 			_eventSourceMultiplexer = new EventSourceMultiplexer(parsers); 
 		}
 		return _eventSourceMultiplexer;
 	}
+	
+	// the sources of the multiplexer, counted for checkpoints
+	private final List<CountingEventSource> countingSources = new ArrayList<CountingEventSource>();
+	
+	// the events that were pending at the checkpoint the simulation resumed from, or null if it didn't resume
+	private List<Event> restoredEvents = null;
+	
+	private SimulationCheckpoint _simulationCheckpoint = null;
+	private SimulationCheckpoint simulationCheckpoint() {
+		if(_simulationCheckpoint == null) {
+			_simulationCheckpoint = 
+					new SimulationCheckpoint(machines(), dataServers(), metadataServer(), clients(), countingSources);
+		}
+		return _simulationCheckpoint;
+	}
+	
+	private File checkpointDir() {
+		String checkpointDirPath = config.getProperty(BeefsEnergySimulationConstants.CHECKPOINT_DIR);
+		if(checkpointDirPath == null) {
+			return null;
+		}
+		File checkpointDir = new File(checkpointDirPath);
+		if(!checkpointDir.isDirectory()) {
+			throw new IllegalArgumentException(checkpointDirPath + " doesn't exist or is not a directory");
+		}
+		return checkpointDir;
+	}
+	
+	/**
+	 * @return the checkpoint to resume the simulation from, or null if it starts over
+	 */
+	private File resumeFrom() {
+		String resumeFrom = config.getProperty(BeefsEnergySimulationConstants.RESUME_FROM);
+		if(resumeFrom == null) {
+			return null;
+		}
+		if(BeefsEnergySimulationConstants.LATEST_CHECKPOINT.equals(resumeFrom)) {
+			if(checkpointDir() == null) {
+				throw new IllegalArgumentException(BeefsEnergySimulationConstants.RESUME_FROM + "=" + resumeFrom + 
+						" needs " + BeefsEnergySimulationConstants.CHECKPOINT_DIR);
+			}
+			// nothing to resume from yet, so it starts over
+			return SimulationCheckpoint.latest(checkpointDir());
+		}
+		File checkpoint = new File(resumeFrom);
+		if(!checkpoint.isFile()) {
+			throw new IllegalArgumentException(resumeFrom + " doesn't exist or is not a file");
+		}
+		return checkpoint;
+	}
+
+	// shut down by the summarizer
+	private ExecutorService prefetchPool = null;
+
+	private MachineProcesses _machineProcesses = null;
+	/**
+	 * @return the processes that run the machines apart from the simulation thread, or null if they run on it 
+	 */
+	private MachineProcesses machineProcesses() {
+		eventSourceMultiplexer();
+		return _machineProcesses;
+	}
+
+	private int parallelMachines() {
+		return Integer.parseInt(config.getProperty(BeefsEnergySimulationConstants.PARALLEL_MACHINES, "0"));
+	}
+
+	/**
+	 * @return true if only the machines are simulated, from their idleness traces, without the file system
+	 */
+	private boolean machineOnly() {
+		return Boolean.valueOf(config.getProperty(BeefsEnergySimulationConstants.MACHINE_ONLY, "false"));
+	}
+
+	private UserActivityTrace userActivityEventSource(Machine machine, Time emulationStartTime) throws IOException {
+		return UserActivityTraces.open(tracesDir(), machine.name(), machine, emulationStartTime);
+	}
+
+	/*
+	 * Prefers the binary version of a trace, as written by TraceConverter, when it sits next to the text one. Text 
+	 * traces may be compressed (see TraceFiles). Uncompressed text traces are read from the offset their TraceIndex 
+	 * gives for the emulation start.
+	 */
+	private EventSource fileSystemEventSource(FileSystemClient client, Time emulationStartTime) throws IOException {
+		long start = Micros.of(emulationStartTime);
+		File trace = TraceFiles.find(tracesDir(), "fs-" + client.host().name());
+		File binaryTrace = BinaryTraceFormat.convertedTrace(trace);
+		if(binaryTrace != null) {
+			return new BinaryFileSystemTraceEventSource(client, new FileInputStream(binaryTrace), start);
+		}
+
+		String reader = config.getProperty(BeefsEnergySimulationConstants.FS_TRACE_READER, 
+				BeefsEnergySimulationConstants.STREAM_FS_TRACE_READER);
+		if(BeefsEnergySimulationConstants.MAPPED_FS_TRACE_READER.equals(reader)) {
+			if(TraceFiles.isCompressed(trace)) { // compressed traces can't be mapped
+				return new FileSystemTraceEventSource(client, TraceFiles.open(trace), start);
+			}
+			return new MappedFileSystemTraceEventSource(client, trace, start);
+		} else if(BeefsEnergySimulationConstants.STREAM_FS_TRACE_READER.equals(reader)) {
+			InputStream traceStream = TraceIndex.openAt(trace, start, FileSystemTraceEventSource.INDEX_KEY);
+			return new FileSystemTraceEventSource(client, traceStream, start);
+		} else {
+			throw new IllegalArgumentException(reader + " is not a valid " + BeefsEnergySimulationConstants.FS_TRACE_READER);
+		}
+	}
 
 	private EnergyConsumptionModel _energyConsumptionModel = null;
 	private Object energyConsumptionModel() {
@@ -106,13 +327,13 @@ public class BeefsEnergySimulationInitializer implements Initializer {
 	private MetadataServer metadataServer() {
 		if(_metadataServer == null) {
 			String placementPolicyName = config.getProperty(BeefsEnergySimulationConstants.PLACEMENT_POLICE);
-			DataPlacement placementPolicy = DataPlacement.newDataPlacement(placementPolicyName, dataServers());
+			DataPlacement placementPolicy = DataPlacement.newDataPlacement(placementPolicyName, dataServers(), random().split());
 			Integer replicationLevel = Integer.valueOf(config.getProperty(BeefsEnergySimulationConstants.REPLICATION_LEVEL));
 			Time timeToCoherence = 
 					new Time(Long.valueOf(config.getProperty(BeefsEnergySimulationConstants.TIME_TO_COHERENCE)), Unit.SECONDS);
 
 			String replicatorName = config.getProperty(BeefsEnergySimulationConstants.REPLICATOR); 
-			Replicator replicator = Replicator.newReplicator(replicatorName, dataServers());
+			Replicator replicator = Replicator.newReplicator(replicatorName, dataServers(), random().split());
 
 			_metadataServer = 
 					new MetadataServer(dataServers(), placementPolicy, replicator, replicationLevel, timeToCoherence);
@@ -120,6 +341,15 @@ public class BeefsEnergySimulationInitializer implements Initializer {
 		return _metadataServer;
 	}
 
+	private SplitRandom _random = null;
+	private SplitRandom random() {
+		if(_random == null) {
+			String seed = config.getProperty(BeefsEnergySimulationConstants.RANDOM_SEED);
+			_random = (seed != null) ? new SplitRandom(Long.parseLong(seed.trim())) : new SplitRandom();
+		}
+		return _random;
+	}
+
 	private Object instantiate(String className) {
 		try {
 			return Class.forName(className).newInstance();
@@ -139,6 +369,47 @@ public class BeefsEnergySimulationInitializer implements Initializer {
 		return _tracesDir;
 	}
 	
+	private EventLogSink eventLogSink() {
+		String format = config.getProperty(BeefsEnergySimulationConstants.EVENT_LOG, 
+				BeefsEnergySimulationConstants.TEXT_EVENT_LOG);
+		String file = config.getProperty(BeefsEnergySimulationConstants.EVENT_LOG_FILE);
+		
+		EventLogSink sink;
+		try {
+			if(BeefsEnergySimulationConstants.BINARY_EVENT_LOG.equals(format)) {
+				if(file == null) {
+					throw new IllegalArgumentException("a binary event log needs " + 
+							BeefsEnergySimulationConstants.EVENT_LOG_FILE);
+				}
+				sink = new BinaryEventLogSink(new FileOutputStream(file));
+			} else if(BeefsEnergySimulationConstants.TEXT_EVENT_LOG.equals(format)) {
+				sink = (file == null) ? new TextEventLogSink() : 
+					new TextEventLogSink(new PrintStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16)));
+			} else {
+				throw new IllegalArgumentException(format + " is not a valid " + BeefsEnergySimulationConstants.EVENT_LOG);
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		
+		if(Boolean.valueOf(config.getProperty(BeefsEnergySimulationConstants.EVENT_LOG_ASYNC, "false"))) {
+			sink = new AsyncEventLogSink(sink, AsyncEventLogSink.DEFAULT_BATCH_SIZE);
+		}
+		return sink;
+	}
+	
+	private File timelinesDir() {
+		String timelinesDirPath = config.getProperty(BeefsEnergySimulationConstants.TIMELINES_DIR);
+		if(timelinesDirPath == null) {
+			return null;
+		}
+		File timelinesDir = new File(timelinesDirPath);
+		if(!timelinesDir.isDirectory()) {
+			throw new IllegalArgumentException(timelinesDirPath + " doesn't exist or is not a directory");
+		}
+		return timelinesDir;
+	}
+	
 	private Set<Machine> _machines = null;
 	private Set<Machine> machines() {
 		if(_machines == null) {
@@ -146,24 +417,34 @@ public class BeefsEnergySimulationInitializer implements Initializer {
 					new Time(Long.valueOf(config.getProperty(BeefsEnergySimulationConstants.TO_SLEEP_TIMEOUT)), Unit.SECONDS);
 			Time transitionDuration = 
 					new Time(Long.valueOf(config.getProperty(BeefsEnergySimulationConstants.TRANSITION_DURATION)), Unit.MILLISECONDS);
-			_machines = new HashSet<Machine>();
-			List<String> fsTracesFiles = Arrays.asList(tracesDir().list(fsTracesFilter));
-			List<String> idlenessTracesFiles = Arrays.asList(tracesDir().list(idlenessTracesFilter));
-
-			for(String fsTraceFile : fsTracesFiles) {
-				String machineName = fsTraceFile.split("-")[1];
-				if(idlenessTracesFiles.contains("idleness-" + machineName)) {
-					_machines.add(new Machine(machineName, toSleepTimeout, transitionDuration));
+			boolean keepStateIntervals = timelinesDir() != null ||
+					Boolean.valueOf(config.getProperty(BeefsEnergySimulationConstants.KEEP_STATE_INTERVALS, "false"));
+			_machines = new LinkedHashSet<Machine>();
+			Set<String> fsTraces = traceNames(tracesDir().list(fsTracesFilter));
+			Set<String> idlenessTraces = traceNames(tracesDir().list(idlenessTracesFilter));
+
+			for(String fsTrace : fsTraces) {
+				String machineName = fsTrace.split("-")[1];
+				if(idlenessTraces.contains("idleness-" + machineName)) {
+					_machines.add(new Machine(machineName, toSleepTimeout, transitionDuration, keepStateIntervals));
 				}
 			}
 		}
 		return _machines;
 	}
 	
+	private static Set<String> traceNames(String [] traceFiles) {
+		Set<String> names = new TreeSet<String>();
+		for(String traceFile : traceFiles) {
+			names.add(TraceFiles.traceName(traceFile));
+		}
+		return names;
+	}
+	
 	private Set<FileSystemClient> _clients = null;
 	private Set<FileSystemClient> clients() {
 		if(_clients == null) {
-			_clients = new HashSet<FileSystemClient>();
+			_clients = new LinkedHashSet<FileSystemClient>();
 			for(Machine machine : machines()) {
 				_clients.add(new FileSystemClient(machine, metadataServer()));
 			}
@@ -174,7 +455,7 @@ public class BeefsEnergySimulationInitializer implements Initializer {
 	private Set<DataServer> _dataServers;
 	private Set<DataServer> dataServers(){
 		if(_dataServers == null) {
-			_dataServers = new HashSet<DataServer>();
+			_dataServers = new LinkedHashSet<DataServer>();
 
 			for (Machine machine : machines()) {
 				String freeSpaceKey = machine.name() + BeefsEnergySimulationConstants.FREE_SPACE;
@@ -1,38 +1,37 @@
 package simulation.beefs;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
 
 import manelsim.Context;
 import manelsim.EventScheduler;
 import manelsim.Summarizer;
+import simulation.beefs.energy.DurationsConsumptionModel;
 import simulation.beefs.energy.EnergyConsumptionModel;
 import simulation.beefs.energy.EnergyState;
-import simulation.beefs.energy.EnergyStateInterval;
+import simulation.beefs.energy.EnergyStateDurations;
+import simulation.beefs.event.filesystem.SkippedTraceLines;
+import simulation.beefs.log.EventLog;
 import simulation.beefs.model.DataServer;
-import simulation.beefs.model.Machine.MachineStateInterval;
+import simulation.beefs.model.Machine;
 import simulation.beefs.model.Machine.State;
+import simulation.beefs.parallel.MachineProcesses;
 
 public class BeefsEnergySimulationSummarizer implements Summarizer {
 	
-	private List<EnergyStateInterval> combine(DataServer dataServer) { 
-		List<EnergyStateInterval> combinedEnergyStatesIntervals = 
-				convertStates(dataServer.host().stateIntervals());
-		
-		return combinedEnergyStatesIntervals;
-	}
-	
-	private List<EnergyStateInterval> convertStates(List<MachineStateInterval> stateIntervals) {
-		List<EnergyStateInterval> energyStatesIntervals = new ArrayList<EnergyStateInterval>();
-		
-		for(MachineStateInterval machineStateInterval : stateIntervals) {
-			energyStatesIntervals.add(new EnergyStateInterval(convertState(machineStateInterval.getState()), 
-					machineStateInterval.getInterval()));
+	private EnergyStateDurations energyStateDurations(Machine machine) {
+		EnergyStateDurations durations = new EnergyStateDurations();
+		for(State state : State.values()) {
+			if(state != State.BOOTSTRAP) {
+				durations.add(convertState(state), machine.stateDuration(state), machine.stateCount(state));
+			}
 		}
-		
-		return energyStatesIntervals;
+		return durations;
 	}
 
 	private EnergyState convertState(State state) {
@@ -50,6 +49,24 @@ public class BeefsEnergySimulationSummarizer implements Summarizer {
 		return converted;
 	}
 	
+	private void writeTimelines(Set<DataServer> dataServers, File timelinesDir) {
+		for(DataServer dataServer : dataServers) {
+			Machine host = dataServer.host();
+			try {
+				host.writeTimeline(new File(timelinesDir, "timeline-" + host.name() + ".bin"));
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+	
+	private void addCounts(Map<String, Long> eventsCountByType, Map<String, Long> more) {
+		for(Entry<String, Long> entry : more.entrySet()) {
+			Long count = eventsCountByType.get(entry.getKey());
+			eventsCountByType.put(entry.getKey(), (count == null) ? entry.getValue() : count + entry.getValue());
+		}
+	}
+	
 	@SuppressWarnings("unchecked")
 	@Override
 	public String summarize(Context context) {
@@ -58,24 +75,56 @@ public class BeefsEnergySimulationSummarizer implements Summarizer {
 		StringBuffer sb = new StringBuffer();
 		
 		for(DataServer dataServer : dataServers) {
-			List<EnergyStateInterval> energyStatesIntervals = combine(dataServer);
-			
 			EnergyConsumptionModel energyConsumptionModel = 
 					(EnergyConsumptionModel)context.get(BeefsEnergySimulationConstants.ENERGY_CONSUMPTION_MODEL);
-			double kWh = energyConsumptionModel.getConsumption(energyStatesIntervals);
+			double kWh = DurationsConsumptionModel.getConsumption(energyConsumptionModel, 
+					energyStateDurations(dataServer.host()));
 			
 			sb.append(String.format("$%s\t%f\t%d\t%d\n", 
 					dataServer.host().name(), 
 					kWh, 
-					dataServer.host().transitionIntervals().size(),
+					dataServer.host().transitionCount(),
 					dataServer.freeSpace()));
 		}
 		
+		Map<String, Long> eventsCountByType = new TreeMap<String, Long>(EventScheduler.eventsCountByType());
+		MachineProcesses machineProcesses = (MachineProcesses) context.get(BeefsEnergySimulationConstants.MACHINE_PROCESSES);
+		if(machineProcesses != null) {
+			addCounts(eventsCountByType, machineProcesses.eventsCountByType());
+		}
+		Map<String, Long> restoredEventsCount = 
+				(Map<String, Long>) context.get(BeefsEnergySimulationConstants.RESTORED_EVENTS_COUNT);
+		if(restoredEventsCount != null) {
+			addCounts(eventsCountByType, restoredEventsCount);
+		}
+		
 		sb.append("\n\nEvent type\tcount");
-		for(Entry<String, Long> entry : EventScheduler.eventsCountByType().entrySet()) {
+		for(Entry<String, Long> entry : eventsCountByType.entrySet()) {
 			sb.append(String.format("%s\t%d\n", entry.getKey(), entry.getValue()));
 		}
 		
+		sb.append("\n\n").append(SkippedTraceLines.summary());
+		
+		// the threads would outlive the simulation, and keep its classes loaded when it runs in a sweep
+		if(machineProcesses != null) {
+			machineProcesses.shutdown();
+		}
+		ExecutorService prefetchPool = (ExecutorService) context.get(BeefsEnergySimulationConstants.PREFETCH_POOL);
+		if(prefetchPool != null) {
+			prefetchPool.shutdown();
+		}
+		
+		try {
+			EventLog.close();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		
+		File timelinesDir = (File) context.get(BeefsEnergySimulationConstants.TIMELINES_DIR);
+		if(timelinesDir != null) {
+			writeTimelines(dataServers, timelinesDir);
+		}
+		
 		return sb.toString();
 	} 
 
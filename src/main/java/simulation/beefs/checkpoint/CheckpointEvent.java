@@ -0,0 +1,72 @@
+package simulation.beefs.checkpoint;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import manelsim.Event;
+import manelsim.EventScheduler;
+import simulation.beefs.util.Micros;
+
+/**
+ *
+ * Writes a {@link SimulationCheckpoint} and schedules the next one, an interval later.
+ *
+ */
+public class CheckpointEvent extends Event {
+
+	private final SimulationCheckpoint checkpoint;
+
+	private final File dir;
+
+	private final long interval;
+
+	private final Map<String, Long> restoredEventsCountByType;
+
+	/**
+	 * @param time in microseconds
+	 * @param interval in microseconds
+	 * @param restoredEventsCountByType the counts of the events processed before the simulation was resumed, if it was
+	 */
+	public CheckpointEvent(long time, long interval, SimulationCheckpoint checkpoint, File dir,
+			Map<String, Long> restoredEventsCountByType) {
+		super(Micros.toTime(time));
+		this.checkpoint = checkpoint;
+		this.dir = dir;
+		this.interval = interval;
+		this.restoredEventsCountByType = restoredEventsCountByType;
+	}
+
+	@Override
+	public void process() {
+		long time = Micros.of(getScheduledTime());
+
+		Map<String, Long> eventsCountByType = new TreeMap<String, Long>(EventScheduler.eventsCountByType());
+		if(restoredEventsCountByType != null) {
+			add(eventsCountByType, restoredEventsCountByType);
+		}
+		// this one is only counted after it is processed
+		add(eventsCountByType, getClass().getSimpleName(), 1);
+
+		try {
+			checkpoint.write(dir, time, eventsCountByType);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		EventScheduler.schedule(new CheckpointEvent(time + interval, interval, checkpoint, dir, restoredEventsCountByType));
+	}
+
+	private static void add(Map<String, Long> counts, Map<String, Long> more) {
+		for(Entry<String, Long> entry : more.entrySet()) {
+			add(counts, entry.getKey(), entry.getValue());
+		}
+	}
+
+	private static void add(Map<String, Long> counts, String type, long count) {
+		Long current = counts.get(type);
+		counts.put(type, (current == null) ? count : current + count);
+	}
+
+}
@@ -0,0 +1,58 @@
+package simulation.beefs.checkpoint;
+
+import manelsim.Event;
+import manelsim.EventSource;
+
+/**
+ *
+ * Counts the events another {@link EventSource} hands out, so a checkpoint knows how far its trace was read and a
+ * resumed simulation can read it up to there again. Events are identified by their position in the source, not by
+ * their content, since parsing them again gives the same events.
+ * <br><br>
+ * It wraps the source as the multiplexer sees it (Ex.: around a {@link simulation.beefs.event.PrefetchingEventSource}),
+ * because the multiplexer holds the next event of each source before processing it.
+ *
+ */
+public class CountingEventSource implements EventSource {
+
+	private final EventSource source;
+
+	private long handedOut = 0;
+
+	private boolean exhausted = false;
+
+	public CountingEventSource(EventSource source) {
+		this.source = source;
+	}
+
+	@Override
+	public Event getNextEvent() {
+		Event event = source.getNextEvent();
+		if(event != null) {
+			handedOut++;
+		} else {
+			exhausted = true;
+		}
+		return event;
+	}
+
+	/**
+	 * @return how many events of the source were processed, taking the one the multiplexer holds as not processed
+	 */
+	public long position() {
+		return exhausted ? handedOut : Math.max(handedOut - 1, 0);
+	}
+
+	/**
+	 * Reads and drops the first <code>count</code> events, before the multiplexer takes the next one.
+	 * @throws IllegalStateException if the source has less events than that
+	 */
+	public void skip(long count) {
+		for(long i = 0; i < count; i++) {
+			if(getNextEvent() == null) {
+				throw new IllegalStateException("the source ended after " + i + " of the " + count + " events to skip");
+			}
+		}
+	}
+
+}
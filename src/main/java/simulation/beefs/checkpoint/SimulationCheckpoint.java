@@ -0,0 +1,229 @@
+package simulation.beefs.checkpoint;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import manelsim.Event;
+import simulation.beefs.model.DataServer;
+import simulation.beefs.model.FileSystemClient;
+import simulation.beefs.model.Machine;
+import simulation.beefs.model.MetadataServer;
+import simulation.beefs.util.Micros;
+
+/**
+ *
+ * Writes the state of a simulation at some time to a file and reads it back into a simulation built from the same
+ * configuration, so a long simulation can be resumed instead of started over.
+ * <br><br>
+ * The scheduler's queue can't be listed, so the events in it are written by whoever schedules them: the machines,
+ * the clients and the metadata server. The events of the traces are not written; each trace is read again up to
+ * the {@link CountingEventSource#position() position} it had. A checkpoint has, in order: the header, the time, the
+ * counts of processed events by type, the trace positions, the machines, the data servers, the metadata server and
+ * the clients. The last four are written by the model objects themselves.
+ *
+ */
+public class SimulationCheckpoint {
+
+	private static final int MAGIC = 0x42434B31; // "BCK1"
+
+	private static final int VERSION = 1;
+
+	private static final String PREFIX = "checkpoint-";
+
+	private static final String SUFFIX = ".bin";
+
+	private final Collection<Machine> machines;
+	private final Collection<DataServer> dataServers;
+	private final MetadataServer metadataServer;
+	private final Collection<FileSystemClient> clients;
+	private final List<CountingEventSource> sources;
+
+	// set by restore
+	private long time = -1;
+	private Map<String, Long> eventsCountByType = null;
+
+	public SimulationCheckpoint(Collection<Machine> machines, Collection<DataServer> dataServers,
+			MetadataServer metadataServer, Collection<FileSystemClient> clients, List<CountingEventSource> sources) {
+		this.machines = machines;
+		this.dataServers = dataServers;
+		this.metadataServer = metadataServer;
+		this.clients = clients;
+		this.sources = sources;
+	}
+
+	/**
+	 * Writes the checkpoint of <code>time</code> to <code>dir</code>. It is written to a temporary file first, so a
+	 * simulation that dies while writing doesn't leave a partial checkpoint behind.
+	 * @param time in microseconds
+	 * @return the checkpoint file
+	 */
+	public File write(File dir, long time, Map<String, Long> eventsCountByType) throws IOException {
+		File file = new File(dir, fileName(time));
+		File tmp = new File(dir, file.getName() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(time);
+
+			out.writeInt(eventsCountByType.size());
+			for(Entry<String, Long> entry : eventsCountByType.entrySet()) {
+				out.writeUTF(entry.getKey());
+				out.writeLong(entry.getValue());
+			}
+
+			out.writeInt(sources.size());
+			for(CountingEventSource source : sources) {
+				out.writeLong(source.position());
+			}
+
+			out.writeInt(machines.size());
+			for(Machine machine : machines) {
+				out.writeUTF(machine.name());
+				machine.checkpoint(out);
+			}
+			out.writeInt(dataServers.size());
+			for(DataServer dataServer : dataServers) {
+				out.writeUTF(dataServer.host().name());
+				dataServer.checkpoint(out);
+			}
+			metadataServer.checkpoint(out);
+			out.writeInt(clients.size());
+			for(FileSystemClient client : clients) {
+				out.writeUTF(client.host().name());
+				client.checkpoint(out);
+			}
+		} finally {
+			out.close();
+		}
+
+		if(file.exists() && !file.delete()) {
+			throw new IOException("could not replace " + file);
+		}
+		if(!tmp.renameTo(file)) {
+			throw new IOException("could not rename " + tmp + " to " + file);
+		}
+		return file;
+	}
+
+	/**
+	 * Reads <code>file</code> into the model, which must not have simulated anything yet, and skips the events of the
+	 * sources that were processed before the checkpoint. This is done before the sources are given to the multiplexer.
+	 * @return the events that were scheduled and not processed at the time of the checkpoint, for the caller to
+	 * schedule again
+	 */
+	public List<Event> restore(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+		try {
+			if(in.readInt() != MAGIC) {
+				throw new IOException(file + " is not a checkpoint");
+			}
+			int version = in.readInt();
+			if(version != VERSION) {
+				throw new IOException(file + " has version " + version + ", only " + VERSION + " is supported");
+			}
+			time = in.readLong();
+
+			eventsCountByType = new TreeMap<String, Long>();
+			int types = in.readInt();
+			for(int i = 0; i < types; i++) {
+				eventsCountByType.put(in.readUTF(), in.readLong());
+			}
+
+			expectCount(in.readInt(), sources.size(), "event sources");
+			for(CountingEventSource source : sources) {
+				source.skip(in.readLong());
+			}
+
+			List<Event> pending = new ArrayList<Event>();
+			expectCount(in.readInt(), machines.size(), "machines");
+			for(Machine machine : machines) {
+				expectName(in.readUTF(), machine.name());
+				pending.addAll(machine.restore(in));
+			}
+			expectCount(in.readInt(), dataServers.size(), "data servers");
+			for(DataServer dataServer : dataServers) {
+				expectName(in.readUTF(), dataServer.host().name());
+				dataServer.restore(in);
+			}
+			pending.addAll(metadataServer.restore(in));
+			expectCount(in.readInt(), clients.size(), "clients");
+			for(FileSystemClient client : clients) {
+				expectName(in.readUTF(), client.host().name());
+				pending.addAll(client.restore(in));
+			}
+			return pending;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * @return the time of the restored checkpoint, in microseconds
+	 */
+	public long time() {
+		return time;
+	}
+
+	/**
+	 * @return the counts of the events processed before the restored checkpoint
+	 */
+	public Map<String, Long> eventsCountByType() {
+		return eventsCountByType;
+	}
+
+	private static void expectCount(int count, int expected, String what) throws IOException {
+		if(count != expected) {
+			throw new IOException("the checkpoint has " + count + " " + what + ", the simulation has " + expected);
+		}
+	}
+
+	private static void expectName(String name, String expected) throws IOException {
+		if(!name.equals(expected)) {
+			throw new IOException("the checkpoint has " + name + " where the simulation has " + expected);
+		}
+	}
+
+	/**
+	 * @param time in microseconds
+	 */
+	public static String fileName(long time) {
+		return String.format("%s%012d%s", PREFIX, time / Micros.PER_SECOND, SUFFIX);
+	}
+
+	/**
+	 * @return the checkpoint of <code>dir</code> with the latest time, or null if there is none
+	 */
+	public static File latest(File dir) {
+		File [] checkpoints = dir.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+			}
+		});
+		File latest = null;
+		if(checkpoints != null) {
+			for(File checkpoint : checkpoints) {
+				// the names are zero padded, so they sort by time
+				if(latest == null || checkpoint.getName().compareTo(latest.getName()) > 0) {
+					latest = checkpoint;
+				}
+			}
+		}
+		return latest;
+	}
+
+}
@@ -1,10 +1,6 @@
 package simulation.beefs.energy;
 
-import java.util.List;
-
-import manelsim.Time;
-
-public class Conservative implements EnergyConsumptionModel {
+public class Conservative extends DurationsConsumptionModel {
 	
 	/*
 	 * Consumption values from a Dell OptiPlex 740, w/19-inch Dell LCD (purchased late 2006)
@@ -17,32 +13,31 @@ public class Conservative implements EnergyConsumptionModel {
 	
 
 	@Override
-	public double getConsumption(List<EnergyStateInterval> intervals) {
-		Time sleepingTime = Time.GENESIS;
-		Time peakTime = Time.GENESIS;
-		Time moderateUsageTime = Time.GENESIS;		
+	public double getConsumption(EnergyStateDurations durations) {
+		double sleepingHours = 0;
+		double peakHours = 0;
+		double moderateUsageHours = 0;
 		
-		for(EnergyStateInterval energyStateInterval : intervals) {
-			switch(energyStateInterval.getEnergyState()) {
+		for(EnergyState state : EnergyState.values()) {
+			switch(state) {
 				case TRANSITIONING:
 				case READ_ACTIVE: 
 				case WRITE_ACTIVE:
 				case READ_IDLE: 
 				case WRITE_IDLE:
 				case READ_WRITE_IDLE:
-				case READ_WRITE_ACTIVE: peakTime = peakTime.plus(energyStateInterval.getInterval().delta()); break; 
+				case READ_WRITE_ACTIVE: peakHours += durations.hours(state); break; 
 				case ACTIVE: 
-				case IDLE: moderateUsageTime = moderateUsageTime.plus(energyStateInterval.getInterval().delta()); break;
-				case SLEEPING: sleepingTime = sleepingTime.plus(energyStateInterval.getInterval().delta()); break;
+				case IDLE: moderateUsageHours += durations.hours(state); break;
+				case SLEEPING: sleepingHours += durations.hours(state); break;
 			}
 		}
 
-		double energyConsumption = sleepingTime.asHours() * SLEEPING_CONSUMPTION;
-		energyConsumption += peakTime.asHours() * PEAK_CONSUMPTION;
-		energyConsumption += moderateUsageTime.asHours() * MODERATE_USAGE;
+		double energyConsumption = sleepingHours * SLEEPING_CONSUMPTION;
+		energyConsumption += peakHours * PEAK_CONSUMPTION;
+		energyConsumption += moderateUsageHours * MODERATE_USAGE;
 				
 		return energyConsumption / 1000.0; //convert to kWh
 	}
 
-
 }
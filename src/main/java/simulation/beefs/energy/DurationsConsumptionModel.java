@@ -0,0 +1,54 @@
+package simulation.beefs.energy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import manelsim.TimeInterval;
+import simulation.beefs.util.Micros;
+
+/**
+ *
+ * An {@link EnergyConsumptionModel} that is computed from the time spent in each state, so the simulation doesn't
+ * have to keep every state interval to evaluate it.
+ *
+ */
+public abstract class DurationsConsumptionModel implements EnergyConsumptionModel {
+
+	/**
+	 *
+	 * @param durations the time spent in each state, accumulated while the simulation runs
+	 * @return the total energy consumption in kilowatts-hour
+	 */
+	public abstract double getConsumption(EnergyStateDurations durations);
+
+	@Override
+	public double getConsumption(List<EnergyStateInterval> intervals) {
+		EnergyStateDurations durations = new EnergyStateDurations();
+		for(EnergyStateInterval energyStateInterval : intervals) {
+			durations.add(energyStateInterval);
+		}
+		return getConsumption(durations);
+	}
+
+	/**
+	 * Evaluates any model from accumulated durations. The models that only take intervals are given one interval per
+	 * state, as long as the time spent in it, laid end to end from the genesis.
+	 * @return the total energy consumption in kilowatts-hour
+	 */
+	public static double getConsumption(EnergyConsumptionModel model, EnergyStateDurations durations) {
+		if(model instanceof DurationsConsumptionModel) {
+			return ((DurationsConsumptionModel) model).getConsumption(durations);
+		}
+		List<EnergyStateInterval> intervals = new ArrayList<EnergyStateInterval>();
+		long begin = 0;
+		for(EnergyState state : EnergyState.values()) {
+			if(durations.duration(state) > 0) {
+				long end = begin + durations.duration(state);
+				intervals.add(new EnergyStateInterval(state, new TimeInterval(Micros.toTime(begin), Micros.toTime(end))));
+				begin = end;
+			}
+		}
+		return model.getConsumption(intervals);
+	}
+
+}
@@ -0,0 +1,39 @@
+package simulation.beefs.energy;
+
+import simulation.beefs.util.Micros;
+
+/**
+ *
+ * Running totals of the time spent in each {@link EnergyState} and of how many times each state was entered.
+ * Durations are in microseconds.
+ *
+ */
+public class EnergyStateDurations {
+
+	private static final double MICROSECONDS_PER_HOUR = 60 * 60 * 1000000.0;
+
+	private final long [] durations = new long[EnergyState.values().length];
+	private final long [] counts = new long[EnergyState.values().length];
+
+	public void add(EnergyState state, long duration, long count) {
+		durations[state.ordinal()] += duration;
+		counts[state.ordinal()] += count;
+	}
+
+	public void add(EnergyStateInterval interval) {
+		add(interval.getEnergyState(), Micros.of(interval.getInterval().delta()), 1);
+	}
+
+	public long duration(EnergyState state) {
+		return durations[state.ordinal()];
+	}
+
+	public double hours(EnergyState state) {
+		return durations[state.ordinal()] / MICROSECONDS_PER_HOUR;
+	}
+
+	public long count(EnergyState state) {
+		return counts[state.ordinal()];
+	}
+
+}
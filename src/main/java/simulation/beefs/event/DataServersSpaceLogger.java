@@ -2,9 +2,10 @@ package simulation.beefs.event;
 
 import java.util.Set;
 
-import manelsim.EventScheduler;
 import manelsim.RepeatableEvent;
 import manelsim.Time;
+import simulation.beefs.log.EventLog;
+import simulation.beefs.log.EventLog.Category;
 import simulation.beefs.model.DataServer;
 
 public class DataServersSpaceLogger extends RepeatableEvent {
@@ -18,8 +19,11 @@ public class DataServersSpaceLogger extends RepeatableEvent {
 
 	@Override
 	public void work() {
+		if(!EventLog.isEnabled(Category.SPACE_SAMPLES)) {
+			return;
+		}
 		for(DataServer ds : dataServers) {
-			System.out.println(String.format("#%s\t%s\t%d", EventScheduler.now(), ds.host().name(), ds.freeSpace()));
+			EventLog.spaceSample(ds.host().name(), ds.freeSpace());
 		}
 	}
 
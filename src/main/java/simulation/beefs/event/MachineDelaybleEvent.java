@@ -1,29 +1,92 @@
 package simulation.beefs.event;
 
 import simulation.beefs.model.Machine;
+import simulation.beefs.util.Micros;
 import manelsim.Event;
+import manelsim.EventScheduler;
 import manelsim.Time;
 
+/**
+ *
+ * An event postponed by the delay its machine accumulated waking up. The scheduler orders the events by the delay the
+ * machine has as they are compared, without bringing the machine up to date: it may be run by another thread (see
+ * simulation.beefs.parallel.MachineProcess), and running it in the middle of the comparisons of the queue would change
+ * the times of events already in it. The machine is brought up to date when the event is processed instead. Delays 
+ * only grow, so an event whose machine was delayed in the meantime is put back in the queue, at its new time, and 
+ * counted once more by the scheduler.
+ *
+ */
 public abstract class MachineDelaybleEvent extends Event {
 
 	private final Machine machine;
-	
+
 	private final boolean delayable;
-	
+
+	private final long scheduledTime;
+
+	// the scheduler asks for the scheduled time over and over, so it's only rebuilt when the delay changes
+	private long cachedDelay = 0;
+	private Time cachedScheduledTime;
+
 	public MachineDelaybleEvent(Machine machine, Time scheduledTime, boolean delayable) {
 		super(scheduledTime);
-		
+
 		this.machine = machine;
 		this.delayable = delayable;
+		this.scheduledTime = Micros.of(scheduledTime);
 	}
-	
+
+	public MachineDelaybleEvent(Machine machine, long scheduledTime, boolean delayable) {
+		super(Micros.toTime(scheduledTime));
+
+		this.machine = machine;
+		this.delayable = delayable;
+		this.scheduledTime = scheduledTime;
+	}
+
 	@Override
 	public Time getScheduledTime() {
-		Time delay = delayable ? machine.currentDelay() : Time.GENESIS;
-		return super.getScheduledTime().plus(delay);
+		long delay = delayable ? machine.lastKnownDelayMicros() : 0;
+		if(delay == 0) {
+			return super.getScheduledTime();
+		}
+		if(delay != cachedDelay || cachedScheduledTime == null) {
+			cachedDelay = delay;
+			cachedScheduledTime = Micros.toTime(scheduledTime + delay);
+		}
+		return cachedScheduledTime;
+	}
+
+	/**
+	 * @return true if this event is postponed by the delay of its machine
+	 */
+	public boolean isDelayable() {
+		return delayable;
+	}
+
+	/**
+	 * @return the same as {@link #getScheduledTime()}, in microseconds
+	 */
+	public long scheduledTimeMicros() {
+		return delayable ? scheduledTime + machine.lastKnownDelayMicros() : scheduledTime;
 	}
 
 	@Override
-	public abstract void process();
+	public final void process() {
+		if(delayable) {
+			long delay = machine.lastKnownDelayMicros();
+			machine.synchronize();
+			if(machine.lastKnownDelayMicros() != delay) {
+				EventScheduler.schedule(this);
+				return;
+			}
+		}
+		processOnTime();
+	}
+
+	/**
+	 * Processes the event once it is known to happen now, at {@link #scheduledTimeMicros()}.
+	 */
+	protected abstract void processOnTime();
 
 }
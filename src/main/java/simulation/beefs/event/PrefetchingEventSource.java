@@ -0,0 +1,147 @@
+package simulation.beefs.event;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import manelsim.Event;
+import manelsim.EventSource;
+import manelsim.Time;
+
+/**
+ *
+ * Pulls the events of another {@link EventSource} on a worker pool and keeps them in a bounded queue, so the
+ * simulation thread only dequeues events that were already parsed.
+ * <br><br>
+ * Workers never block on a full queue: a refill task parses until the queue is full and finishes, and a new one is
+ * submitted when the queue drops to half of its capacity. That way a pool smaller than the number of sources still
+ * serves all of them. At most one refill task per source runs at a time, so the wrapped source is never used
+ * concurrently.
+ *
+ */
+public class PrefetchingEventSource implements EventSource {
+
+	private static final Event END = new Event(Time.GENESIS) {
+		@Override
+		public void process() { }
+	};
+
+	private final EventSource source;
+
+	private final Executor executor;
+
+	// one extra slot, so the END marker always fits
+	private final BlockingQueue<Event> queue;
+
+	private final int refillThreshold;
+
+	private final AtomicBoolean refillScheduled = new AtomicBoolean(false);
+
+	private volatile boolean sourceExhausted = false;
+
+	private volatile Throwable failure = null;
+
+	private boolean finished = false;
+
+	private final Runnable refill = new Runnable() {
+		@Override
+		public void run() {
+			try {
+				while(!sourceExhausted && queue.remainingCapacity() > 1) {
+					Event event;
+					try {
+						event = source.getNextEvent();
+					} catch (Throwable t) {
+						failure = t;
+						event = null;
+					}
+
+					if(event == null) {
+						sourceExhausted = true;
+						queue.offer(END);
+					} else {
+						queue.offer(event);
+					}
+				}
+			} finally {
+				refillScheduled.set(false);
+			}
+			// the consumer may have drained the queue while this task was finishing
+			if(!sourceExhausted && queue.size() <= refillThreshold) {
+				scheduleRefill();
+			}
+		}
+	};
+
+	public PrefetchingEventSource(EventSource source, Executor executor, int capacity) {
+		if(capacity < 1) {
+			throw new IllegalArgumentException("capacity must be positive");
+		}
+		this.source = source;
+		this.executor = executor;
+		this.queue = new ArrayBlockingQueue<Event>(capacity + 1);
+		this.refillThreshold = capacity / 2;
+
+		scheduleRefill();
+	}
+
+	@Override
+	public Event getNextEvent() {
+		if(finished) {
+			return null;
+		}
+
+		Event event = queue.poll();
+		if(event == null) {
+			scheduleRefill();
+			event = take();
+		} else if(queue.size() <= refillThreshold) {
+			scheduleRefill();
+		}
+
+		if(event == END) {
+			finished = true;
+			if(failure != null) {
+				throw new RuntimeException("Could not prefetch events", failure);
+			}
+			return null;
+		}
+		return event;
+	}
+
+	private Event take() {
+		try {
+			return queue.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void scheduleRefill() {
+		if(!sourceExhausted && refillScheduled.compareAndSet(false, true)) {
+			executor.execute(refill);
+		}
+	}
+
+	/**
+	 * @return a pool of daemon threads, so it doesn't keep the JVM alive when the simulation ends
+	 */
+	public static ExecutorService newPool(int threads) {
+		return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger(0);
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "trace-prefetch-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+}
@@ -0,0 +1,178 @@
+package simulation.beefs.event.filesystem;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import manelsim.Event;
+import manelsim.EventSource;
+import simulation.beefs.model.FileSystemClient;
+import simulation.beefs.model.PathDictionary;
+import simulation.beefs.trace.BinaryFileSystemTraceIndex;
+import simulation.beefs.trace.BinaryTraceFormat;
+
+/**
+ *
+ * The counterpart of {@link FileSystemTraceEventSource} for traces converted to the format described in
+ * {@link BinaryTraceFormat}.
+ * <br><br>
+ * When the trace is read from a file, it is positioned by its {@link BinaryFileSystemTraceIndex} close to the
+ * simulation start instead of reading all the records before it.
+ *
+ */
+public class BinaryFileSystemTraceEventSource implements EventSource {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final DataInputStream traceStream;
+
+	private final FileSystemClient client;
+
+	// the PathDictionary ids of the paths of the trace, indexed by their ids in the trace
+	private int [] fileIds = new int[1024];
+	private int pathCount = 0;
+
+	private final long start;
+
+	private boolean ended = false;
+
+	public BinaryFileSystemTraceEventSource(FileSystemClient client, InputStream traceStream) {
+		this(client, traceStream, Long.MIN_VALUE);
+	}
+
+	/**
+	 * @param start operations that begin before it, in microseconds, are skipped
+	 */
+	public BinaryFileSystemTraceEventSource(FileSystemClient client, InputStream traceStream, long start) {
+		this.traceStream = new DataInputStream(new BufferedInputStream(traceStream, BUFFER_SIZE));
+		this.client = client;
+		this.start = start;
+
+		try {
+			if(traceStream instanceof FileInputStream) {
+				// positions the file before the buffered stream reads anything from it
+				seekToSimulationStart(((FileInputStream) traceStream).getChannel());
+			} else {
+				BinaryTraceFormat.checkHeader(this.traceStream, BinaryTraceFormat.FS_MAGIC);
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public Event getNextEvent() {
+		if(ended) {
+			return null;
+		}
+		try {
+			while(true) {
+				byte op;
+				try {
+					op = traceStream.readByte();
+				} catch (EOFException e) {
+					throw BinaryTraceFormat.truncated();
+				}
+
+				Event event = null;
+				switch(op) {
+				case BinaryTraceFormat.PATH:
+					readPath();
+					break;
+				case BinaryTraceFormat.READ:
+					event = readRead();
+					break;
+				case BinaryTraceFormat.WRITE:
+					event = readWrite();
+					break;
+				case BinaryTraceFormat.CLOSE:
+					event = readClose();
+					break;
+				case BinaryTraceFormat.UNLINK:
+					event = readUnlink();
+					break;
+				case BinaryTraceFormat.END:
+					ended = true;
+					return null;
+				default:
+					throw new IOException("Unknown op code " + op);
+				}
+
+				if(event != null) {
+					return event;
+				}
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void seekToSimulationStart(FileChannel channel) throws IOException {
+		BinaryTraceFormat.checkHeader(channel, BinaryTraceFormat.FS_MAGIC);
+		for(String path : BinaryFileSystemTraceIndex.seek(channel, start)) {
+			declarePath(path);
+		}
+	}
+
+	private void readPath() throws IOException {
+		int pathId = traceStream.readInt();
+		if(pathId != pathCount) {
+			throw new IOException("Path ids out of order: expected " + pathCount + " but found " + pathId);
+		}
+		declarePath(traceStream.readUTF());
+	}
+
+	private void declarePath(String path) {
+		if(pathCount == fileIds.length) {
+			fileIds = Arrays.copyOf(fileIds, pathCount * 2);
+		}
+		fileIds[pathCount++] = PathDictionary.id(path);
+	}
+
+	private Read readRead() throws IOException {
+		long begin = traceStream.readLong();
+		long duration = traceStream.readLong();
+		int fileId = readPathReference();
+		long bytesTransfered = traceStream.readLong();
+
+		return (begin < start) ? null : new Read(client, begin, duration, fileId, bytesTransfered);
+	}
+
+	private Write readWrite() throws IOException {
+		long begin = traceStream.readLong();
+		long duration = traceStream.readLong();
+		int fileId = readPathReference();
+		long bytesTransfered = traceStream.readLong();
+		long fileSize = traceStream.readLong();
+
+		return (begin < start) ? null : new Write(client, begin, duration, fileId, bytesTransfered, fileSize);
+	}
+
+	private Close readClose() throws IOException {
+		long begin = traceStream.readLong();
+		int fileId = readPathReference();
+
+		return (begin < start) ? null : new Close(client, begin, fileId);
+	}
+
+	private Unlink readUnlink() throws IOException {
+		long begin = traceStream.readLong();
+		int fileId = readPathReference();
+
+		return (begin < start) ? null : new Unlink(client, begin, fileId);
+	}
+
+	private int readPathReference() throws IOException {
+		int pathId = traceStream.readInt();
+		if(pathId >= pathCount) {
+			throw new IOException("Reference to undeclared path " + pathId);
+		}
+		return fileIds[pathId];
+	}
+
+}
@@ -3,22 +3,28 @@ package simulation.beefs.event.filesystem;
 import manelsim.Time;
 import simulation.beefs.event.MachineDelaybleEvent;
 import simulation.beefs.model.FileSystemClient;
+import simulation.beefs.model.PathDictionary;
+import simulation.beefs.util.Micros;
 
 public class Close extends MachineDelaybleEvent {
 	
-	private final String filePath;
+	private final int fileId;
 	private final FileSystemClient client;
 
-	public Close(FileSystemClient client, Time scheduledTime, String filePath) {
+	public Close(FileSystemClient client, long scheduledTime, int fileId) {
 		super(client.host(), scheduledTime, true);
 		
-		this.filePath = filePath;
+		this.fileId = fileId;
 		this.client = client;
 	}
 
+	public Close(FileSystemClient client, Time scheduledTime, String filePath) {
+		this(client, Micros.of(scheduledTime), PathDictionary.id(filePath));
+	}
+
 	@Override
-	public void process() {
-		client.close(filePath);
+	protected void processOnTime() {
+		client.close(fileId);
 	}
 
 }
@@ -0,0 +1,308 @@
+package simulation.beefs.event.filesystem;
+
+import java.util.Arrays;
+
+import simulation.beefs.model.PathDictionary;
+import simulation.beefs.trace.TraceIndex;
+
+/**
+ *
+ * Parses the lines of a filesystem trace without allocating anything but the paths it hasn't seen yet, which are
+ * registered in the {@link PathDictionary}. The fields of
+ * the last parsed line are kept in this parser until the next call to {@link #parse(byte[], int)}, so a single
+ * instance must not be shared between trace readers.
+ * <br><br>
+ * The expected line formats are:
+ * <br><br>
+ * read	&lt;begin&gt;-&lt;elapsed&gt;	&lt;fullpath&gt;	&lt;length&gt;<br>
+ * write	&lt;begin&gt;-&lt;elapsed&gt;	&lt;fullpath&gt;	&lt;bytes_transfered&gt;	&lt;file_size&gt;<br>
+ * close	&lt;begin&gt;-&lt;elapsed&gt;	&lt;fullpath&gt;<br>
+ * unlink	&lt;begin&gt;-&lt;elapsed&gt;	&lt;fullpath&gt;
+ * <br><br>
+ * Times are in microseconds. Paths of reads and writes can have empty spaces, in which case their tokens are
+ * concatenated. Empty lines and lines starting with # are skipped. Lines of other operations are reported as
+ * {@link #UNSUPPORTED}.
+ *
+ */
+public class FileSystemTraceLineParser {
+
+	public static final int SKIP = 0;
+	public static final int READ = 1;
+	public static final int WRITE = 2;
+	public static final int CLOSE = 3;
+	public static final int UNLINK = 4;
+	public static final int UNSUPPORTED = 5;
+
+	// distinct operation names kept by operationName(); traces have just a handful of them
+	private static final int MAX_OPERATION_NAMES = 64;
+	private static final String OTHER_OPERATIONS = "other";
+
+	private static final byte [] READ_TOKEN = "read".getBytes();
+	private static final byte [] WRITE_TOKEN = "write".getBytes();
+	private static final byte [] CLOSE_TOKEN = "close".getBytes();
+	private static final byte [] UNLINK_TOKEN = "unlink".getBytes();
+
+	private final PathCache pathCache = new PathCache();
+
+	private byte [] line;
+	private int [] tokenStarts = new int[16];
+	private int [] tokenEnds = new int[16];
+	private int tokenCount;
+	private byte [] pathBytes = new byte[1024];
+
+	private byte [][] operationNameBytes = new byte[8][];
+	private String [] operationNames = new String[8];
+	private int operationNameCount = 0;
+
+	// fields of the last parsed line
+	private int operation;
+	private long begin;
+	private long elapsed;
+	private int fileId;
+	private long bytesTransfered;
+	private long fileSize;
+
+	/**
+	 * @return the operation of the line, {@link #SKIP} if the line doesn't describe an event or {@link #UNSUPPORTED}
+	 * if it describes an operation that is not simulated
+	 * @throws IllegalArgumentException if the line is bad formatted
+	 */
+	public int parse(byte [] line, int length) {
+		this.line = line;
+		tokenize(length);
+
+		operation = SKIP;
+		if(tokenCount == 0 || line[0] == '#') {
+			return SKIP;
+		}
+
+		int pathTokens;
+		if(tokenEquals(0, READ_TOKEN)) {
+			pathTokens = tokenCount - 3;
+			parseTime(1);
+			fileId = parsePath(2, pathTokens);
+			bytesTransfered = parseLong(2 + pathTokens);
+			operation = READ;
+		} else if(tokenEquals(0, WRITE_TOKEN)) {
+			pathTokens = tokenCount - 4;
+			parseTime(1);
+			fileId = parsePath(2, pathTokens);
+			bytesTransfered = parseLong(2 + pathTokens);
+			fileSize = parseLong(3 + pathTokens);
+			operation = WRITE;
+		} else if(tokenEquals(0, CLOSE_TOKEN)) {
+			parseTime(1);
+			fileId = parsePath(2, 1);
+			operation = CLOSE;
+		} else if(tokenEquals(0, UNLINK_TOKEN)) {
+			parseTime(1);
+			fileId = parsePath(2, 1);
+			operation = UNLINK;
+		} else {
+			operation = UNSUPPORTED;
+		}
+
+		return operation;
+	}
+
+	/**
+	 * A cheaper alternative to {@link #parse(byte[], int)} when only the begin of the line is needed. Nothing is 
+	 * registered in the {@link PathDictionary}.
+	 * @return the begin of the line, or {@link TraceIndex.LineKey#NONE} if the line doesn't have one
+	 */
+	public static long begin(byte [] line, int length) {
+		int i = 0;
+		while(i < length && isWhitespace(line[i])) {
+			i++;
+		}
+		if(i == length || line[i] == '#') {
+			return TraceIndex.LineKey.NONE;
+		}
+		while(i < length && !isWhitespace(line[i])) {
+			i++;
+		}
+		while(i < length && isWhitespace(line[i])) {
+			i++;
+		}
+
+		int firstDigit = i;
+		long begin = 0;
+		while(i < length && line[i] >= '0' && line[i] <= '9') {
+			begin = begin * 10 + (line[i] - '0');
+			i++;
+		}
+		if(i == firstDigit || i == length || line[i] != '-') {
+			return TraceIndex.LineKey.NONE;
+		}
+		return begin;
+	}
+
+	public int operation() {
+		return operation;
+	}
+
+	/**
+	 * @return the name of the operation of the last parsed line (its first token), or null if the line had no 
+	 * tokens. The names are cached, so no String is created for names already seen.
+	 */
+	public String operationName() {
+		if(tokenCount == 0) {
+			return null;
+		}
+		for(int i = 0; i < operationNameCount; i++) {
+			if(tokenEquals(0, operationNameBytes[i])) {
+				return operationNames[i];
+			}
+		}
+		if(operationNameCount == MAX_OPERATION_NAMES) {
+			return OTHER_OPERATIONS;
+		}
+		if(operationNameCount == operationNames.length) {
+			operationNameBytes = Arrays.copyOf(operationNameBytes, operationNameCount * 2);
+			operationNames = Arrays.copyOf(operationNames, operationNameCount * 2);
+		}
+		byte [] name = Arrays.copyOfRange(line, tokenStarts[0], tokenEnds[0]);
+		operationNameBytes[operationNameCount] = name;
+		operationNames[operationNameCount++] = new String(name);
+		return operationNames[operationNameCount - 1];
+	}
+
+	public long begin() {
+		return begin;
+	}
+
+	public long elapsed() {
+		return elapsed;
+	}
+
+	/**
+	 * @return the {@link PathDictionary} id of the path
+	 */
+	public int fileId() {
+		return fileId;
+	}
+
+	public long bytesTransfered() {
+		return bytesTransfered;
+	}
+
+	public long fileSize() {
+		return fileSize;
+	}
+
+	private void tokenize(int length) {
+		tokenCount = 0;
+		int i = 0;
+		while(i < length) {
+			while(i < length && isWhitespace(line[i])) {
+				i++;
+			}
+			if(i == length) {
+				break;
+			}
+			if(tokenCount == tokenStarts.length) {
+				int [] starts = new int[tokenCount * 2];
+				int [] ends = new int[tokenCount * 2];
+				System.arraycopy(tokenStarts, 0, starts, 0, tokenCount);
+				System.arraycopy(tokenEnds, 0, ends, 0, tokenCount);
+				tokenStarts = starts;
+				tokenEnds = ends;
+			}
+			tokenStarts[tokenCount] = i;
+			while(i < length && !isWhitespace(line[i])) {
+				i++;
+			}
+			tokenEnds[tokenCount++] = i;
+		}
+	}
+
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '\f';
+	}
+
+	private boolean tokenEquals(int token, byte [] expected) {
+		int start = tokenStarts[token];
+		if(tokenEnds[token] - start != expected.length) {
+			return false;
+		}
+		for(int i = 0; i < expected.length; i++) {
+			if(line[start + i] != expected[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void parseTime(int token) {
+		checkToken(token);
+		int separator = -1;
+		for(int i = tokenStarts[token]; i < tokenEnds[token]; i++) {
+			if(line[i] == '-') {
+				separator = i;
+				break;
+			}
+		}
+		if(separator == -1) {
+			throw new IllegalArgumentException("begin-elapsed expected");
+		}
+		begin = parseLong(tokenStarts[token], separator);
+		elapsed = parseLong(separator + 1, tokenEnds[token]);
+	}
+
+	private int parsePath(int firstToken, int numTokens) {
+		if(numTokens < 0) {
+			throw new IllegalArgumentException();
+		}
+		checkToken(firstToken + numTokens - 1);
+
+		int length = 0;
+		for(int token = firstToken; token < firstToken + numTokens; token++) {
+			int tokenLength = tokenEnds[token] - tokenStarts[token];
+			if(length + tokenLength > pathBytes.length) {
+				byte [] bigger = new byte[Math.max(length + tokenLength, pathBytes.length * 2)];
+				System.arraycopy(pathBytes, 0, bigger, 0, length);
+				pathBytes = bigger;
+			}
+			System.arraycopy(line, tokenStarts[token], pathBytes, length, tokenLength);
+			length += tokenLength;
+		}
+
+		return pathCache.get(pathBytes, length);
+	}
+
+	private long parseLong(int token) {
+		checkToken(token);
+		return parseLong(tokenStarts[token], tokenEnds[token]);
+	}
+
+	private long parseLong(int from, int to) {
+		if(from == to) {
+			throw new NumberFormatException("empty number");
+		}
+		boolean negative = line[from] == '-';
+		int i = negative || line[from] == '+' ? from + 1 : from;
+		if(i == to) {
+			throw new NumberFormatException("sign without digits");
+		}
+
+		long value = 0;
+		for(; i < to; i++) {
+			int digit = line[i] - '0';
+			if(digit < 0 || digit > 9) {
+				throw new NumberFormatException("not a digit: " + (char) line[i]);
+			}
+			if(value > (Long.MAX_VALUE - digit) / 10) {
+				throw new NumberFormatException("out of range");
+			}
+			value = value * 10 + digit;
+		}
+		return negative ? -value : value;
+	}
+
+	private void checkToken(int token) {
+		if(token >= tokenCount) {
+			throw new IllegalArgumentException("missing token " + token);
+		}
+	}
+
+}
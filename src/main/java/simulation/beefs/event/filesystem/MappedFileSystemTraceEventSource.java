@@ -0,0 +1,135 @@
+package simulation.beefs.event.filesystem;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import manelsim.Event;
+import manelsim.EventSource;
+import simulation.beefs.model.FileSystemClient;
+import simulation.beefs.trace.TraceIndex;
+
+/**
+ *
+ * Reads the same traces {@link FileSystemTraceEventSource} does, but memory-maps the trace file and parses its lines
+ * straight from the mapped bytes. Lines are never decoded to {@link String}s; only the paths are, and only the first
+ * time each one shows up.
+ * <br><br>
+ * The file is mapped in windows of {@link #DEFAULT_WINDOW_SIZE} bytes, so traces bigger than the address space a single
+ * mapping can cover are fine. A line can't be longer than a window. When a start is given, the first window is mapped
+ * at the offset the {@link TraceIndex} of the trace gives for it.
+ *
+ */
+public class MappedFileSystemTraceEventSource implements EventSource {
+
+	static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+	private final FileSystemClient client;
+
+	private final long start;
+
+	private final FileChannel channel;
+	private final long fileSize;
+	private final int windowSize;
+
+	private MappedByteBuffer window;
+	private long windowStart = 0;
+
+	private final FileSystemTraceLineParser parser = new FileSystemTraceLineParser();
+
+	private byte [] line = new byte[1024];
+	private int lineLength;
+
+	public MappedFileSystemTraceEventSource(FileSystemClient client, File trace) throws IOException {
+		this(client, trace, Long.MIN_VALUE, DEFAULT_WINDOW_SIZE);
+	}
+
+	/**
+	 * @param start operations that begin before it, in microseconds, are skipped
+	 */
+	public MappedFileSystemTraceEventSource(FileSystemClient client, File trace, long start) throws IOException {
+		this(client, trace, start, DEFAULT_WINDOW_SIZE);
+	}
+
+	MappedFileSystemTraceEventSource(FileSystemClient client, File trace, long start, int windowSize) 
+			throws IOException {
+		
+		this.client = client;
+		this.start = start;
+		this.channel = new FileInputStream(trace).getChannel();
+		this.fileSize = channel.size();
+		this.windowSize = windowSize;
+		if(start == Long.MIN_VALUE) {
+			map(0);
+		} else {
+			map(TraceIndex.load(trace, FileSystemTraceEventSource.INDEX_KEY).offsetBefore(start));
+		}
+	}
+
+	@Override
+	public Event getNextEvent() {
+		try {
+			while(readNextLine()) {
+				Event event = FileSystemTraceEventSource.parseEvent(client, parser, line, lineLength, start);
+				if(event != null) {
+					return event;
+				}
+			}
+			channel.close();
+			return null;
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void map(long position) throws IOException {
+		windowStart = position;
+		long length = Math.min(windowSize, fileSize - position);
+		window = channel.map(MapMode.READ_ONLY, position, length);
+	}
+
+	/**
+	 * Copies the next line of the trace to {@link #line}, remapping the window when the line crosses its end.
+	 * @return false if the end of the trace was reached
+	 */
+	private boolean readNextLine() throws IOException {
+		int start = window.position();
+		if(windowStart + start >= fileSize) {
+			return false;
+		}
+
+		int end = start;
+		while(true) {
+			if(end == window.limit()) {
+				if(windowStart + end == fileSize) {
+					break; // last line without a line separator
+				}
+				if(start == 0) {
+					throw new IOException("Line starting at byte " + windowStart + " is longer than " + windowSize);
+				}
+				map(windowStart + start);
+				end -= start;
+				start = 0;
+			}
+			if(window.get(end) == '\n') {
+				break;
+			}
+			end++;
+		}
+
+		lineLength = end - start;
+		if(lineLength > line.length) {
+			line = new byte[Math.max(lineLength, line.length * 2)];
+		}
+		window.get(line, 0, lineLength);
+		if(end < window.limit()) {
+			window.get(); // skips the line separator
+		}
+
+		return true;
+	}
+
+}
@@ -0,0 +1,90 @@
+package simulation.beefs.event.filesystem;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import simulation.beefs.model.PathDictionary;
+
+/**
+ *
+ * Maps the raw bytes of a file path to its {@link PathDictionary} id, so trace readers that work over bytes only decode
+ * a path the first time they see it.
+ *
+ */
+class PathCache {
+
+	private static final Charset CHARSET = Charset.defaultCharset();
+
+	private byte [][] keys = new byte[1024][];
+	private int [] values = new int[1024];
+	private int [] hashes = new int[1024];
+	private int size = 0;
+
+	public int get(byte [] bytes, int length) {
+		int hash = hash(bytes, length);
+		int mask = keys.length - 1;
+		int slot = hash & mask;
+
+		while(keys[slot] != null) {
+			if(hashes[slot] == hash && equals(keys[slot], bytes, length)) {
+				return values[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		int id = PathDictionary.id(new String(bytes, 0, length, CHARSET));
+		keys[slot] = Arrays.copyOf(bytes, length);
+		values[slot] = id;
+		hashes[slot] = hash;
+
+		if(++size > keys.length / 2) {
+			grow();
+		}
+
+		return id;
+	}
+
+	private void grow() {
+		byte [][] oldKeys = keys;
+		int [] oldValues = values;
+		int [] oldHashes = hashes;
+
+		keys = new byte[oldKeys.length * 2][];
+		values = new int[oldKeys.length * 2];
+		hashes = new int[oldKeys.length * 2];
+
+		int mask = keys.length - 1;
+		for(int i = 0; i < oldKeys.length; i++) {
+			if(oldKeys[i] != null) {
+				int slot = oldHashes[i] & mask;
+				while(keys[slot] != null) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+				hashes[slot] = oldHashes[i];
+			}
+		}
+	}
+
+	private static int hash(byte [] bytes, int length) {
+		int hash = 1;
+		for(int i = 0; i < length; i++) {
+			hash = 31 * hash + bytes[i];
+		}
+		return hash ^ (hash >>> 16);
+	}
+
+	private static boolean equals(byte [] key, byte [] bytes, int length) {
+		if(key.length != length) {
+			return false;
+		}
+		for(int i = 0; i < length; i++) {
+			if(key[i] != bytes[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
@@ -3,35 +3,44 @@ package simulation.beefs.event.filesystem;
 import manelsim.Time;
 import simulation.beefs.event.MachineDelaybleEvent;
 import simulation.beefs.model.FileSystemClient;
+import simulation.beefs.model.PathDictionary;
+import simulation.beefs.util.Micros;
 
 public class Read extends MachineDelaybleEvent {
 
 	private final long bytesTransfered;
-	private final String filePath;
+	private final int fileId;
 	private final FileSystemClient client;
-	private final Time duration;
+	private final long duration;
 
-	public Read(FileSystemClient client, Time scheduledTime, Time duration, String filePath, long bytesTransfered, boolean delayable) {
+	public Read(FileSystemClient client, long scheduledTime, long duration, int fileId, long bytesTransfered, boolean delayable) {
 		super(client.host(), scheduledTime, delayable);
 		
 		this.duration = duration;
 		this.client = client;
-		this.filePath = filePath;
+		this.fileId = fileId;
 		this.bytesTransfered = bytesTransfered;
 	}
 	
+	public Read(FileSystemClient client, long scheduledTime, long duration, int fileId, long bytesTransfered) {
+		this(client, scheduledTime, duration, fileId, bytesTransfered, true);
+	}
+	
 	public Read(FileSystemClient client, Time scheduledTime, Time duration, String filePath, long bytesTransfered) {
-		this(client, scheduledTime, duration, filePath, bytesTransfered, true);
+		this(client, Micros.of(scheduledTime), Micros.of(duration), PathDictionary.id(filePath), bytesTransfered);
 	}
 
 	@Override
 	public String toString() {
-		return "read\t" + getScheduledTime() + "\t" + filePath + "\t" + bytesTransfered;
+		return "read\t" + getScheduledTime() + "\t" + PathDictionary.path(fileId) + "\t" + bytesTransfered;
 	}
 
 	@Override
-	public void process() {
-		client.read(filePath, bytesTransfered, getScheduledTime(), duration);
+	protected void processOnTime() {
+		if(!isDelayable()) { // postponed by the client
+			client.delayedOperationProcessed(this);
+		}
+		client.read(fileId, bytesTransfered, scheduledTimeMicros(), duration);
 	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,94 @@
+package simulation.beefs.event.filesystem;
+
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *
+ * Counts, by operation, the filesystem trace lines that were skipped because the simulation doesn't support their
+ * operation (Ex.: open, stat) or because they are bad formatted. Only the first bad formatted line of each operation is
+ * reported as a warning; the others are just counted, so dirty traces don't flood the standard error.
+ * <br><br>
+ * Trace readers may run on several threads (see {@link simulation.beefs.event.PrefetchingEventSource}), so the counts
+ * are kept thread-safe.
+ *
+ */
+public class SkippedTraceLines {
+
+	private static final ConcurrentMap<String, AtomicLong> unsupported = new ConcurrentHashMap<String, AtomicLong>();
+	private static final ConcurrentMap<String, AtomicLong> malformed = new ConcurrentHashMap<String, AtomicLong>();
+
+	public static void unsupported(String operation) {
+		counter(unsupported, operation).incrementAndGet();
+	}
+
+	public static void malformed(String operation, byte [] line, int length) {
+		if(counter(malformed, operation).getAndIncrement() == 0) {
+			System.err.println("Warning: Bad format line (the next ones of " + operation + " are only counted): " +
+					new String(line, 0, length));
+		}
+	}
+
+	public static Map<String, Long> unsupportedByOperation() {
+		return snapshot(unsupported);
+	}
+
+	public static Map<String, Long> malformedByOperation() {
+		return snapshot(malformed);
+	}
+
+	/**
+	 * @return a line per operation with skipped lines: the operation, the unsupported count and the bad formatted 
+	 * count, separated by tabs
+	 */
+	public static String summary() {
+		Map<String, Long> unsupportedCounts = unsupportedByOperation();
+		Map<String, Long> malformedCounts = malformedByOperation();
+		Set<String> operations = new TreeSet<String>(unsupportedCounts.keySet());
+		operations.addAll(malformedCounts.keySet());
+
+		StringBuilder sb = new StringBuilder("Skipped trace lines\tunsupported\tbad format\n");
+		for(String operation : operations) {
+			sb.append(String.format("%s\t%d\t%d\n", operation, count(unsupportedCounts, operation), 
+					count(malformedCounts, operation)));
+		}
+		return sb.toString();
+	}
+
+	private static long count(Map<String, Long> counts, String operation) {
+		Long count = counts.get(operation);
+		return (count == null) ? 0 : count;
+	}
+
+	public static void reset() {
+		unsupported.clear();
+		malformed.clear();
+	}
+
+	private static AtomicLong counter(ConcurrentMap<String, AtomicLong> counters, String operation) {
+		AtomicLong counter = counters.get(operation);
+		if(counter == null) {
+			AtomicLong newCounter = new AtomicLong();
+			counter = counters.putIfAbsent(operation, newCounter);
+			if(counter == null) {
+				counter = newCounter;
+			}
+		}
+		return counter;
+	}
+
+	private static Map<String, Long> snapshot(ConcurrentMap<String, AtomicLong> counters) {
+		Map<String, Long> snapshot = new TreeMap<String, Long>();
+		for(Entry<String, AtomicLong> entry : counters.entrySet()) {
+			snapshot.put(entry.getKey(), entry.getValue().get());
+		}
+		return snapshot;
+	}
+
+}
@@ -3,31 +3,37 @@ package simulation.beefs.event.filesystem;
 import manelsim.Time;
 import simulation.beefs.event.MachineDelaybleEvent;
 import simulation.beefs.model.FileSystemClient;
+import simulation.beefs.model.PathDictionary;
+import simulation.beefs.util.Micros;
 
 public class Unlink extends MachineDelaybleEvent {
 	
-	private final String filePath;
+	private final int fileId;
 	private final FileSystemClient client;
 	
-	public Unlink(FileSystemClient client, Time aScheduledTime, String filePath) {
+	public Unlink(FileSystemClient client, long aScheduledTime, int fileId) {
 		super(client.host(), aScheduledTime, true);
 		
 		this.client = client;
-		this.filePath = filePath;
+		this.fileId = fileId;
+	}
+	
+	public Unlink(FileSystemClient client, Time aScheduledTime, String filePath) {
+		this(client, Micros.of(aScheduledTime), PathDictionary.id(filePath));
 	}
 	
 	public String getFilePath() {
-		return this.filePath;
+		return PathDictionary.path(fileId);
 	}
 	
 	@Override
 	public String toString() {
-		return "unlink\t" + getScheduledTime() + "\t" + filePath;
+		return "unlink\t" + getScheduledTime() + "\t" + PathDictionary.path(fileId);
 	}
 
 	@Override
-	public void process() {
-		client.delete(filePath);
+	protected void processOnTime() {
+		client.delete(fileId);
 	}
 
 }
@@ -19,7 +19,11 @@ public class UpdateFileReplicas extends Event {
 
 	@Override
 	public void process() {
-		metadataServer.updateReplicas(file);
+		metadataServer.updateReplicas(this);
+	}
+	
+	public ReplicatedFile file() {
+		return file;
 	}
 	
 }
@@ -3,16 +3,18 @@ package simulation.beefs.event.filesystem;
 import manelsim.Time;
 import simulation.beefs.event.MachineDelaybleEvent;
 import simulation.beefs.model.FileSystemClient;
+import simulation.beefs.model.PathDictionary;
+import simulation.beefs.util.Micros;
 
 public class Write extends MachineDelaybleEvent {
 
 	private final long bytesTransfered;
 	private final long fileSize;
-	private final String filePath;
-	private final Time duration;
+	private final int fileId;
+	private final long duration;
 	private final FileSystemClient client;
 	
-	public Write(FileSystemClient client, Time scheduledTime, Time duration, String filePath, 
+	public Write(FileSystemClient client, long scheduledTime, long duration, int fileId, 
 			long bytesTransfered, long fileSize, boolean delayable) {
 		
 		super(client.host(), scheduledTime, delayable);
@@ -21,23 +23,33 @@ public class Write extends MachineDelaybleEvent {
 		this.bytesTransfered = bytesTransfered;
 		this.fileSize = fileSize;
 		this.duration = duration;
-		this.filePath = filePath;
+		this.fileId = fileId;
 	}
 
 
+	public Write(FileSystemClient client, long scheduledTime, long duration, int fileId, 
+			long bytesTransfered, long fileSize) {
+		
+		this(client, scheduledTime, duration, fileId, bytesTransfered, fileSize, true);
+	}
+
 	public Write(FileSystemClient client, Time scheduledTime, Time duration, String filePath, 
 			long bytesTransfered, long fileSize) {
 		
-		this(client, scheduledTime, duration, filePath, bytesTransfered, fileSize, true);
+		this(client, Micros.of(scheduledTime), Micros.of(duration), PathDictionary.id(filePath), bytesTransfered, 
+				fileSize);
 	}
 
 	@Override
 	public String toString() {
-		return "write\t" + getScheduledTime() + "\t" + filePath + "\t" + bytesTransfered + "\t" + fileSize;
+		return "write\t" + getScheduledTime() + "\t" + PathDictionary.path(fileId) + "\t" + bytesTransfered + "\t" + fileSize;
 	}
 
 	@Override
-	public void process() {
-		client.write(filePath, fileSize, bytesTransfered, getScheduledTime(), duration);
+	protected void processOnTime() {
+		if(!isDelayable()) { // postponed by the client
+			client.delayedOperationProcessed(this);
+		}
+		client.write(fileId, fileSize, bytesTransfered, scheduledTimeMicros(), duration);
 	}
 }
@@ -0,0 +1,181 @@
+package simulation.beefs.event.machine;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import manelsim.Event;
+import manelsim.Time;
+import simulation.beefs.model.Machine;
+import simulation.beefs.trace.BinaryTraceFormat;
+import simulation.beefs.util.Micros;
+
+/**
+ *
+ * The counterpart of {@link UserActivityTraceEventSource} for traces converted to the format described in
+ * {@link BinaryTraceFormat}.
+ * <br><br>
+ * Records have a fixed size, so when the trace is read from a file the record that contains the simulation start is
+ * found by a binary search instead of reading all the records before it. That relies on the records being sorted and
+ * contiguous, as the idleness traces are.
+ *
+ */
+public class BinaryUserActivityTraceEventSource implements UserActivityTrace {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final Machine machine;
+	private final DataInputStream eventStream;
+	// the first record is read, and adjusted, by the constructor
+	private boolean atFirstRecord;
+	private boolean ended = false;
+
+	// fields of the last read record
+	private byte type;
+	private long begin;
+	private long duration;
+
+	public BinaryUserActivityTraceEventSource(Machine machine, InputStream eventStream, Time emulationStartTime) {
+		this.machine = machine;
+		this.eventStream = new DataInputStream(new BufferedInputStream(eventStream, BUFFER_SIZE));
+
+		long start = Micros.of(emulationStartTime);
+		try {
+			if(eventStream instanceof FileInputStream) {
+				// positions the file before the buffered stream reads anything from it
+				seekToSimulationStart(((FileInputStream) eventStream).getChannel(), start);
+			} else {
+				BinaryTraceFormat.checkHeader(this.eventStream, BinaryTraceFormat.IDLENESS_MAGIC);
+			}
+			this.atFirstRecord = advanceToSimulationStart(start);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public Event getNextEvent() {
+		return nextRecord() ? newEvent() : null;
+	}
+
+	@Override
+	public boolean nextRecord() {
+		if(atFirstRecord) {
+			atFirstRecord = false;
+			return true;
+		}
+		try {
+			return readRecord();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public boolean isIdleness() {
+		return type == BinaryTraceFormat.IDLENESS;
+	}
+
+	@Override
+	public long begin() {
+		return begin;
+	}
+
+	@Override
+	public long duration() {
+		return duration;
+	}
+
+	/**
+	 * Checks the header and the END record and positions <code>channel</code> on the first record that ends at or
+	 * after <code>start</code>.
+	 */
+	private static void seekToSimulationStart(FileChannel channel, long start) throws IOException {
+		BinaryTraceFormat.checkHeader(channel, BinaryTraceFormat.IDLENESS_MAGIC);
+
+		long recordsSize = channel.size() - BinaryTraceFormat.HEADER_SIZE;
+		ByteBuffer record = ByteBuffer.allocate(BinaryTraceFormat.IDLENESS_RECORD_SIZE);
+		if(recordsSize == 0 || recordsSize % BinaryTraceFormat.IDLENESS_RECORD_SIZE != 0) {
+			throw BinaryTraceFormat.truncated();
+		}
+		// the END record is not searched
+		long records = recordsSize / BinaryTraceFormat.IDLENESS_RECORD_SIZE - 1;
+		BinaryTraceFormat.readFully(channel, record, recordPosition(records));
+		if(record.get(0) != BinaryTraceFormat.END) {
+			throw BinaryTraceFormat.truncated();
+		}
+
+		long low = 0;
+		long high = records;
+		while(low < high) {
+			long middle = (low + high) >>> 1;
+			BinaryTraceFormat.readFully(channel, record, recordPosition(middle));
+			long end = (record.getLong(1) + record.getLong(9)) * Micros.PER_SECOND;
+			if(end < start) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+
+		channel.position(recordPosition(low));
+	}
+
+	private static long recordPosition(long record) {
+		return BinaryTraceFormat.HEADER_SIZE + record * BinaryTraceFormat.IDLENESS_RECORD_SIZE;
+	}
+
+	/**
+	 * Skips the records that end before the simulation start without creating events for them. The record that
+	 * contains the simulation start time is adjusted to begin at it.
+	 */
+	private boolean advanceToSimulationStart(long start) throws IOException {
+		do {
+			if(!readRecord()) {
+				return false;
+			}
+		} while(begin + duration < start);
+
+		duration = begin + duration - start;
+		begin = start;
+		return true;
+	}
+
+	/**
+	 * Reads the next record into {@link #type}, {@link #begin} and {@link #duration}.
+	 * @return false if there are no more records
+	 */
+	private boolean readRecord() throws IOException {
+		if(ended) {
+			return false;
+		}
+		try {
+			type = eventStream.readByte();
+		} catch (EOFException e) {
+			throw BinaryTraceFormat.truncated();
+		}
+		if(type == BinaryTraceFormat.END) {
+			ended = true;
+			return false;
+		}
+		if(type != BinaryTraceFormat.IDLENESS && type != BinaryTraceFormat.ACTIVITY) {
+			throw new IOException(type + " is not a valid event type.");
+		}
+		begin = eventStream.readLong() * Micros.PER_SECOND;
+		duration = eventStream.readLong() * Micros.PER_SECOND;
+		return true;
+	}
+
+	private Event newEvent() {
+		if(isIdleness()) {
+			return new UserIdleness(machine, begin, duration);
+		} else {
+			return new UserActivity(machine, begin, duration);
+		}
+	}
+}
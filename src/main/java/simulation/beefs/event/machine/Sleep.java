@@ -3,27 +3,36 @@ package simulation.beefs.event.machine;
 import manelsim.Event;
 import manelsim.Time;
 import simulation.beefs.model.Machine;
+import simulation.beefs.util.Micros;
 
 public class Sleep extends Event {
 	
 	private final Machine machine; 
 	
-	private final Time duration;
+	private final long scheduledTime;
+	
+	private final long duration;
 	
 	public Sleep(Machine machine, Time scheduledTime, Time duration) {
-		super(scheduledTime);
+		this(machine, Micros.of(scheduledTime), Micros.of(duration));
+	}
+	
+	public Sleep(Machine machine, long scheduledTime, long duration) {
+		super(Micros.toTime(scheduledTime));
 		
 		this.machine = machine;
+		this.scheduledTime = scheduledTime;
 		this.duration = duration;
 	}
 	
 	@Override
 	public void process() {
-		machine.setSleeping(getScheduledTime(), duration);
+		machine.scheduledEventProcessed(this);
+		machine.setSleeping(scheduledTime, duration);
 	}
 	
 	@Override
 	public String toString() {
-		return String.format("sleep\t%s\t%s", getScheduledTime(), duration);
+		return String.format("sleep\t%s\t%s", getScheduledTime(), Micros.toTime(duration));
 	}
 }
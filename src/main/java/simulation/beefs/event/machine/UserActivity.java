@@ -3,17 +3,26 @@ package simulation.beefs.event.machine;
 import manelsim.Time;
 import simulation.beefs.event.MachineDelaybleEvent;
 import simulation.beefs.model.Machine;
+import simulation.beefs.util.Micros;
 
 public class UserActivity extends MachineDelaybleEvent {
 	
 	private final Machine host;
-	private final Time duration;
+	private final long duration;
 	
 	public UserActivity(Machine host, Time scheduledTime, Time duration) {
-		this(host, scheduledTime, duration, true);
+		this(host, Micros.of(scheduledTime), Micros.of(duration), true);
 	}
 	
 	public UserActivity(Machine host, Time scheduledTime, Time duration, boolean delayable) {
+		this(host, Micros.of(scheduledTime), Micros.of(duration), delayable);
+	}
+	
+	public UserActivity(Machine host, long scheduledTime, long duration) {
+		this(host, scheduledTime, duration, true);
+	}
+	
+	public UserActivity(Machine host, long scheduledTime, long duration, boolean delayable) {
 		super(host, scheduledTime, delayable);
 		
 		this.host = host;
@@ -21,16 +30,23 @@ public class UserActivity extends MachineDelaybleEvent {
 	}
 	
 	@Override
-	public void process() {
-		host.setActive(getScheduledTime(), duration);
+	protected void processOnTime() {
+		if(!isDelayable()) { // scheduled by the machine itself
+			host.scheduledEventProcessed(this);
+		}
+		host.setActive(scheduledTimeMicros(), duration);
 	}
 
 	@Override
 	public String toString() {
-		return String.format("activity\t%s\t%s", getScheduledTime(), duration);
+		return String.format("activity\t%s\t%s", getScheduledTime(), getDuration());
 	}
 	
 	public Time getDuration() {
-		return this.duration;
+		return Micros.toTime(duration);
+	}
+	
+	public long getDurationMicros() {
+		return duration;
 	}
 }
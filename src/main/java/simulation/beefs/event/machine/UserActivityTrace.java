@@ -0,0 +1,36 @@
+package simulation.beefs.event.machine;
+
+import manelsim.EventSource;
+
+/**
+ *
+ * An idleness trace that can also be read record by record, without creating an event for each one. The first
+ * record is the one that contains the simulation start, adjusted to begin at it, as the first event would be.
+ * <br><br>
+ * A trace is read either way, never both.
+ *
+ */
+public interface UserActivityTrace extends EventSource {
+
+	/**
+	 * Reads the next record into {@link #isIdleness()}, {@link #begin()} and {@link #duration()}.
+	 * @return false if there are no more records
+	 */
+	boolean nextRecord();
+
+	/**
+	 * @return true if the last record read is an idleness one, false if it is an activity one
+	 */
+	boolean isIdleness();
+
+	/**
+	 * @return the begin of the last record read, in microseconds, not delayed by the machine
+	 */
+	long begin();
+
+	/**
+	 * @return the duration of the last record read, in microseconds
+	 */
+	long duration();
+
+}
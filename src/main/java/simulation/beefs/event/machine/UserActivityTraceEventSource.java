@@ -4,13 +4,12 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.lang.reflect.Method;
 
 import manelsim.Event;
-import manelsim.EventSource;
 import manelsim.Time;
-import manelsim.Time.Unit;
 import simulation.beefs.model.Machine;
+import simulation.beefs.trace.TraceIndex;
+import simulation.beefs.util.Micros;
 
 
 /**
@@ -25,85 +24,141 @@ import simulation.beefs.model.Machine;
  * started and &lt;duration&gt; is the time in seconds during which the event lasted.
  *
  */
-public class UserActivityTraceEventSource implements EventSource {
+public class UserActivityTraceEventSource implements UserActivityTrace {
+	
+	/**
+	 * Indexes idleness traces by the end of their intervals, in microseconds.
+	 */
+	public static final TraceIndex.LineKey INDEX_KEY = new TraceIndex.LineKey() {
+		@Override
+		public long key(byte [] line, int length) {
+			long [] numbers = new long[2];
+			int i = 0;
+			for(int token = 0; token < 3; token++) {
+				while(i < length && Character.isWhitespace(line[i])) {
+					i++;
+				}
+				int firstDigit = i;
+				while(i < length && !Character.isWhitespace(line[i])) {
+					if(token > 0) {
+						int digit = line[i] - '0';
+						if(digit < 0 || digit > 9) {
+							return NONE;
+						}
+						numbers[token - 1] = numbers[token - 1] * 10 + digit;
+					}
+					i++;
+				}
+				if(i == firstDigit) {
+					return NONE;
+				}
+			}
+			return (numbers[0] + numbers[1]) * Micros.PER_SECOND;
+		}
+	};
 	
 	private final Machine machine;
 	private final BufferedReader eventReader;
-	private Event firstEvent;
+	// the first record is read, and adjusted, by the constructor
+	private boolean atFirstRecord;
+	
+	// fields of the last read line
+	private boolean idleness;
+	private long begin;
+	private long duration;
 	
 	public UserActivityTraceEventSource(Machine machine, InputStream eventStream, Time emulationStartTime) {
 		this.machine = machine;
 		this.eventReader = new BufferedReader(new InputStreamReader(eventStream));
-		this.firstEvent = advanceToSimulationStart(emulationStartTime);
+		this.atFirstRecord = advanceToSimulationStart(Micros.of(emulationStartTime));
 	}
 
 	@Override
 	public Event getNextEvent() {
-		Event event = null;
-		
-		if(firstEvent != null) {
-			event = firstEvent;
-			firstEvent = null;
-		} else {
-			try {
-				String traceLine = eventReader.readLine();
-				
-				if(traceLine != null) {
-					String [] tokens = traceLine.split("\\s");
-					
-					if(tokens.length != 3) {
-						throw new RuntimeException("Bad formatted line: " + traceLine);
-					}
-					
-					String eventType = tokens[0];
-					Time aScheduledTime = new Time(Long.parseLong(tokens[1]), Unit.SECONDS);
-					Time duration = new Time(Long.parseLong(tokens[2]), Unit.SECONDS);
-					
-					if(eventType.equals("idleness")) {
-						event = new UserIdleness(machine, aScheduledTime, duration);
-					} else if(eventType.equals("activity")) {
-						event = new UserActivity(machine, aScheduledTime, duration);
-					} else {
-						throw new RuntimeException(eventType + " is not recognized by this parser as a valid event type.");
-					}
-				}
-				
-			} catch (IOException e) {
-				throw new RuntimeException(e);
-			}
+		return nextRecord() ? newEvent(begin, duration) : null;
+	}
+
+	@Override
+	public boolean nextRecord() {
+		if(atFirstRecord) {
+			atFirstRecord = false;
+			return true;
 		}
-		
-		return event;
+		return readLine();
+	}
+
+	@Override
+	public boolean isIdleness() {
+		return idleness;
+	}
+
+	@Override
+	public long begin() {
+		return begin;
+	}
+
+	@Override
+	public long duration() {
+		return duration;
 	}
 
 	/**
 	 * Advances this EventSource to the interval that contains the simulation start time. That interval start becomes
-	 * the simulation start time and the duration is adjusted accordingly
+	 * the simulation start time and the duration is adjusted accordingly. The lines before it are skipped without 
+	 * creating events for them.
 	 * @param emulationStartTime 
 	 */
-	private Event advanceToSimulationStart(Time emulationStartTime) {
-		Event event;
-		Time duration;
+	private boolean advanceToSimulationStart(long emulationStartTime) {
 		do {
-			event = getNextEvent();
-			duration = getDuration(event);
-		} while(event.getScheduledTime().plus(duration).isEarlierThan(emulationStartTime));
-		
-		Time newDuration = event.getScheduledTime().plus(duration).minus(emulationStartTime);
+			if(!readLine()) {
+				return false;
+			}
+		} while(begin + duration < emulationStartTime);
 		
-		if(event instanceof UserActivity) {
-			return new UserActivity(machine, emulationStartTime, newDuration);
-		} else {
-			return new UserIdleness(machine, emulationStartTime, newDuration);
-		}
+		duration = begin + duration - emulationStartTime;
+		begin = emulationStartTime;
+		return true;
 	}
 	
-	private Time getDuration(Event event) {
+	/**
+	 * Parses the next line of the trace into {@link #idleness}, {@link #begin} and {@link #duration}.
+	 * @return false if there are no more lines
+	 */
+	private boolean readLine() {
 		try {
-			Method getDuration = event.getClass().getMethod("getDuration");
-			return (Time)getDuration.invoke(event);
-		} catch (Throwable t) {
-			throw new RuntimeException("Surprise!", t);
+			String traceLine = eventReader.readLine();
+			if(traceLine == null) {
+				return false;
+			}
+
+			String [] tokens = traceLine.split("\\s");
+
+			if(tokens.length != 3) {
+				throw new RuntimeException("Bad formatted line: " + traceLine);
+			}
+
+			String eventType = tokens[0];
+			if(eventType.equals("idleness")) {
+				idleness = true;
+			} else if(eventType.equals("activity")) {
+				idleness = false;
+			} else {
+				throw new RuntimeException(eventType + " is not recognized by this parser as a valid event type.");
+			}
+			begin = Long.parseLong(tokens[1]) * Micros.PER_SECOND;
+			duration = Long.parseLong(tokens[2]) * Micros.PER_SECOND;
+
+			return true;
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	private Event newEvent(long aScheduledTime, long duration) {
+		if(idleness) {
+			return new UserIdleness(machine, aScheduledTime, duration);
+		} else {
+			return new UserActivity(machine, aScheduledTime, duration);
 		}
 	}
 }
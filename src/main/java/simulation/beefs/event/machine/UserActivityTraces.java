@@ -0,0 +1,40 @@
+package simulation.beefs.event.machine;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import manelsim.Time;
+import simulation.beefs.model.Machine;
+import simulation.beefs.trace.BinaryTraceFormat;
+import simulation.beefs.trace.TraceFiles;
+import simulation.beefs.trace.TraceIndex;
+import simulation.beefs.util.Micros;
+
+/**
+ *
+ * Opens the idleness trace of a machine, preferring the binary version, as written by
+ * {@link simulation.beefs.trace.TraceConverter}, when it sits next to the text one. Text traces may be compressed (see
+ * {@link TraceFiles}). Uncompressed text traces are read from the offset their {@link TraceIndex} gives for the
+ * emulation start.
+ *
+ */
+public class UserActivityTraces {
+
+	/**
+	 * @param machine the machine of the events. It may be null if the trace is only read record by record.
+	 */
+	public static UserActivityTrace open(File tracesDir, String machineName, Machine machine, Time emulationStartTime)
+			throws IOException {
+		File trace = TraceFiles.find(tracesDir, "idleness-" + machineName);
+		File binaryTrace = BinaryTraceFormat.convertedTrace(trace);
+		if(binaryTrace != null) {
+			return new BinaryUserActivityTraceEventSource(machine, new FileInputStream(binaryTrace), emulationStartTime);
+		}
+		InputStream traceStream =
+				TraceIndex.openAt(trace, Micros.of(emulationStartTime), UserActivityTraceEventSource.INDEX_KEY);
+		return new UserActivityTraceEventSource(machine, traceStream, emulationStartTime);
+	}
+
+}
@@ -3,18 +3,27 @@ package simulation.beefs.event.machine;
 import manelsim.Time;
 import simulation.beefs.event.MachineDelaybleEvent;
 import simulation.beefs.model.Machine;
+import simulation.beefs.util.Micros;
 
 public class UserIdleness extends MachineDelaybleEvent {
 	
 	private final Machine machine;
 	
-	private final Time duration;
+	private final long duration;
 	
 	public UserIdleness(Machine machine, Time scheduledTime, Time duration) {
-		this(machine, scheduledTime, duration, true);
+		this(machine, Micros.of(scheduledTime), Micros.of(duration), true);
 	}
 	
 	public UserIdleness(Machine machine, Time scheduledTime, Time duration, boolean delayable) {
+		this(machine, Micros.of(scheduledTime), Micros.of(duration), delayable);
+	}
+	
+	public UserIdleness(Machine machine, long scheduledTime, long duration) {
+		this(machine, scheduledTime, duration, true);
+	}
+	
+	public UserIdleness(Machine machine, long scheduledTime, long duration, boolean delayable) {
 		super(machine, scheduledTime, delayable);
 		
 		this.machine = machine;
@@ -22,12 +31,19 @@ public class UserIdleness extends MachineDelaybleEvent {
 	}
 
 	@Override
-	public void process() {
-		machine.setIdle(getScheduledTime(), duration);
+	protected void processOnTime() {
+		if(!isDelayable()) { // scheduled by the machine itself
+			machine.scheduledEventProcessed(this);
+		}
+		machine.setIdle(scheduledTimeMicros(), duration);
 	}
 	
 	public Time getDuration() {
-		return this.duration;
+		return Micros.toTime(duration);
+	}
+	
+	public long getDurationMicros() {
+		return duration;
 	}
 
 }
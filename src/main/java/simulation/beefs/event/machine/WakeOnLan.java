@@ -3,19 +3,28 @@ package simulation.beefs.event.machine;
 import manelsim.Event;
 import manelsim.Time;
 import simulation.beefs.model.Machine;
+import simulation.beefs.util.Micros;
 
 public class WakeOnLan extends Event {
 	
 	private final Machine machine;
+	
+	private final long scheduledTime;
 
 	public WakeOnLan(Machine machine, Time scheduledTime) {
-		super(scheduledTime);
+		this(machine, Micros.of(scheduledTime));
+	}
+
+	public WakeOnLan(Machine machine, long scheduledTime) {
+		super(Micros.toTime(scheduledTime));
 		this.machine = machine;
+		this.scheduledTime = scheduledTime;
 	}
 
 	@Override
 	public void process() {
-		machine.wakeOnLan(getScheduledTime());
+		machine.scheduledEventProcessed(this);
+		machine.wakeOnLan(scheduledTime);
 	}
 
 }
@@ -0,0 +1,248 @@
+package simulation.beefs.log;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ *
+ * Hands the records of the {@link EventLog} to another sink on a background thread. Records are copied into batches of
+ * primitive columns on the simulation thread; full batches are passed to the writer thread, which replays them into
+ * the wrapped sink and gives them back to be reused. The simulation thread only waits when the writer is a few batches
+ * behind.
+ * <br><br>
+ * A failure of the wrapped sink is rethrown on the simulation thread on the next call.
+ *
+ */
+public class AsyncEventLogSink implements EventLogSink {
+
+	public static final int DEFAULT_BATCH_SIZE = 4096;
+
+	private static final int BATCHES = 4;
+
+	private static final byte REPLICA_CHANGE = 0;
+	private static final byte FILE_DELETED = 1;
+	private static final byte FAILED_WRITE = 2;
+	private static final byte FILE_NOT_CREATED = 3;
+	private static final byte DELAYED_WRITE = 4;
+	private static final byte REPLICATION_FAILED = 5;
+	private static final byte SPACE_SAMPLE = 6;
+
+	private static class Batch {
+		final byte [] types;
+		final long [] times;
+		final long [] longs;
+		final int [] ints;
+		final String [] hosts;
+		int size = 0;
+		boolean flush = false;
+		boolean last = false;
+
+		Batch(int capacity) {
+			types = new byte[capacity];
+			times = new long[capacity];
+			longs = new long[capacity];
+			ints = new int[capacity];
+			hosts = new String[capacity];
+		}
+	}
+
+	private final EventLogSink sink;
+
+	private final BlockingQueue<Batch> full = new ArrayBlockingQueue<Batch>(BATCHES);
+	private final BlockingQueue<Batch> free = new ArrayBlockingQueue<Batch>(BATCHES);
+	private final BlockingQueue<Batch> flushed = new ArrayBlockingQueue<Batch>(1);
+
+	private final Thread writer;
+
+	private volatile Throwable failure = null;
+
+	private Batch current;
+
+	private boolean closed = false;
+
+	public AsyncEventLogSink(EventLogSink sink, int batchSize) {
+		this.sink = sink;
+		for(int i = 0; i < BATCHES - 1; i++) {
+			free.add(new Batch(batchSize));
+		}
+		current = new Batch(batchSize);
+
+		writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				write();
+			}
+		}, "event-log-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	@Override
+	public void replicaChange(long time, int fileId, int replicasUpToDate) {
+		Batch batch = next(REPLICA_CHANGE, time);
+		batch.ints[batch.size] = fileId;
+		batch.longs[batch.size] = replicasUpToDate;
+		added(batch);
+	}
+
+	@Override
+	public void fileDeleted(long time, int fileId) {
+		Batch batch = next(FILE_DELETED, time);
+		batch.ints[batch.size] = fileId;
+		added(batch);
+	}
+
+	@Override
+	public void failedWrite(long time, String host, long bytesNotWritten) {
+		Batch batch = next(FAILED_WRITE, time);
+		batch.hosts[batch.size] = host;
+		batch.longs[batch.size] = bytesNotWritten;
+		added(batch);
+	}
+
+	@Override
+	public void fileNotCreated(long time) {
+		added(next(FILE_NOT_CREATED, time));
+	}
+
+	@Override
+	public void delayedWrite(long time) {
+		added(next(DELAYED_WRITE, time));
+	}
+
+	@Override
+	public void replicationFailed(long time, long bytes) {
+		Batch batch = next(REPLICATION_FAILED, time);
+		batch.longs[batch.size] = bytes;
+		added(batch);
+	}
+
+	@Override
+	public void spaceSample(long time, String host, long freeSpace) {
+		Batch batch = next(SPACE_SAMPLE, time);
+		batch.hosts[batch.size] = host;
+		batch.longs[batch.size] = freeSpace;
+		added(batch);
+	}
+
+	/**
+	 * Waits until the wrapped sink has received and flushed all the records logged so far.
+	 */
+	@Override
+	public void flush() throws IOException {
+		checkFailure();
+		current.flush = true;
+		hand(current);
+		current = take(flushed);
+		checkFailure();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if(closed) {
+			return;
+		}
+		closed = true;
+		current.flush = true;
+		current.last = true;
+		hand(current);
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		checkFailure();
+	}
+
+	private Batch next(byte type, long time) {
+		if(closed) {
+			throw new IllegalStateException("event log is closed");
+		}
+		Batch batch = current;
+		batch.types[batch.size] = type;
+		batch.times[batch.size] = time;
+		return batch;
+	}
+
+	private void added(Batch batch) {
+		if(++batch.size == batch.types.length) {
+			checkFailure();
+			hand(batch);
+			current = take(free);
+		}
+	}
+
+	private void hand(Batch batch) {
+		try {
+			full.put(batch);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static Batch take(BlockingQueue<Batch> queue) {
+		try {
+			return queue.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void checkFailure() {
+		if(failure != null) {
+			throw new RuntimeException("event log writer failed", failure);
+		}
+	}
+
+	private void write() {
+		while(true) {
+			Batch batch = take(full);
+			try {
+				if(failure == null) {
+					replay(batch);
+					if(batch.flush) {
+						sink.flush();
+					}
+					if(batch.last) {
+						sink.close();
+					}
+				}
+			} catch (Throwable t) {
+				failure = t;
+			}
+
+			boolean last = batch.last;
+			boolean flush = batch.flush;
+			batch.size = 0;
+			batch.flush = false;
+			Arrays.fill(batch.hosts, null);
+			if(last) {
+				return;
+			} else if(flush) {
+				flushed.add(batch);
+			} else {
+				free.add(batch);
+			}
+		}
+	}
+
+	private void replay(Batch batch) {
+		for(int i = 0; i < batch.size; i++) {
+			long time = batch.times[i];
+			switch(batch.types[i]) {
+			case REPLICA_CHANGE: sink.replicaChange(time, batch.ints[i], (int) batch.longs[i]); break;
+			case FILE_DELETED: sink.fileDeleted(time, batch.ints[i]); break;
+			case FAILED_WRITE: sink.failedWrite(time, batch.hosts[i], batch.longs[i]); break;
+			case FILE_NOT_CREATED: sink.fileNotCreated(time); break;
+			case DELAYED_WRITE: sink.delayedWrite(time); break;
+			case REPLICATION_FAILED: sink.replicationFailed(time, batch.longs[i]); break;
+			case SPACE_SAMPLE: sink.spaceSample(time, batch.hosts[i], batch.longs[i]); break;
+			}
+		}
+	}
+
+}
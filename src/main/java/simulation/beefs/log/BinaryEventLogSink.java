@@ -0,0 +1,220 @@
+package simulation.beefs.log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import simulation.beefs.model.PathDictionary;
+
+/**
+ *
+ * Writes the records of the {@link EventLog} in a compact binary format, which {@link #replay(InputStream, EventLogSink)}
+ * reads back into another sink (Ex.: a {@link TextEventLogSink} to render it).
+ * <br><br>
+ * The log starts with int magic (0x42454C31) and int version, followed by records made of a byte type and big-endian
+ * fields, as written by {@link DataOutputStream}. Every record but PATH starts with a long time in microseconds. Paths
+ * are written once, in a PATH record (int id, UTF path) that precedes the first record of the file.
+ * <br><br>
+ * Usage: BinaryEventLogSink &lt;binary_log&gt; (prints the log as text)
+ *
+ */
+public class BinaryEventLogSink implements EventLogSink {
+
+	public static final int MAGIC = 0x42454C31; // BEL1
+	public static final int VERSION = 1;
+
+	static final byte PATH = 0;
+	static final byte REPLICA_CHANGE = 1;      // int file id, int replicas up to date
+	static final byte FILE_DELETED = 2;        // int file id
+	static final byte FAILED_WRITE = 3;        // UTF host, long bytes not written
+	static final byte FILE_NOT_CREATED = 4;
+	static final byte DELAYED_WRITE = 5;
+	static final byte REPLICATION_FAILED = 6;  // long bytes
+	static final byte SPACE_SAMPLE = 7;        // UTF host, long free space
+
+	private final DataOutputStream out;
+
+	private final BitSet writtenPaths = new BitSet();
+
+	public static void main(String[] args) throws IOException {
+		if(args.length != 1) {
+			System.err.println("Usage: BinaryEventLogSink <binary_log>");
+			System.exit(1);
+		}
+		TextEventLogSink text = new TextEventLogSink();
+		replay(new FileInputStream(args[0]), text);
+		text.flush();
+	}
+
+	public BinaryEventLogSink(OutputStream out) throws IOException {
+		this.out = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+		this.out.writeInt(MAGIC);
+		this.out.writeInt(VERSION);
+	}
+
+	@Override
+	public void replicaChange(long time, int fileId, int replicasUpToDate) {
+		try {
+			writePath(fileId);
+			out.writeByte(REPLICA_CHANGE);
+			out.writeLong(time);
+			out.writeInt(fileId);
+			out.writeInt(replicasUpToDate);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public void fileDeleted(long time, int fileId) {
+		try {
+			writePath(fileId);
+			out.writeByte(FILE_DELETED);
+			out.writeLong(time);
+			out.writeInt(fileId);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public void failedWrite(long time, String host, long bytesNotWritten) {
+		try {
+			out.writeByte(FAILED_WRITE);
+			out.writeLong(time);
+			out.writeUTF(host);
+			out.writeLong(bytesNotWritten);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public void fileNotCreated(long time) {
+		try {
+			out.writeByte(FILE_NOT_CREATED);
+			out.writeLong(time);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public void delayedWrite(long time) {
+		try {
+			out.writeByte(DELAYED_WRITE);
+			out.writeLong(time);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public void replicationFailed(long time, long bytes) {
+		try {
+			out.writeByte(REPLICATION_FAILED);
+			out.writeLong(time);
+			out.writeLong(bytes);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public void spaceSample(long time, String host, long freeSpace) {
+		try {
+			out.writeByte(SPACE_SAMPLE);
+			out.writeLong(time);
+			out.writeUTF(host);
+			out.writeLong(freeSpace);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+
+	private void writePath(int fileId) throws IOException {
+		if(!writtenPaths.get(fileId)) {
+			out.writeByte(PATH);
+			out.writeInt(fileId);
+			out.writeUTF(PathDictionary.path(fileId));
+			writtenPaths.set(fileId);
+		}
+	}
+
+	/**
+	 * Passes the records of a binary log to <code>sink</code>. The paths of the log are registered in the
+	 * {@link PathDictionary}, since the ids in the log are only valid in the run that wrote it.
+	 */
+	public static void replay(InputStream in, EventLogSink sink) throws IOException {
+		DataInputStream dataIn = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+		try {
+			if(dataIn.readInt() != MAGIC || dataIn.readInt() != VERSION) {
+				throw new IOException("not a binary event log");
+			}
+
+			Map<Integer, Integer> fileIds = new HashMap<Integer, Integer>();
+			while(true) {
+				int type = dataIn.read();
+				if(type == -1) {
+					break;
+				}
+				if(type == PATH) {
+					int logId = dataIn.readInt();
+					fileIds.put(logId, PathDictionary.id(dataIn.readUTF()));
+					continue;
+				}
+
+				long time = dataIn.readLong();
+				switch(type) {
+				case REPLICA_CHANGE:
+					sink.replicaChange(time, fileIds.get(dataIn.readInt()), dataIn.readInt());
+					break;
+				case FILE_DELETED:
+					sink.fileDeleted(time, fileIds.get(dataIn.readInt()));
+					break;
+				case FAILED_WRITE:
+					sink.failedWrite(time, dataIn.readUTF(), dataIn.readLong());
+					break;
+				case FILE_NOT_CREATED:
+					sink.fileNotCreated(time);
+					break;
+				case DELAYED_WRITE:
+					sink.delayedWrite(time);
+					break;
+				case REPLICATION_FAILED:
+					sink.replicationFailed(time, dataIn.readLong());
+					break;
+				case SPACE_SAMPLE:
+					sink.spaceSample(time, dataIn.readUTF(), dataIn.readLong());
+					break;
+				default:
+					throw new IOException("unknown record type " + type);
+				}
+			}
+		} catch (EOFException e) {
+			throw new IOException("truncated binary event log", e);
+		} finally {
+			dataIn.close();
+		}
+	}
+
+}
@@ -0,0 +1,144 @@
+package simulation.beefs.log;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
+import manelsim.EventScheduler;
+import simulation.beefs.util.Micros;
+
+/**
+ *
+ * The log of what happens to the files and data servers of the simulation. The model logs typed records here, stamped
+ * with the current simulation time, and the configured {@link EventLogSink} decides how they are kept. By default
+ * they are rendered as text on the standard output by a {@link TextEventLogSink}, as the simulation always did. Long
+ * runs should rather use a {@link BinaryEventLogSink}, possibly behind an {@link AsyncEventLogSink}.
+ * <br><br>
+ * Records are grouped in {@link Category categories} that can be disabled. The records of a disabled category are
+ * dropped before anything is computed for them; callers that need work to build a record should check
+ * {@link #isEnabled(Category)} first.
+ *
+ */
+public class EventLog {
+
+	public enum Category {
+		/** replica changes and deletions of files (! lines) */
+		REPLICA_CHANGES,
+		/** free space of the data servers (# lines) */
+		SPACE_SAMPLES,
+		/** operations delayed until a machine wakes up */
+		DELAYED_OPERATIONS,
+		/** failed writes, files not created and replicas not made for lack of space (%, * and @ lines) */
+		DISK_FULL
+	}
+
+	private static final int REPLICA_CHANGES = Category.REPLICA_CHANGES.ordinal();
+	private static final int SPACE_SAMPLES = Category.SPACE_SAMPLES.ordinal();
+	private static final int DELAYED_OPERATIONS = Category.DELAYED_OPERATIONS.ordinal();
+	private static final int DISK_FULL = Category.DISK_FULL.ordinal();
+
+	private static EventLogSink sink = new TextEventLogSink();
+
+	private static final boolean [] enabled = new boolean[Category.values().length];
+	static {
+		enableAll();
+	}
+
+	public static void setSink(EventLogSink newSink) {
+		sink = newSink;
+	}
+
+	public static EventLogSink sink() {
+		return sink;
+	}
+
+	public static boolean isEnabled(Category category) {
+		return enabled[category.ordinal()];
+	}
+
+	/**
+	 * Enables only the given categories.
+	 */
+	public static void enable(Set<Category> categories) {
+		for(Category category : Category.values()) {
+			enabled[category.ordinal()] = categories.contains(category);
+		}
+	}
+
+	public static void enableAll() {
+		Arrays.fill(enabled, true);
+	}
+
+	/**
+	 * @param categories a comma separated list of category names, case insensitive (Ex.: replica_changes,disk_full). 
+	 * An empty list disables all categories.
+	 */
+	public static Set<Category> parseCategories(String categories) {
+		Set<Category> parsed = EnumSet.noneOf(Category.class);
+		for(String name : categories.split(",")) {
+			name = name.trim();
+			if(!name.isEmpty()) {
+				parsed.add(Category.valueOf(name.toUpperCase()));
+			}
+		}
+		return parsed;
+	}
+
+	public static void replicaChange(int fileId, int replicasUpToDate) {
+		if(enabled[REPLICA_CHANGES]) {
+			sink.replicaChange(now(), fileId, replicasUpToDate);
+		}
+	}
+
+	public static void fileDeleted(int fileId) {
+		if(enabled[REPLICA_CHANGES]) {
+			sink.fileDeleted(now(), fileId);
+		}
+	}
+
+	public static void failedWrite(String host, long bytesNotWritten) {
+		if(enabled[DISK_FULL]) {
+			sink.failedWrite(now(), host, bytesNotWritten);
+		}
+	}
+
+	public static void fileNotCreated() {
+		if(enabled[DISK_FULL]) {
+			sink.fileNotCreated(now());
+		}
+	}
+
+	public static void delayedWrite() {
+		if(enabled[DELAYED_OPERATIONS]) {
+			sink.delayedWrite(now());
+		}
+	}
+
+	public static void replicationFailed(long bytes) {
+		if(enabled[DISK_FULL]) {
+			sink.replicationFailed(now(), bytes);
+		}
+	}
+
+	public static void spaceSample(String host, long freeSpace) {
+		if(enabled[SPACE_SAMPLES]) {
+			sink.spaceSample(now(), host, freeSpace);
+		}
+	}
+
+	/**
+	 * Closes the current sink and goes back to the default sink and categories.
+	 */
+	public static void close() throws IOException {
+		EventLogSink closing = sink;
+		sink = new TextEventLogSink();
+		enableAll();
+		closing.close();
+	}
+
+	private static long now() {
+		return Micros.of(EventScheduler.now());
+	}
+
+}
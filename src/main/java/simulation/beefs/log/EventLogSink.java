@@ -0,0 +1,44 @@
+package simulation.beefs.log;
+
+import java.io.IOException;
+
+/**
+ *
+ * Receives the records of the {@link EventLog}. Each kind of record has its own method, so records are passed as
+ * primitives and nothing is allocated to log them. Times are in microseconds and files are identified by their
+ * {@link simulation.beefs.model.PathDictionary} ids.
+ *
+ */
+public interface EventLogSink {
+
+	/**
+	 * The number of up to date replicas of a file changed.
+	 */
+	void replicaChange(long time, int fileId, int replicasUpToDate);
+
+	void fileDeleted(long time, int fileId);
+
+	/**
+	 * The primary of a file didn't have space for all the bytes written to it.
+	 */
+	void failedWrite(long time, String host, long bytesNotWritten);
+
+	void fileNotCreated(long time);
+
+	/**
+	 * A write was delayed until the primary of the file wakes up.
+	 */
+	void delayedWrite(long time);
+
+	/**
+	 * No data server had space for a replica.
+	 */
+	void replicationFailed(long time, long bytes);
+
+	void spaceSample(long time, String host, long freeSpace);
+
+	void flush() throws IOException;
+
+	void close() throws IOException;
+
+}
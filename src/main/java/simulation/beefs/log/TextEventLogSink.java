@@ -0,0 +1,89 @@
+package simulation.beefs.log;
+
+import java.io.PrintStream;
+
+import simulation.beefs.model.PathDictionary;
+import simulation.beefs.util.Micros;
+
+/**
+ *
+ * Renders the records of the {@link EventLog} as the lines the simulation always printed:
+ * <br><br>
+ * !&lt;path&gt; &lt;replicas up to date&gt; - &lt;time&gt;<br>
+ * !&lt;path&gt; deleted - &lt;time&gt;<br>
+ * %primary write failed in &lt;host&gt; (&lt;bytes&gt; bytes not written) - &lt;time&gt;<br>
+ * *could not create file - &lt;time&gt;<br>
+ * delayed write<br>
+ * &#64;all disks full: could not replicate &lt;bytes&gt; bytes - &lt;time&gt;<br>
+ * #&lt;time&gt;	&lt;host&gt;	&lt;free space&gt;
+ *
+ */
+public class TextEventLogSink implements EventLogSink {
+
+	private final PrintStream out;
+
+	/**
+	 * Prints to the {@link System#out} of the moment each record is logged.
+	 */
+	public TextEventLogSink() {
+		this(null);
+	}
+
+	public TextEventLogSink(PrintStream out) {
+		this.out = out;
+	}
+
+	private PrintStream out() {
+		return (out != null) ? out : System.out;
+	}
+
+	@Override
+	public void replicaChange(long time, int fileId, int replicasUpToDate) {
+		out().println(String.format("!%s %d - %s", PathDictionary.path(fileId), replicasUpToDate, Micros.toTime(time)));
+	}
+
+	@Override
+	public void fileDeleted(long time, int fileId) {
+		out().println(String.format("!%s deleted - %s", PathDictionary.path(fileId), Micros.toTime(time)));
+	}
+
+	@Override
+	public void failedWrite(long time, String host, long bytesNotWritten) {
+		out().println(String.format("%%primary write failed in %s (%d bytes not written) - %s", host, bytesNotWritten,
+				Micros.toTime(time)));
+	}
+
+	@Override
+	public void fileNotCreated(long time) {
+		out().println(String.format("*could not create file - %s", Micros.toTime(time)));
+	}
+
+	@Override
+	public void delayedWrite(long time) {
+		out().println("delayed write");
+	}
+
+	@Override
+	public void replicationFailed(long time, long bytes) {
+		out().println(String.format("@all disks full: could not replicate %d bytes - %s", bytes, Micros.toTime(time)));
+	}
+
+	@Override
+	public void spaceSample(long time, String host, long freeSpace) {
+		out().println(String.format("#%s\t%s\t%d", Micros.toTime(time), host, freeSpace));
+	}
+
+	@Override
+	public void flush() {
+		out().flush();
+	}
+
+	@Override
+	public void close() {
+		flush();
+		if(out != null && out != System.out) {
+			out.close();
+		}
+	}
+
+}
@@ -1,31 +1,71 @@
 package simulation.beefs.model;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
 
 public class DataServer {
 
+	/**
+	 * Notified after the free space of a data server changes.
+	 */
+	public interface SpaceListener {
+		void freeSpaceChanged(DataServer dataServer, long oldFreeSpace);
+	}
+
 	private long freeSpace;
-	
+
 	private final Machine host;
-	
+
+	private final List<SpaceListener> spaceListeners = new ArrayList<SpaceListener>(1);
+
 	public DataServer(Machine host, long freeSpace) {
 		this.host = host;
 		this.freeSpace = freeSpace;
 	}
-	
+
 	public long freeSpace() {
 		return freeSpace;
 	}
-	
+
 	public void useDisk(long bytes) {
-		freeSpace -= bytes;
+		setFreeSpace(freeSpace - bytes);
 	}
-	
+
 	public void cleanSpace(long bytes) {
-		freeSpace += bytes;
+		setFreeSpace(freeSpace + bytes);
 	}
 
 	public Machine host() {
 		return host;
 	}
-	
+
+	public void addSpaceListener(SpaceListener listener) {
+		spaceListeners.add(listener);
+	}
+
+	public void checkpoint(DataOutput out) throws IOException {
+		out.writeLong(freeSpace);
+	}
+
+	/**
+	 * Reads what {@link #checkpoint(DataOutput)} wrote. The space listeners are notified as for any other change.
+	 */
+	public void restore(DataInput in) throws IOException {
+		setFreeSpace(in.readLong());
+	}
+
+	private void setFreeSpace(long newFreeSpace) {
+		long oldFreeSpace = freeSpace;
+		freeSpace = newFreeSpace;
+		if(oldFreeSpace != newFreeSpace) {
+			for(SpaceListener listener : spaceListeners) {
+				listener.freeSpaceChanged(this, oldFreeSpace);
+			}
+		}
+	}
+
 }
@@ -0,0 +1,388 @@
+package simulation.beefs.model;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import manelsim.Time;
+import simulation.beefs.util.Micros;
+import simulation.beefs.util.SplitRandom;
+
+/**
+ *
+ * Keeps the data servers of a set ordered by free space, once for all of them and once for those whose host is
+ * reachable, so that a random server with enough free space is chosen in logarithmic time instead of scanning (and
+ * shuffling) the whole set. The servers of unreachable hosts are also kept ordered by the time of the last transition
+ * of their hosts, to find who is sleeping for longer. The index follows {@link DataServer#useDisk(long)},
+ * {@link DataServer#cleanSpace(long)} and the transitions of the hosts as they happen. Servers added to or removed from
+ * the set are picked up by the next query after the size of the set changes.
+ * <br><br>
+ * The machines of a parallel simulation may be behind the simulation time (see {@link Machine.Scheduler}) and only 
+ * make their transitions when they catch up, so the queries on reachability bring the machines up to date first,
+ * through the scheduler of any of the hosts, which only runs the machines that are behind.
+ *
+ */
+public class DataServerIndex implements DataServer.SpaceListener, Machine.StateListener {
+
+	/**
+	 * A node of a treap ordered by (free space, id) that also keeps the size of its subtree.
+	 */
+	private static class Node {
+		final Entry entry;
+		final int priority;
+		int size = 1;
+		Node left;
+		Node right;
+
+		Node(Entry entry, int priority) {
+			this.entry = entry;
+			this.priority = priority;
+		}
+	}
+
+	private static class Entry {
+		final DataServer dataServer;
+		final int id;
+		long freeSpace;
+		boolean indexed = false;
+		boolean reachable;
+		long lastTransition;
+		Node inAll;
+		Node inReachable;
+		Entry nextOnHost;
+
+		Entry(DataServer dataServer, int id) {
+			this.dataServer = dataServer;
+			this.id = id;
+		}
+	}
+
+	private static class Tree {
+		Node root = null;
+
+		private Node splitLeft;
+		private Node splitRight;
+
+		int size() {
+			return size(root);
+		}
+
+		void insert(Node node) {
+			split(root, node.entry.freeSpace, node.entry.id);
+			Node right = splitRight;
+			root = merge(merge(splitLeft, node), right);
+		}
+
+		void remove(Node node) {
+			split(root, node.entry.freeSpace, node.entry.id);
+			Node left = splitLeft;
+			split(splitRight, node.entry.freeSpace, node.entry.id + 1);
+			root = merge(left, splitRight);
+			node.left = node.right = null;
+			node.size = 1;
+		}
+
+		/**
+		 * @return how many nodes have less than <code>freeSpace</code> bytes free
+		 */
+		int countBelow(long freeSpace) {
+			return rank(freeSpace, Integer.MIN_VALUE);
+		}
+
+		/**
+		 * @return how many nodes come before (freeSpace, id)
+		 */
+		int rank(long freeSpace, int id) {
+			int rank = 0;
+			Node node = root;
+			while(node != null) {
+				if(isBefore(node, freeSpace, id)) {
+					rank += size(node.left) + 1;
+					node = node.right;
+				} else {
+					node = node.left;
+				}
+			}
+			return rank;
+		}
+
+		Node select(int rank) {
+			Node node = root;
+			while(true) {
+				int leftSize = size(node.left);
+				if(rank < leftSize) {
+					node = node.left;
+				} else if(rank == leftSize) {
+					return node;
+				} else {
+					rank -= leftSize + 1;
+					node = node.right;
+				}
+			}
+		}
+
+		/**
+		 * Splits <code>node</code> in the nodes that come before (freeSpace, id), left in {@link #splitLeft}, and the
+		 * others, left in {@link #splitRight}.
+		 */
+		private void split(Node node, long freeSpace, int id) {
+			if(node == null) {
+				splitLeft = splitRight = null;
+			} else if(isBefore(node, freeSpace, id)) {
+				split(node.right, freeSpace, id);
+				node.right = splitLeft;
+				update(node);
+				splitLeft = node;
+			} else {
+				split(node.left, freeSpace, id);
+				node.left = splitRight;
+				update(node);
+				splitRight = node;
+			}
+		}
+
+		private static Node merge(Node left, Node right) {
+			if(left == null) {
+				return right;
+			}
+			if(right == null) {
+				return left;
+			}
+			if(left.priority > right.priority) {
+				left.right = merge(left.right, right);
+				update(left);
+				return left;
+			}
+			right.left = merge(left, right.left);
+			update(right);
+			return right;
+		}
+
+		private static boolean isBefore(Node node, long freeSpace, int id) {
+			return node.entry.freeSpace < freeSpace || (node.entry.freeSpace == freeSpace && node.entry.id < id);
+		}
+
+		private static void update(Node node) {
+			node.size = size(node.left) + size(node.right) + 1;
+		}
+
+		private static int size(Node node) {
+			return node == null ? 0 : node.size;
+		}
+	}
+
+	private final Set<DataServer> dataServers;
+
+	private final Random random;
+
+	private final Map<DataServer, Entry> entries = new HashMap<DataServer, Entry>();
+
+	private final Map<Machine, Entry> entriesByHost = new HashMap<Machine, Entry>();
+
+	// any of the hosts, to bring all machines up to date through its scheduler
+	private Machine someHost = null;
+
+	private final Tree all = new Tree();
+
+	private final Tree reachable = new Tree();
+
+	private final TreeSet<Entry> unreachable = new TreeSet<Entry>(new Comparator<Entry>() {
+		@Override
+		public int compare(Entry e1, Entry e2) {
+			if(e1.lastTransition != e2.lastTransition) {
+				return e1.lastTransition < e2.lastTransition ? -1 : 1;
+			}
+			return e1.id - e2.id;
+		}
+	});
+
+	public DataServerIndex(Set<DataServer> dataServers) {
+		this(dataServers, new SplitRandom());
+	}
+
+	public DataServerIndex(Set<DataServer> dataServers, Random random) {
+		this.dataServers = dataServers;
+		this.random = random;
+		sync();
+	}
+
+	/**
+	 * @return a random data server with at least <code>size</code> bytes free that is not in <code>exceptions</code>,
+	 * or null if there is none
+	 */
+	public DataServer randomWithFreeSpace(long size, Collection<DataServer> exceptions) {
+		sync();
+		return random(all, size, exceptions, false);
+	}
+
+	/**
+	 * @return a random data server of a reachable host, with at least <code>size</code> bytes free, that is not in
+	 * <code>exceptions</code>, or null if there is none
+	 */
+	public DataServer randomReachableWithFreeSpace(long size, Collection<DataServer> exceptions) {
+		sync();
+		synchronizeHosts();
+		return random(reachable, size, exceptions, true);
+	}
+
+	/**
+	 * @return the data server with at least <code>size</code> bytes free whose host is unreachable since the earliest
+	 * time (hosts that never made a transition come first), or null if there is none
+	 */
+	public DataServer longestUnreachableWithFreeSpace(long size) {
+		sync();
+		synchronizeHosts();
+		for(Entry entry : unreachable) {
+			if(entry.freeSpace >= size) {
+				return entry.dataServer;
+			}
+		}
+		return null;
+	}
+
+	public int countWithFreeSpace(long size) {
+		sync();
+		return all.size() - all.countBelow(size);
+	}
+
+	public int countReachableWithFreeSpace(long size) {
+		sync();
+		synchronizeHosts();
+		return reachable.size() - reachable.countBelow(size);
+	}
+
+	@Override
+	public void freeSpaceChanged(DataServer dataServer, long oldFreeSpace) {
+		Entry entry = entries.get(dataServer);
+		if(entry == null || !entry.indexed) {
+			return;
+		}
+		all.remove(entry.inAll);
+		if(entry.reachable) {
+			reachable.remove(entry.inReachable);
+		}
+		entry.freeSpace = dataServer.freeSpace();
+		all.insert(entry.inAll);
+		if(entry.reachable) {
+			reachable.insert(entry.inReachable);
+		}
+	}
+
+	/**
+	 * Synchronized, since the machines of a parallel simulation make their transitions on several threads.
+	 */
+	@Override
+	public synchronized void stateChanged(Machine machine) {
+		for(Entry entry = entriesByHost.get(machine); entry != null; entry = entry.nextOnHost) {
+			if(entry.indexed) {
+				setReachable(entry, machine.isReachable());
+			}
+		}
+	}
+
+	private DataServer random(Tree tree, long size, Collection<DataServer> exceptions, boolean reachableOnly) {
+		int first = tree.countBelow(size);
+		int candidates = tree.size() - first;
+
+		int [] excludedRanks = new int[exceptions.size()];
+		int excluded = 0;
+		for(DataServer exception : exceptions) {
+			Entry entry = entries.get(exception);
+			if(entry != null && entry.indexed && entry.freeSpace >= size && (!reachableOnly || entry.reachable)) {
+				excludedRanks[excluded++] = tree.rank(entry.freeSpace, entry.id);
+			}
+		}
+		if(candidates - excluded <= 0) {
+			return null;
+		}
+		Arrays.sort(excludedRanks, 0, excluded);
+
+		int rank = first + random.nextInt(candidates - excluded);
+		for(int i = 0; i < excluded && excludedRanks[i] <= rank; i++) {
+			rank++;
+		}
+		return tree.select(rank).entry.dataServer;
+	}
+
+	private void sync() {
+		if(dataServers == null || indexedCount() == dataServers.size()) {
+			return;
+		}
+		for(Entry entry : entries.values()) {
+			if(entry.indexed && !dataServers.contains(entry.dataServer)) {
+				unindex(entry);
+			}
+		}
+		for(DataServer dataServer : dataServers) {
+			Entry entry = entries.get(dataServer);
+			if(entry == null) {
+				entry = new Entry(dataServer, entries.size());
+				entry.inAll = new Node(entry, random.nextInt());
+				entry.inReachable = new Node(entry, random.nextInt());
+				entry.nextOnHost = entriesByHost.get(dataServer.host());
+				entries.put(dataServer, entry);
+				entriesByHost.put(dataServer.host(), entry);
+				dataServer.addSpaceListener(this);
+				if(entry.nextOnHost == null) {
+					dataServer.host().addStateListener(this);
+					someHost = dataServer.host();
+				}
+			}
+			if(!entry.indexed) {
+				index(entry);
+			}
+		}
+	}
+
+	/**
+	 * Lets the hosts make the transitions they are behind on, which the index hears about as they happen.
+	 */
+	private void synchronizeHosts() {
+		if(someHost != null) {
+			someHost.synchronizeAll();
+		}
+	}
+
+	private int indexedCount() {
+		return all.size();
+	}
+
+	private void index(Entry entry) {
+		entry.indexed = true;
+		entry.freeSpace = entry.dataServer.freeSpace();
+		all.insert(entry.inAll);
+		entry.reachable = true;
+		reachable.insert(entry.inReachable);
+		setReachable(entry, entry.dataServer.host().isReachable());
+	}
+
+	private void unindex(Entry entry) {
+		setReachable(entry, true);
+		reachable.remove(entry.inReachable);
+		all.remove(entry.inAll);
+		entry.indexed = false;
+	}
+
+	private void setReachable(Entry entry, boolean isReachable) {
+		if(!entry.reachable) {
+			unreachable.remove(entry);
+		}
+		if(isReachable && !entry.reachable) {
+			reachable.insert(entry.inReachable);
+		} else if(!isReachable && entry.reachable) {
+			reachable.remove(entry.inReachable);
+		}
+		entry.reachable = isReachable;
+		if(!isReachable) {
+			Time lastTransition = entry.dataServer.host().lastTransitionTime();
+			entry.lastTransition = (lastTransition == null) ? Long.MIN_VALUE : Micros.of(lastTransition);
+			unreachable.add(entry);
+		}
+	}
+
+}
@@ -17,6 +17,16 @@ public class FileReplica {
 		dataServer.useDisk(size);
 	}
 	
+	/**
+	 * A replica restored from a checkpoint. The space it takes is already in the restored free space of the data server.
+	 */
+	FileReplica(DataServer dataServer, long size, boolean consistent, boolean deleted) {
+		this.dataServer = dataServer;
+		this.size = size;
+		this.consistent = consistent;
+		this.deleted = deleted;
+	}
+	
 	public boolean isConsistent() {
 		return consistent;
 	}
@@ -40,5 +50,9 @@ public class FileReplica {
 	public DataServer dataServer() {
 		return dataServer;
 	}
+	
+	boolean isDeleted() {
+		return deleted;
+	}
 
 }
@@ -1,14 +1,21 @@
 package simulation.beefs.model;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import manelsim.Event;
 import manelsim.EventScheduler;
-import manelsim.Time;
-import manelsim.Time.Unit;
 import simulation.beefs.event.filesystem.Read;
 import simulation.beefs.event.filesystem.Write;
+import simulation.beefs.log.EventLog;
+import simulation.beefs.util.Micros;
 
 public class FileSystemClient {
 
-	private final Time ONE_SECOND = new Time(1, Unit.SECONDS);
+	private static final long ONE_SECOND = Micros.PER_SECOND;
 
 	private final MetadataServer metadataServer;
 
@@ -18,6 +25,33 @@ public class FileSystemClient {
 
 	private long writesWhileClientSleeping = 0;
 
+	/**
+	 * A read or write postponed until its primary wakes up, and not processed yet.
+	 */
+	private static class DelayedOperation {
+		final boolean write;
+		final long begin;
+		final long duration;
+		final int fileId;
+		final long bytesTransfered;
+		final long fileSize;
+		final Event event;
+
+		DelayedOperation(boolean write, long begin, long duration, int fileId, long bytesTransfered, long fileSize,
+				Event event) {
+			this.write = write;
+			this.begin = begin;
+			this.duration = duration;
+			this.fileId = fileId;
+			this.bytesTransfered = bytesTransfered;
+			this.fileSize = fileSize;
+			this.event = event;
+		}
+	}
+
+	// only kept for checkpoints
+	private final List<DelayedOperation> delayedOperations = new ArrayList<DelayedOperation>();
+
 	/**
 	 * 
 	 * @param host the {@link Machine} in which this client is running
@@ -32,11 +66,15 @@ public class FileSystemClient {
 		return metadataServer.createOrOpen(this, fullpath, size);
 	}
 
-	public void read(String filePath, long bytesTransfered, Time begin, Time duration) {
+	public ReplicatedFile createOrOpen(int fileId, long size) {
+		return metadataServer.createOrOpen(this, fileId, size);
+	}
+
+	public void read(int fileId, long bytesTransfered, long begin, long duration) {
 		if(!host.isReachable()) {
 			readsWhileClientSleeping++;
 		} else {
-			ReplicatedFile file = createOrOpen(filePath, 0); //passing 0 as the file size to make sure the ReplicatedFile will be created 
+			ReplicatedFile file = createOrOpen(fileId, 0); //passing 0 as the file size to make sure the ReplicatedFile will be created 
 
 			DataServer primary = file.primary();
 			if(!primary.host().isReachable()){
@@ -51,22 +89,20 @@ public class FileSystemClient {
 
 				primary.host().wakeOnLan(begin);
 
-				Time delta = primary.host().transitionDuration().plus(ONE_SECOND);
-				EventScheduler.schedule(
-						new Read(this, begin.plus(delta), duration, filePath, bytesTransfered, false));
+				long delta = primary.host().transitionDurationMicros() + ONE_SECOND;
+				EventScheduler.schedule(delayedOperation(false, begin + delta, duration, fileId, bytesTransfered, 0));
 			}
 		}
 	}
 
-	public void write(String filePath, long fileSize, long bytesTransfered, Time begin, Time duration) {
+	public void write(int fileId, long fileSize, long bytesTransfered, long begin, long duration) {
 		if(!host.isReachable()) {
 			writesWhileClientSleeping++;
 		} else {
-			ReplicatedFile replicatedFile = createOrOpen(filePath, bytesTransfered);
+			ReplicatedFile replicatedFile = createOrOpen(fileId, bytesTransfered);
 
 			if(replicatedFile == null) {
-				String msg = String.format("*could not create file - %s", EventScheduler.now());
-				System.out.println(msg);
+				EventLog.fileNotCreated();
 				return;
 			}
 
@@ -85,10 +121,10 @@ public class FileSystemClient {
 				} 
 				primary.host().wakeOnLan(begin);
 
-				System.out.println("delayed write");
-				Time delta = primary.host().transitionDuration().plus(ONE_SECOND);
+				EventLog.delayedWrite();
+				long delta = primary.host().transitionDurationMicros() + ONE_SECOND;
 				EventScheduler.schedule(
-						new Write(this, begin.plus(delta), duration, filePath, bytesTransfered, fileSize, false));
+						delayedOperation(true, begin + delta, duration, fileId, bytesTransfered, fileSize));
 			} 
 		}
 	}
@@ -101,12 +137,12 @@ public class FileSystemClient {
 		return host;
 	}
 
-	public void close(String filePath) {
-		metadataServer.close(filePath);		
+	public void close(int fileId) {
+		metadataServer.close(fileId);		
 	}
 
-	public void delete(String filePath) {
-		metadataServer.delete(filePath);		
+	public void delete(int fileId) {
+		metadataServer.delete(fileId);		
 	}
 
 	public long readsWhileClientSleeping() {
@@ -117,4 +153,60 @@ public class FileSystemClient {
 		return writesWhileClientSleeping;
 	}
 
+	private Event delayedOperation(boolean write, long begin, long duration, int fileId, long bytesTransfered, 
+			long fileSize) {
+		Event event = write ? new Write(this, begin, duration, fileId, bytesTransfered, fileSize, false) : 
+			new Read(this, begin, duration, fileId, bytesTransfered, false);
+		delayedOperations.add(new DelayedOperation(write, begin, duration, fileId, bytesTransfered, fileSize, event));
+		return event;
+	}
+
+	/**
+	 * Called by the reads and writes this client postponed when they are processed.
+	 */
+	public void delayedOperationProcessed(Event event) {
+		for(int i = 0; i < delayedOperations.size(); i++) {
+			if(delayedOperations.get(i).event == event) {
+				delayedOperations.remove(i);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Writes the counters of this client and the reads and writes it postponed that were not processed yet.
+	 */
+	public void checkpoint(DataOutput out) throws IOException {
+		out.writeLong(readsWhileClientSleeping);
+		out.writeLong(writesWhileClientSleeping);
+		out.writeInt(delayedOperations.size());
+		for(DelayedOperation operation : delayedOperations) {
+			out.writeBoolean(operation.write);
+			out.writeLong(operation.begin);
+			out.writeLong(operation.duration);
+			out.writeUTF(PathDictionary.path(operation.fileId));
+			out.writeLong(operation.bytesTransfered);
+			out.writeLong(operation.fileSize);
+		}
+	}
+
+	/**
+	 * Reads what {@link #checkpoint(DataOutput)} wrote. The postponed operations are returned for the caller to
+	 * schedule.
+	 */
+	public List<Event> restore(DataInput in) throws IOException {
+		readsWhileClientSleeping = in.readLong();
+		writesWhileClientSleeping = in.readLong();
+		int count = in.readInt();
+		List<Event> events = new ArrayList<Event>(count);
+		for(int i = 0; i < count; i++) {
+			boolean write = in.readBoolean();
+			long begin = in.readLong();
+			long duration = in.readLong();
+			int fileId = PathDictionary.id(in.readUTF());
+			events.add(delayedOperation(write, begin, duration, fileId, in.readLong(), in.readLong()));
+		}
+		return events;
+	}
+
 }
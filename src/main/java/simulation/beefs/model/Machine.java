@@ -1,8 +1,14 @@
 package simulation.beefs.model;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+import manelsim.Event;
 import manelsim.EventScheduler;
 import manelsim.Time;
 import manelsim.TimeInterval;
@@ -10,7 +16,18 @@ import simulation.beefs.event.machine.Sleep;
 import simulation.beefs.event.machine.UserActivity;
 import simulation.beefs.event.machine.UserIdleness;
 import simulation.beefs.event.machine.WakeOnLan;
+import simulation.beefs.util.Micros;
 
+/**
+ * 
+ * Times are kept as primitive microseconds internally. {@link Time} instances are only created at the boundaries with
+ * ManelSim and on queries.
+ * <br><br>
+ * The time spent in each state and how many times it was entered are accumulated as the machine changes state. The
+ * intervals themselves are only kept if asked to, since a long simulation makes millions of them, and then in a
+ * {@link MachineTimeline}.
+ *
+ */
 public class Machine {
 	
 	public enum State {
@@ -24,44 +41,146 @@ public class Machine {
 	
 	public static class MachineStateInterval {
 		private final State state;
-		private final TimeInterval interval;
+		private final long begin;
+		private final long end;
 		public MachineStateInterval(State state, TimeInterval interval) {
+			this(state, Micros.of(interval.begin()), Micros.of(interval.end()));
+		}
+		public MachineStateInterval(State state, long begin, long end) {
 			this.state = state;
-			this.interval = interval;
+			this.begin = begin;
+			this.end = end;
 		}
 		public State getState() {
 			return state;
 		}
 		public TimeInterval getInterval() {
-			return interval;
+			return new TimeInterval(Micros.toTime(begin), Micros.toTime(end));
+		}
+		public long begin() {
+			return begin;
 		}
+		public long end() {
+			return end;
+		}
+	}
+	
+	/**
+	 * Receives the events a machine schedules for its own transitions. By default they go to the 
+	 * {@link EventScheduler}. A scheduler that keeps them apart (see simulation.beefs.parallel.MachineProcess) must 
+	 * process them up to the current simulation time when {@link #synchronize()} is called, which the machine does 
+	 * before it is observed or changed. {@link #synchronizeAll()} does the same for every machine it schedules, for 
+	 * those that observe many machines at once.
+	 */
+	public interface Scheduler {
+		void schedule(Event event);
+		void synchronize();
+		void synchronizeAll();
+	}
+	
+	private static final Scheduler EVENT_SCHEDULER = new Scheduler() {
+		@Override
+		public void schedule(Event event) {
+			EventScheduler.schedule(event);
+		}
+		@Override
+		public void synchronize() { }
+		@Override
+		public void synchronizeAll() { }
+	};
+	
+	/**
+	 * Notified after every transition of the machine to a new state.
+	 */
+	public interface StateListener {
+		void stateChanged(Machine machine);
 	}
 	
 	private interface MachineState {
-		MachineState toActive(TimeInterval interval);
-		MachineState toIdle(TimeInterval interval);
-		MachineState toSleep(TimeInterval interval);
-		MachineState wakeOnLan(Time when);
+		MachineState toActive(long begin, long end);
+		MachineState toIdle(long begin, long end);
+		MachineState toSleep(long begin, long end);
+		MachineState wakeOnLan(long when);
 		State state();
-		Time transitionTime();
+		long transitionTime();
+		void checkpoint(DataOutput out) throws IOException;
+	}
+	
+	/**
+	 * An event this machine scheduled for its own transitions and that was not processed yet.
+	 */
+	private static class PendingEvent {
+		static final byte SLEEP = 0;
+		static final byte USER_ACTIVITY = 1;
+		static final byte USER_IDLENESS = 2;
+		static final byte WAKE_ON_LAN = 3;
+		
+		final byte type;
+		final long begin;
+		final long duration;
+		final Event event;
+		
+		PendingEvent(byte type, long begin, long duration, Event event) {
+			this.type = type;
+			this.begin = begin;
+			this.duration = duration;
+			this.event = event;
+		}
 	}
+	
+	private static final long NO_TRANSITION = Long.MIN_VALUE;
 
 	private MachineState currentState;
 	
-	private Time currentDelay = Time.GENESIS;
+	private long currentDelay = 0;
+	
+	private Time currentDelayTime = Time.GENESIS;
 	
 	private final String hostname;
 	
-	private final Time toSleepTimeout;
+	private final long toSleepTimeout;
 
-	private final Time transitionDuration;
+	private final long transitionDuration;
+	
+	private final Time transitionDurationTime;
 	
-	private final List<MachineStateInterval> stateIntervals = new ArrayList<MachineStateInterval>();
+	private final MachineTimeline timeline;
+	
+	private final boolean keepStateIntervals;
+	
+	// totals of the closed intervals; the last one may still be shortened by a wake on LAN
+	private final long [] stateDurations = new long[State.values().length];
+	private final long [] stateCounts = new long[State.values().length];
+	
+	// positions in the timeline of the intervals of each state
+	private final int [][] stateIndexes = new int[State.values().length][];
+	private final int [] stateIndexSizes = new int[State.values().length];
+	
+	private final List<StateListener> stateListeners = new ArrayList<StateListener>(1);
+	
+	private Scheduler scheduler = EVENT_SCHEDULER;
+	
+	// only kept for checkpoints; there are never more than two
+	private final List<PendingEvent> pendingEvents = new ArrayList<PendingEvent>(2);
+	
+	private State lastState = null;
+	private long lastBegin;
+	private long lastEnd;
 	
 	public Machine(String hostname, Time toSleepTimeout, Time transitionDuration) {
+		this(hostname, toSleepTimeout, transitionDuration, true);
+	}
+	
+	/**
+	 * @param keepStateIntervals if false, only the totals by state are kept and the interval queries are not available
+	 */
+	public Machine(String hostname, Time toSleepTimeout, Time transitionDuration, boolean keepStateIntervals) {
 		this.hostname = hostname;
-		this.toSleepTimeout = toSleepTimeout;
-		this.transitionDuration = transitionDuration;
+		this.keepStateIntervals = keepStateIntervals;
+		this.timeline = keepStateIntervals ? new MachineTimeline() : null;
+		this.toSleepTimeout = Micros.of(toSleepTimeout);
+		this.transitionDuration = Micros.of(transitionDuration);
+		this.transitionDurationTime = transitionDuration;
 		this.currentState = new Bootstrap();
 	}
 	
@@ -89,65 +208,332 @@ public class Machine {
 		return getIntervals(states);
 	}
 	
+	/**
+	 * @return a read-only view of the intervals of all states
+	 */
 	public List<MachineStateInterval> stateIntervals() {
-		return new ArrayList<MachineStateInterval>(stateIntervals);
+		scheduler.synchronize();
+		checkStateIntervalsAreKept();
+		return timeline.asList();
+	}
+	
+	/**
+	 * @return the time spent in <code>state</code> until now, in microseconds
+	 */
+	public long stateDuration(State state) {
+		scheduler.synchronize();
+		long duration = stateDurations[state.ordinal()];
+		if(lastState == state) {
+			duration += lastEnd - lastBegin;
+		}
+		return duration;
 	}
 	
+	/**
+	 * @return how many times this machine entered <code>state</code>
+	 */
+	public long stateCount(State state) {
+		scheduler.synchronize();
+		return stateCounts[state.ordinal()];
+	}
+	
+	public long transitionCount() {
+		return stateCount(State.GOING_SLEEP) + stateCount(State.WAKING_UP);
+	}
+	
+	/**
+	 * Dumps the state intervals of this machine in the format described in {@link MachineTimeline}.
+	 */
+	public void writeTimeline(File file) throws IOException {
+		scheduler.synchronize();
+		checkStateIntervalsAreKept();
+		timeline.write(hostname, file);
+	}
+	
+	private void checkStateIntervalsAreKept() {
+		if(!keepStateIntervals) {
+			throw new IllegalStateException("The state intervals are not kept. " + machineInformation());
+		}
+	}
+	
+	/**
+	 * @return the intervals of the given states in the order they happened. Only the intervals of those states are 
+	 * visited.
+	 */
 	private List<TimeInterval> getIntervals(State [] states) {
-		List<TimeInterval> intervals = new ArrayList<TimeInterval>();
-		for(MachineStateInterval stateInterval : stateIntervals) {
-			for(State state : states) {
-				if(stateInterval.getState() == state) {
-					intervals.add(stateInterval.getInterval());
-					break;
+		scheduler.synchronize();
+		checkStateIntervalsAreKept();
+		int total = 0;
+		int [] next = new int[states.length];
+		for(State state : states) {
+			total += stateIndexSizes[state.ordinal()];
+		}
+		
+		List<TimeInterval> intervals = new ArrayList<TimeInterval>(total);
+		for(int i = 0; i < total; i++) {
+			// merges the index lists of the states, which are sorted
+			int chosen = -1;
+			int chosenIndex = Integer.MAX_VALUE;
+			for(int j = 0; j < states.length; j++) {
+				int ordinal = states[j].ordinal();
+				if(next[j] < stateIndexSizes[ordinal] && stateIndexes[ordinal][next[j]] < chosenIndex) {
+					chosen = j;
+					chosenIndex = stateIndexes[ordinal][next[j]];
 				}
 			}
+			next[chosen]++;
+			intervals.add(new TimeInterval(Micros.toTime(timeline.begin(chosenIndex)), 
+					Micros.toTime(timeline.end(chosenIndex))));
 		}
 		return intervals;
 	}
 	
 	public boolean isReachable() {
+		scheduler.synchronize();
 		return (currentState.state() == State.ACTIVE || currentState.state() == State.IDLE);
 	}
 	
 	public Time lastTransitionTime() {
-		return currentState.transitionTime();
+		scheduler.synchronize();
+		long transitionTime = currentState.transitionTime();
+		return (transitionTime == NO_TRANSITION) ? null : Micros.toTime(transitionTime);
 	}
 
 	public Time transitionDuration() {
+		return transitionDurationTime;
+	}
+	
+	public long transitionDurationMicros() {
 		return transitionDuration;
 	}
 	
 	public Time currentDelay() {
+		scheduler.synchronize();
+		return currentDelayTime;
+	}
+	
+	public long currentDelayMicros() {
+		scheduler.synchronize();
+		return currentDelay;
+	}
+	
+	/**
+	 * @return the delay of this machine as of the last time it was brought up to date, without bringing it up to date. 
+	 * For ordering the events of the machine, which must not run it.
+	 */
+	public long lastKnownDelayMicros() {
 		return currentDelay;
 	}
 
 	public void setActive(Time begin, Time duration) {
-		TimeInterval interval = new TimeInterval(begin, begin.plus(duration));
-		currentState = currentState.toActive(interval);
+		setActive(Micros.of(begin), Micros.of(duration));
+	}
+	
+	public void setActive(long begin, long duration) {
+		changeState(currentState.toActive(begin, begin + duration));
 	}
 	
 	public void setIdle(Time begin, Time duration) {
-		TimeInterval interval = new TimeInterval(begin, begin.plus(duration));
-		currentState = currentState.toIdle(interval);
+		setIdle(Micros.of(begin), Micros.of(duration));
+	}
+	
+	public void setIdle(long begin, long duration) {
+		changeState(currentState.toIdle(begin, begin + duration));
 	}
 	
 	public void setSleeping(Time begin, Time duration) {
-		TimeInterval interval = new TimeInterval(begin, begin.plus(duration));
-		currentState = currentState.toSleep(interval);
+		setSleeping(Micros.of(begin), Micros.of(duration));
+	}
+	
+	public void setSleeping(long begin, long duration) {
+		changeState(currentState.toSleep(begin, begin + duration));
 	}
 	
 	public void wakeOnLan(Time when) {
-		currentState = currentState.wakeOnLan(when);
+		wakeOnLan(Micros.of(when));
+	}
+	
+	public void wakeOnLan(long when) {
+		scheduler.synchronize();
+		changeState(currentState.wakeOnLan(when));
 	}
 	
 	public State state() {
+		scheduler.synchronize();
 		return currentState.state();
 	}
 	
-	private void checkContinuity(TimeInterval next) {
-		TimeInterval last = stateIntervals.get(stateIntervals.size() - 1).getInterval();
-		if(!last.isContiguous(next)) {
+	/**
+	 * Brings this machine up to the current simulation time. Only needed by those that keep what they observed of the 
+	 * machine, since the machine does it before it is observed or changed.
+	 */
+	public void synchronize() {
+		scheduler.synchronize();
+	}
+	
+	/**
+	 * Brings all machines that share the scheduler of this one up to the current simulation time.
+	 */
+	public void synchronizeAll() {
+		scheduler.synchronizeAll();
+	}
+	
+	public void setScheduler(Scheduler scheduler) {
+		this.scheduler = scheduler;
+	}
+	
+	public void addStateListener(StateListener listener) {
+		stateListeners.add(listener);
+	}
+	
+	/**
+	 * Called by the events this machine scheduled for its own transitions when they are processed.
+	 */
+	public void scheduledEventProcessed(Event event) {
+		for(int i = 0; i < pendingEvents.size(); i++) {
+			if(pendingEvents.get(i).event == event) {
+				pendingEvents.remove(i);
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Writes the state of this machine, its accumulated totals, its timeline if it is kept and the events it scheduled
+	 * that were not processed yet.
+	 */
+	public void checkpoint(DataOutput out) throws IOException {
+		scheduler.synchronize();
+		out.writeByte(currentState.state().ordinal());
+		currentState.checkpoint(out);
+		out.writeLong(currentDelay);
+		
+		out.writeByte((lastState == null) ? -1 : lastState.ordinal());
+		out.writeLong(lastBegin);
+		out.writeLong(lastEnd);
+		for(int i = 0; i < stateDurations.length; i++) {
+			out.writeLong(stateDurations[i]);
+			out.writeLong(stateCounts[i]);
+		}
+		
+		out.writeInt(keepStateIntervals ? timeline.size() : -1);
+		if(keepStateIntervals) {
+			for(int i = 0; i < timeline.size(); i++) {
+				out.writeByte(timeline.state(i).ordinal());
+				out.writeLong(timeline.begin(i));
+				out.writeLong(timeline.end(i));
+			}
+		}
+		
+		out.writeInt(pendingEvents.size());
+		for(PendingEvent pending : pendingEvents) {
+			out.writeByte(pending.type);
+			out.writeLong(pending.begin);
+			out.writeLong(pending.duration);
+		}
+	}
+	
+	/**
+	 * Brings a machine that did nothing yet to the state written by {@link #checkpoint(DataOutput)}. The pending events
+	 * are not scheduled; they are returned for the caller to schedule.
+	 */
+	public List<Event> restore(DataInput in) throws IOException {
+		if(currentState.state() != State.BOOTSTRAP || lastState != null) {
+			throw new IllegalStateException("Only a machine that did nothing yet can be restored. " + machineInformation());
+		}
+		
+		State state = State.values()[in.readByte()];
+		switch(state) {
+			case BOOTSTRAP: currentState = new Bootstrap(); break;
+			case IDLE: currentState = new Idle(in); break;
+			case ACTIVE: currentState = new Active(in); break;
+			case SLEEPING: currentState = new Sleeping(in); break;
+			case GOING_SLEEP: currentState = new GoingSleep(in); break;
+			case WAKING_UP: currentState = new WakingUp(in); break;
+		}
+		increaseDelay(in.readLong());
+		
+		byte lastStateOrdinal = in.readByte();
+		lastState = (lastStateOrdinal < 0) ? null : State.values()[lastStateOrdinal];
+		lastBegin = in.readLong();
+		lastEnd = in.readLong();
+		for(int i = 0; i < stateDurations.length; i++) {
+			stateDurations[i] = in.readLong();
+			stateCounts[i] = in.readLong();
+		}
+		
+		int intervals = in.readInt();
+		for(int i = 0; i < intervals; i++) {
+			State intervalState = State.values()[in.readByte()];
+			long begin = in.readLong();
+			long end = in.readLong();
+			if(keepStateIntervals) {
+				indexStateInterval(intervalState, timeline.size());
+				timeline.add(intervalState, begin, end);
+			}
+		}
+		
+		int pending = in.readInt();
+		List<Event> events = new ArrayList<Event>(pending);
+		for(int i = 0; i < pending; i++) {
+			byte type = in.readByte();
+			long begin = in.readLong();
+			long duration = in.readLong();
+			events.add(newPendingEvent(type, begin, duration));
+		}
+		
+		for(StateListener listener : stateListeners) {
+			listener.stateChanged(this);
+		}
+		return events;
+	}
+	
+	private void changeState(MachineState nextState) {
+		if(nextState != currentState) {
+			currentState = nextState;
+			for(StateListener listener : stateListeners) {
+				listener.stateChanged(this);
+			}
+		}
+	}
+	
+	private void addStateInterval(State state, long begin, long end) {
+		if(lastState != null) {
+			stateDurations[lastState.ordinal()] += lastEnd - lastBegin;
+		}
+		lastState = state;
+		lastBegin = begin;
+		lastEnd = end;
+		stateCounts[state.ordinal()]++;
+		
+		if(keepStateIntervals) {
+			indexStateInterval(state, timeline.size());
+			timeline.add(state, begin, end);
+		}
+	}
+	
+	private void indexStateInterval(State state, int position) {
+		int ordinal = state.ordinal();
+		int [] indexes = stateIndexes[ordinal];
+		if(indexes == null) {
+			indexes = stateIndexes[ordinal] = new int[16];
+		} else if(stateIndexSizes[ordinal] == indexes.length) {
+			indexes = stateIndexes[ordinal] = Arrays.copyOf(indexes, indexes.length * 2);
+		}
+		indexes[stateIndexSizes[ordinal]++] = position;
+	}
+	
+	private void shortenLastStateInterval(long end) {
+		lastEnd = end;
+		if(keepStateIntervals) {
+			timeline.setEnd(timeline.size() - 1, end);
+		}
+	}
+	
+	private void checkContinuity(long nextBegin, long nextEnd) {
+		if(lastEnd != nextBegin) {
+			TimeInterval last = new TimeInterval(Micros.toTime(lastBegin), Micros.toTime(lastEnd));
+			TimeInterval next = new TimeInterval(Micros.toTime(nextBegin), Micros.toTime(nextEnd));
 			String msg = String.format("The interval duration of the next state must be contiguous to the " +
 					"interval duration of the current state. Current interval is %s. You tried this %s. %s", 
 					last, next, machineInformation());
@@ -155,202 +541,254 @@ public class Machine {
 		}
 	}
 	
+	private void increaseDelay(long delayIncrement) {
+		if(delayIncrement != 0) {
+			currentDelay += delayIncrement;
+			currentDelayTime = Micros.toTime(currentDelay);
+		}
+	}
+	
 	private String machineInformation() {
-		return String.format("Machine: %s. Current delay %s", hostname, currentDelay);
+		return String.format("Machine: %s. Current delay %s", hostname, currentDelayTime);
 	}
 	
 	// the next four methods are used by State implementations to schedule new events
-	private void scheduleSleep(Time begin, Time duration) {
-		EventScheduler.schedule(new Sleep(this, begin, duration));
+	private void scheduleSleep(long begin, long duration) {
+		scheduler.schedule(newPendingEvent(PendingEvent.SLEEP, begin, duration));
 	}
 	
-	private void scheduleUserActivity(Time begin, Time duration) {
-		EventScheduler.schedule(new UserActivity(this, begin, duration, false));
+	private void scheduleUserActivity(long begin, long duration) {
+		scheduler.schedule(newPendingEvent(PendingEvent.USER_ACTIVITY, begin, duration));
 	}
 	
-	private void scheduleUserIdleness(Time begin, Time duration) {
-		EventScheduler.schedule(new UserIdleness(this, begin, duration, false));
+	private void scheduleUserIdleness(long begin, long duration) {
+		scheduler.schedule(newPendingEvent(PendingEvent.USER_IDLENESS, begin, duration));
 	}
 	
-	private void scheduleWakeOnLan(Time when) {
-		EventScheduler.schedule(new WakeOnLan(this, when));
+	private void scheduleWakeOnLan(long when) {
+		scheduler.schedule(newPendingEvent(PendingEvent.WAKE_ON_LAN, when, 0));
 	}
 	//
 	
+	private Event newPendingEvent(byte type, long begin, long duration) {
+		Event event;
+		switch(type) {
+			case PendingEvent.SLEEP: event = new Sleep(this, begin, duration); break;
+			case PendingEvent.USER_ACTIVITY: event = new UserActivity(this, begin, duration, false); break;
+			case PendingEvent.USER_IDLENESS: event = new UserIdleness(this, begin, duration, false); break;
+			case PendingEvent.WAKE_ON_LAN: event = new WakeOnLan(this, begin); break;
+			default:
+				throw new IllegalArgumentException(type + " is not a valid pending event type.");
+		}
+		pendingEvents.add(new PendingEvent(type, begin, duration, event));
+		return event;
+	}
+	
 	private class Bootstrap implements MachineState {
-		public MachineState toActive(TimeInterval interval) {
-			return new Active(interval);
+		public MachineState toActive(long begin, long end) {
+			return new Active(begin, end);
 		}
-		public MachineState toIdle(TimeInterval interval) {
-			return new Idle(interval);
+		public MachineState toIdle(long begin, long end) {
+			return new Idle(begin, end);
 		}
-		public MachineState toSleep(TimeInterval interval) {
+		public MachineState toSleep(long begin, long end) {
 			throw new IllegalStateException("transition to IDLE is expected. " + machineInformation());
 		}
-		public MachineState wakeOnLan(Time when) {
+		public MachineState wakeOnLan(long when) {
 			throw new IllegalStateException("transition to IDLE is expected. " + machineInformation());
 		}
 		public State state() {
 			return State.BOOTSTRAP;
 		}
-		public Time transitionTime() {
-			return null;
+		public long transitionTime() {
+			return NO_TRANSITION;
 		}
+		public void checkpoint(DataOutput out) { }
 	}
 	
 	private class Idle implements MachineState {
 		
 		private boolean sleepIsExpected = false;
-		private final Time transitionTime;
+		private final long transitionTime;
 		
-		public Idle(TimeInterval interval) {
-			if(toSleepTimeout.isEarlierThan(interval.delta())) { // then, schedule a sleep event on now + toSleepTimeout
-				Time sleepBegin = interval.begin().plus(toSleepTimeout);
-				scheduleSleep(sleepBegin, interval.end().minus(sleepBegin));
+		public Idle(long begin, long end) {
+			if(toSleepTimeout < end - begin) { // then, schedule a sleep event on now + toSleepTimeout
+				long sleepBegin = begin + toSleepTimeout;
+				scheduleSleep(sleepBegin, end - sleepBegin);
 				sleepIsExpected = true;
-				interval = new TimeInterval(interval.begin(), interval.begin().plus(toSleepTimeout));
+				end = sleepBegin;
 			}
-			transitionTime = interval.begin();
-			stateIntervals.add(new MachineStateInterval(State.IDLE, interval));
+			transitionTime = begin;
+			addStateInterval(State.IDLE, begin, end);
 		}
-		public MachineState toActive(TimeInterval interval) {
+		public Idle(DataInput in) throws IOException {
+			transitionTime = in.readLong();
+			sleepIsExpected = in.readBoolean();
+		}
+		public void checkpoint(DataOutput out) throws IOException {
+			out.writeLong(transitionTime);
+			out.writeBoolean(sleepIsExpected);
+		}
+		public MachineState toActive(long begin, long end) {
 			if(sleepIsExpected) {
 				throw new IllegalStateException("transition to SLEEP is expected. " + machineInformation());
 			}
-			checkContinuity(interval); 
-			return new Active(interval);
+			checkContinuity(begin, end); 
+			return new Active(begin, end);
 		}
-		public MachineState toIdle(TimeInterval interval) {
+		public MachineState toIdle(long begin, long end) {
 			throw new IllegalStateException("This machine is already IDLE. " + machineInformation());
 		}
-		public MachineState toSleep(TimeInterval interval) {
+		public MachineState toSleep(long begin, long end) {
 			if(!sleepIsExpected) {
 				throw new IllegalStateException("transition to ACTIVE is expected " + machineInformation());
 			}
-			checkContinuity(interval);
+			checkContinuity(begin, end);
 			
-			Time sleepDuration =  Time.max(interval.delta().minus(transitionDuration), Time.GENESIS);
-			scheduleSleep(interval.begin().plus(transitionDuration), sleepDuration);
+			long delta = end - begin;
+			long sleepDuration = Math.max(delta - transitionDuration, 0);
+			scheduleSleep(begin + transitionDuration, sleepDuration);
 			
-			Time delayIncrement = Time.max(transitionDuration.minus(interval.delta()), Time.GENESIS); 
+			long delayIncrement = Math.max(transitionDuration - delta, 0); 
 			
-			return new GoingSleep(interval.begin(), delayIncrement);
+			return new GoingSleep(begin, delayIncrement);
 		}
-		public MachineState wakeOnLan(Time when) {
+		public MachineState wakeOnLan(long when) {
 			throw new IllegalStateException("This machine is not sleeping. " + machineInformation());
 		}
 		public State state() {
 			return State.IDLE;
 		}
-		public Time transitionTime() {
+		public long transitionTime() {
 			return transitionTime;
 		}
 	}
 	
 	private class Active implements MachineState {
-		private final Time transitionTime;
-		public Active(TimeInterval interval) {
-			transitionTime = interval.begin();
-			stateIntervals.add(new MachineStateInterval(State.ACTIVE, interval));
+		private final long transitionTime;
+		public Active(long begin, long end) {
+			transitionTime = begin;
+			addStateInterval(State.ACTIVE, begin, end);
+		}
+		public Active(DataInput in) throws IOException {
+			transitionTime = in.readLong();
 		}
-		public MachineState toActive(TimeInterval interval) {
+		public void checkpoint(DataOutput out) throws IOException {
+			out.writeLong(transitionTime);
+		}
+		public MachineState toActive(long begin, long end) {
 			throw new IllegalStateException("This machine is already ACTIVE. " + machineInformation());
 		}
-		public MachineState toIdle(TimeInterval interval) {
-			checkContinuity(interval);
-			return new Idle(interval);
+		public MachineState toIdle(long begin, long end) {
+			checkContinuity(begin, end);
+			return new Idle(begin, end);
 		}
-		public MachineState toSleep(TimeInterval interval) {
+		public MachineState toSleep(long begin, long end) {
 			throw new IllegalStateException("Transition to IDLE is expected. " + machineInformation());
 		}
-		public MachineState wakeOnLan(Time when) {
+		public MachineState wakeOnLan(long when) {
 			throw new IllegalStateException("This machine is not sleeping. " + machineInformation());
 		}
 		public State state() {
 			return State.ACTIVE;
 		}
-		public Time transitionTime() {
+		public long transitionTime() {
 			return transitionTime;
 		}
 	}
 	
 	private class Sleeping implements MachineState {
-		private final Time transitionTime;
-		public Sleeping(TimeInterval interval) {
-			transitionTime = interval.begin();
-			stateIntervals.add(new MachineStateInterval(State.SLEEPING, interval));
+		private final long transitionTime;
+		public Sleeping(long begin, long end) {
+			transitionTime = begin;
+			addStateInterval(State.SLEEPING, begin, end);
+		}
+		public Sleeping(DataInput in) throws IOException {
+			transitionTime = in.readLong();
 		}
-		public MachineState toActive(TimeInterval interval) {
-			checkContinuity(interval);
-			scheduleUserActivity(interval.begin().plus(transitionDuration), interval.delta());
-			return new WakingUp(interval.begin(), transitionDuration, false);
+		public void checkpoint(DataOutput out) throws IOException {
+			out.writeLong(transitionTime);
 		}
-		public MachineState toIdle(TimeInterval interval) {
+		public MachineState toActive(long begin, long end) {
+			checkContinuity(begin, end);
+			scheduleUserActivity(begin + transitionDuration, end - begin);
+			return new WakingUp(begin, transitionDuration, false);
+		}
+		public MachineState toIdle(long begin, long end) {
 			throw new IllegalStateException("Transition to ACTIVE or WakeOnLan are expected. " + machineInformation());
 		}
-		public MachineState toSleep(TimeInterval interval) {
+		public MachineState toSleep(long begin, long end) {
 			throw new IllegalStateException("Transition to ACTIVE or WakeOnLan are expected. " + machineInformation());
 		}
-		public MachineState wakeOnLan(Time now) {
+		public MachineState wakeOnLan(long now) {
 			/*
 			 *  adjusts the time interval the machine really slept
 			 */
-			int lastElementIndex = stateIntervals.size() - 1;
-			TimeInterval shouldSleepInterval = stateIntervals.get(lastElementIndex).getInterval();
-			if(shouldSleepInterval.end().isEarlierThan(now)) {
+			long shouldSleepUntil = lastEnd;
+			if(shouldSleepUntil < now) {
 				throw new IllegalStateException("This machine should already be awake. " + machineInformation());
 			}
-			stateIntervals.remove(lastElementIndex);
-			TimeInterval interval = new TimeInterval(shouldSleepInterval.begin(), now);
-			stateIntervals.add(new MachineStateInterval(State.SLEEPING, interval));
+			shortenLastStateInterval(now);
 
-			Time remainingSleepTime = shouldSleepInterval.end().minus(now);
-			Time idlenessDuration = Time.max(remainingSleepTime.minus(transitionDuration), Time.GENESIS);
+			long remainingSleepTime = shouldSleepUntil - now;
+			long idlenessDuration = Math.max(remainingSleepTime - transitionDuration, 0);
 			
-			if(idlenessDuration.equals(Time.GENESIS)) {
-				Time delayIncrement = transitionDuration.minus(remainingSleepTime);
+			if(idlenessDuration == 0) {
+				long delayIncrement = transitionDuration - remainingSleepTime;
 				return new WakingUp(now, delayIncrement, false);
 			} else {
 				/* 
 				 * schedules a new UserIdleness event starting after the transition ends and lasting the same time this 
 				 * machine should remain sleeping (before being disturbed) minus the transition duration.
 				 */
-				scheduleUserIdleness(now.plus(transitionDuration), idlenessDuration);
-				return new WakingUp(now, Time.GENESIS, true);
+				scheduleUserIdleness(now + transitionDuration, idlenessDuration);
+				return new WakingUp(now, 0, true);
 			}
 		}
 		public State state() {
 			return State.SLEEPING;
 		}
-		public Time transitionTime() {
+		public long transitionTime() {
 			return transitionTime;
 		}
 	}
 	
 	private class GoingSleep implements MachineState {
 		
-		private final TimeInterval interval;
+		private final long begin;
+		private final long end;
 		private boolean wakeOnLanScheduled = false;
 		
-		public GoingSleep(Time time, Time delayIncrement) {
-			interval = new TimeInterval(time, time.plus(transitionDuration));
-			stateIntervals.add(new MachineStateInterval(State.GOING_SLEEP, interval));
+		public GoingSleep(long time, long delayIncrement) {
+			begin = time;
+			end = time + transitionDuration;
+			addStateInterval(State.GOING_SLEEP, begin, end);
 			
-			currentDelay = currentDelay.plus(delayIncrement);
+			increaseDelay(delayIncrement);
+		}
+		public GoingSleep(DataInput in) throws IOException {
+			begin = in.readLong();
+			end = in.readLong();
+			wakeOnLanScheduled = in.readBoolean();
 		}
-		public MachineState toActive(TimeInterval interval) {
+		public void checkpoint(DataOutput out) throws IOException {
+			out.writeLong(begin);
+			out.writeLong(end);
+			out.writeBoolean(wakeOnLanScheduled);
+		}
+		public MachineState toActive(long begin, long end) {
 			throw new IllegalStateException("Transition to SLEEPING is expected. " + machineInformation());
 		}
-		public MachineState toIdle(TimeInterval interval) {
+		public MachineState toIdle(long begin, long end) {
 			throw new IllegalStateException("Transition to SLEEPING is expected. " + machineInformation());
 		}
-		public MachineState toSleep(TimeInterval interval) {
-			checkContinuity(interval);
-			return new Sleeping(interval);
+		public MachineState toSleep(long begin, long end) {
+			checkContinuity(begin, end);
+			return new Sleeping(begin, end);
 		}
-		public MachineState wakeOnLan(Time when) {
+		public MachineState wakeOnLan(long when) {
 			if(!wakeOnLanScheduled) {
-				scheduleWakeOnLan(interval.end());
+				scheduleWakeOnLan(end);
 				wakeOnLanScheduled = true;
 			}
 			return this;
@@ -358,48 +796,55 @@ public class Machine {
 		public State state() {
 			return State.GOING_SLEEP;
 		}
-		public Time transitionTime() {
-			return interval.begin();
+		public long transitionTime() {
+			return begin;
 		}
 	}
 	
 	private class WakingUp implements MachineState {
-		private final Time transitionTime;
+		private final long transitionTime;
 		private final boolean expectTransitionToIdle;
 		
-		public WakingUp(Time time, Time delayIncrement, boolean expectTransitionToIdle) {
+		public WakingUp(long time, long delayIncrement, boolean expectTransitionToIdle) {
 			transitionTime = time;
-			TimeInterval transitionInterval = new TimeInterval(time, time.plus(transitionDuration));
-			stateIntervals.add(new MachineStateInterval(State.WAKING_UP, transitionInterval));
+			addStateInterval(State.WAKING_UP, time, time + transitionDuration);
 			this.expectTransitionToIdle = expectTransitionToIdle;
 			
-			currentDelay = currentDelay.plus(delayIncrement);
+			increaseDelay(delayIncrement);
+		}
+		public WakingUp(DataInput in) throws IOException {
+			transitionTime = in.readLong();
+			expectTransitionToIdle = in.readBoolean();
+		}
+		public void checkpoint(DataOutput out) throws IOException {
+			out.writeLong(transitionTime);
+			out.writeBoolean(expectTransitionToIdle);
 		}
-		public MachineState toActive(TimeInterval interval) {
+		public MachineState toActive(long begin, long end) {
 			if(expectTransitionToIdle) {
 				throw new IllegalStateException("Transition to IDLE is expected. " + machineInformation());
 			}
-			checkContinuity(interval);
-			return new Active(interval);
+			checkContinuity(begin, end);
+			return new Active(begin, end);
 		}
-		public MachineState toIdle(TimeInterval interval) {
+		public MachineState toIdle(long begin, long end) {
 			if(!expectTransitionToIdle) {
 				throw new IllegalStateException("Transition to ACTIVE is expected. " + machineInformation());
 			}
-			checkContinuity(interval);
-			return new Idle(interval);
+			checkContinuity(begin, end);
+			return new Idle(begin, end);
 		}
-		public MachineState toSleep(TimeInterval interval) {
+		public MachineState toSleep(long begin, long end) {
 			String nextState = expectTransitionToIdle ? "IDLE" : "ACTIVE";
 			throw new IllegalStateException(String.format("Transition to %s is expected. %s", nextState, machineInformation()));
 		}
-		public MachineState wakeOnLan(Time when) {
+		public MachineState wakeOnLan(long when) {
 			return this;
 		}
 		public State state() {
 			return State.WAKING_UP;
 		}
-		public Time transitionTime() {
+		public long transitionTime() {
 			return transitionTime;
 		}
 	}
@@ -0,0 +1,147 @@
+package simulation.beefs.model;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+import simulation.beefs.model.Machine.MachineStateInterval;
+import simulation.beefs.model.Machine.State;
+
+/**
+ *
+ * The state intervals of a machine kept in primitive columns: the begin and the end of each interval, in microseconds,
+ * and its state. The columns are split in fixed size chunks, so growing the timeline never copies what is already
+ * stored. {@link MachineStateInterval} instances are only created when the intervals are read through
+ * {@link #asList()}.
+ * <br><br>
+ * A timeline can be dumped for offline analysis. The dump is made of big-endian fields, as written by
+ * {@link DataOutputStream}:
+ * <br><br>
+ * int magic (0x42544C31), int version, UTF machine name, int count, then count records of <br>
+ * byte state (the ordinal of {@link State}), long begin, long end
+ *
+ */
+public class MachineTimeline {
+
+	public static final int MAGIC = 0x42544C31; // BTL1
+	public static final int VERSION = 1;
+
+	private static final int CHUNK_BITS = 13;
+	private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	private static final State [] STATES = State.values();
+
+	private long [][] begins = new long[4][];
+	private long [][] ends = new long[4][];
+	private byte [][] states = new byte[4][];
+	private int size = 0;
+
+	private final List<MachineStateInterval> view = new AbstractList<MachineStateInterval>() {
+		@Override
+		public MachineStateInterval get(int index) {
+			checkIndex(index);
+			return new MachineStateInterval(state(index), begin(index), end(index));
+		}
+		@Override
+		public int size() {
+			return size;
+		}
+	};
+
+	public void add(State state, long begin, long end) {
+		int chunk = size >>> CHUNK_BITS;
+		if(chunk == begins.length) {
+			begins = Arrays.copyOf(begins, chunk * 2);
+			ends = Arrays.copyOf(ends, chunk * 2);
+			states = Arrays.copyOf(states, chunk * 2);
+		}
+		if(begins[chunk] == null) {
+			begins[chunk] = new long[CHUNK_SIZE];
+			ends[chunk] = new long[CHUNK_SIZE];
+			states[chunk] = new byte[CHUNK_SIZE];
+		}
+		int offset = size & CHUNK_MASK;
+		begins[chunk][offset] = begin;
+		ends[chunk][offset] = end;
+		states[chunk][offset] = (byte) state.ordinal();
+		size++;
+	}
+
+	public void setEnd(int index, long end) {
+		checkIndex(index);
+		ends[index >>> CHUNK_BITS][index & CHUNK_MASK] = end;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public State state(int index) {
+		return STATES[states[index >>> CHUNK_BITS][index & CHUNK_MASK]];
+	}
+
+	public long begin(int index) {
+		return begins[index >>> CHUNK_BITS][index & CHUNK_MASK];
+	}
+
+	public long end(int index) {
+		return ends[index >>> CHUNK_BITS][index & CHUNK_MASK];
+	}
+
+	/**
+	 * @return a read-only view of the intervals of this timeline
+	 */
+	public List<MachineStateInterval> asList() {
+		return view;
+	}
+
+	public void write(String machineName, File file) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(machineName);
+			out.writeInt(size);
+			for(int i = 0; i < size; i++) {
+				out.writeByte(states[i >>> CHUNK_BITS][i & CHUNK_MASK]);
+				out.writeLong(begin(i));
+				out.writeLong(end(i));
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Reads a timeline written by {@link #write(String, File)}. The machine name is skipped.
+	 */
+	public static MachineTimeline read(InputStream in) throws IOException {
+		DataInputStream dataIn = new DataInputStream(in);
+		if(dataIn.readInt() != MAGIC || dataIn.readInt() != VERSION) {
+			throw new IOException("not a machine timeline");
+		}
+		dataIn.readUTF();
+		MachineTimeline timeline = new MachineTimeline();
+		int count = dataIn.readInt();
+		for(int i = 0; i < count; i++) {
+			State state = STATES[dataIn.readByte()];
+			timeline.add(state, dataIn.readLong(), dataIn.readLong());
+		}
+		return timeline;
+	}
+
+	private void checkIndex(int index) {
+		if(index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+	}
+
+}
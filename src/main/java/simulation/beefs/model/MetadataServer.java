@@ -1,17 +1,22 @@
 package simulation.beefs.model;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 
+import manelsim.Event;
 import manelsim.EventScheduler;
 import manelsim.Time;
 import simulation.beefs.event.filesystem.UpdateFileReplicas;
 import simulation.beefs.placement.DataPlacement;
 import simulation.beefs.replication.Replicator;
+import simulation.beefs.util.Micros;
 
 public class MetadataServer {
 	
@@ -23,9 +28,11 @@ public class MetadataServer {
 	
 	private final Time timeToCoherence;
 	
-	private final Map<String, ReplicatedFile> files = new HashMap<String, ReplicatedFile>();
+	// both indexed by the PathDictionary id of the files
+	private ReplicatedFile [] files = new ReplicatedFile[1024];
 	
-	private final Map<String, UpdateFileReplicas> scheduledUpdateReplicasEvents = new HashMap<String, UpdateFileReplicas>();
+	// only the updates that were not processed yet; UpdateFileReplicas events clear their slot when processed
+	private UpdateFileReplicas [] scheduledUpdateReplicasEvents = new UpdateFileReplicas[1024];
 
 	// Patrick: I'm considering that there is just one DataServer per machine.
 	private final Map<String, DataServer> dataServerByHost = new HashMap<String, DataServer>();
@@ -44,62 +51,167 @@ public class MetadataServer {
 	}
 	
 	public void close(String filePath) {
-		ReplicatedFile file = files.get(filePath);
+		close(PathDictionary.id(filePath));
+	}
+	
+	public void close(int fileId) {
+		ReplicatedFile file = file(fileId);
 		
 		if(file != null && !file.replicasAreConsistent() && file.replicas().size() > 0) {
-			cleanUpProcessedEvents();
 			Time now = EventScheduler.now();
-			UpdateFileReplicas old = scheduledUpdateReplicasEvents.get(file.fullPath());
+			UpdateFileReplicas old = scheduledUpdateReplicasEvents[fileId];
 			if(old != null) {
 				EventScheduler.cancel(old);
 			}
 			UpdateFileReplicas updateFileReplicas = new UpdateFileReplicas(now.plus(timeToCoherence), file, this);
 			EventScheduler.schedule(updateFileReplicas);
-			scheduledUpdateReplicasEvents.put(file.fullPath(), updateFileReplicas);
-		}
-	}
-	
-	private void cleanUpProcessedEvents() {
-		List<Entry<String, UpdateFileReplicas>> toRemove = new LinkedList<Entry<String, UpdateFileReplicas>>();
-		for(Entry<String, UpdateFileReplicas> entry : scheduledUpdateReplicasEvents.entrySet()) {
-			if(entry.getValue().wasProcessed()) {
-				toRemove.add(entry);
-			}
+			scheduledUpdateReplicasEvents[fileId] = updateFileReplicas;
 		}
-		scheduledUpdateReplicasEvents.entrySet().removeAll(toRemove);
 	}
 
 	public void updateReplicas(ReplicatedFile file) {
 		replicator.updateReplicas(file);
 	}
 	
+	/**
+	 * Processes an update scheduled by {@link #close(int)}. The update is forgotten first, so only the pending ones
+	 * are kept.
+	 */
+	public void updateReplicas(UpdateFileReplicas update) {
+		int fileId = update.file().fileId();
+		if(scheduledUpdateReplicasEvents[fileId] == update) {
+			scheduledUpdateReplicasEvents[fileId] = null;
+		}
+		updateReplicas(update.file());
+	}
+	
+	UpdateFileReplicas scheduledUpdateReplicas(int fileId) {
+		return (fileId < scheduledUpdateReplicasEvents.length) ? scheduledUpdateReplicasEvents[fileId] : null;
+	}
+	
 	public void delete(String filePath) {
-		ReplicatedFile file = files.remove(filePath);
+		delete(PathDictionary.id(filePath));
+	}
+	
+	public void delete(int fileId) {
+		ReplicatedFile file = file(fileId);
 		if(file != null) {
+			files[fileId] = null;
 			file.delete();
 		}
 	}
 
 	public ReplicatedFile createOrOpen(FileSystemClient client, String path, long size) {
-		ReplicatedFile theFile = files.get(path);
+		return createOrOpen(client, PathDictionary.id(path), size);
+	}
+
+	public ReplicatedFile createOrOpen(FileSystemClient client, int fileId, long size) {
+		ReplicatedFile theFile = file(fileId);
 		
 		if(theFile == null) {
-			theFile = createFile(client, path, size);
+			theFile = createFile(client, fileId, size);
 		}
 		
 		return theFile;
 	}
 
-	private ReplicatedFile createFile(FileSystemClient client, String fullpath, long size) {
-		ReplicatedFile newFile = dataPlacement.createFile(client, fullpath, replicationLevel, size);
+	private ReplicatedFile createFile(FileSystemClient client, int fileId, long size) {
+		ReplicatedFile newFile = dataPlacement.createFile(client, fileId, replicationLevel, size);
 		
-		files.put(fullpath, newFile);
+		if(newFile != null) {
+			ensureCapacity(fileId);
+			files[fileId] = newFile;
+		}
 		
 		return newFile;
 	}
 	
+	private ReplicatedFile file(int fileId) {
+		return (fileId < files.length) ? files[fileId] : null;
+	}
+	
+	private void ensureCapacity(int fileId) {
+		if(fileId >= files.length) {
+			int newLength = Math.max(fileId + 1, files.length * 2);
+			files = Arrays.copyOf(files, newLength);
+			scheduledUpdateReplicasEvents = Arrays.copyOf(scheduledUpdateReplicasEvents, newLength);
+		}
+	}
+	
 	public DataServer getDataServer(String host) {
 		return dataServerByHost.get(host);
 	}
+	
+	/**
+	 * Writes the placement and replication state, the files and the pending replica updates. The free space of the
+	 * data servers is checkpointed by themselves.
+	 */
+	public void checkpoint(DataOutput out) throws IOException {
+		dataPlacement.checkpoint(out);
+		replicator.checkpoint(out);
+		
+		int fileCount = 0;
+		for(ReplicatedFile file : files) {
+			if(file != null) {
+				fileCount++;
+			}
+		}
+		out.writeInt(fileCount);
+		for(ReplicatedFile file : files) {
+			if(file != null) {
+				file.checkpoint(out);
+			}
+		}
+		
+		int updateCount = 0;
+		for(UpdateFileReplicas update : scheduledUpdateReplicasEvents) {
+			if(update != null) {
+				updateCount++;
+			}
+		}
+		out.writeInt(updateCount);
+		for(UpdateFileReplicas update : scheduledUpdateReplicasEvents) {
+			if(update != null) {
+				out.writeLong(Micros.of(update.getScheduledTime()));
+				// the file may have been deleted since the update was scheduled
+				boolean live = (file(update.file().fileId()) == update.file());
+				out.writeBoolean(live);
+				if(live) {
+					out.writeUTF(update.file().fullPath());
+				} else {
+					update.file().checkpoint(out);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Reads what {@link #checkpoint(DataOutput)} wrote into a metadata server that has no files yet. The pending
+	 * replica updates are returned for the caller to schedule.
+	 */
+	public List<Event> restore(DataInput in) throws IOException {
+		dataPlacement.restore(in);
+		replicator.restore(in);
+		
+		int fileCount = in.readInt();
+		for(int i = 0; i < fileCount; i++) {
+			ReplicatedFile file = ReplicatedFile.restore(in, dataServerByHost);
+			ensureCapacity(file.fileId());
+			files[file.fileId()] = file;
+		}
+		
+		int updateCount = in.readInt();
+		List<Event> updates = new ArrayList<Event>(updateCount);
+		for(int i = 0; i < updateCount; i++) {
+			Time time = Micros.toTime(in.readLong());
+			ReplicatedFile file = in.readBoolean() ? file(PathDictionary.id(in.readUTF())) :
+					ReplicatedFile.restore(in, dataServerByHost);
+			UpdateFileReplicas update = new UpdateFileReplicas(time, file, this);
+			ensureCapacity(file.fileId());
+			scheduledUpdateReplicasEvents[file.fileId()] = update;
+			updates.add(update);
+		}
+		return updates;
+	}
 
 }
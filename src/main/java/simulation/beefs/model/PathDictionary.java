@@ -0,0 +1,56 @@
+package simulation.beefs.model;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ *
+ * Maps every distinct file path of the simulation to a compact integer id, so files can be indexed by arrays instead
+ * of being hashed by their paths over and over. Ids are handed out sequentially from 0 and are never reused.
+ * <br><br>
+ * The dictionary is shared by all clients and may be fed by trace readers running on other threads, so lookups are
+ * lock free and only the registration of a new path is synchronized.
+ *
+ */
+public final class PathDictionary {
+
+	private static final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<String, Integer>(1 << 16);
+
+	private static volatile String [] paths = new String[1 << 16];
+
+	private static int size = 0;
+
+	private PathDictionary() { }
+
+	public static int id(String path) {
+		Integer id = ids.get(path);
+		return (id != null) ? id : register(path);
+	}
+
+	public static String path(int id) {
+		return paths[id];
+	}
+
+	public static int size() {
+		return ids.size();
+	}
+
+	private static synchronized int register(String path) {
+		Integer id = ids.get(path);
+		if(id != null) {
+			return id;
+		}
+
+		String [] currentPaths = paths;
+		if(size == currentPaths.length) {
+			String [] morePaths = new String[size * 2];
+			System.arraycopy(currentPaths, 0, morePaths, 0, size);
+			currentPaths = morePaths;
+		}
+		currentPaths[size] = path;
+		paths = currentPaths; // publishes the path before its id becomes visible
+
+		ids.put(path, size);
+		return size++;
+	}
+
+}
@@ -1,13 +1,18 @@
 package simulation.beefs.model;
 
-import java.util.HashSet;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
 
-import manelsim.EventScheduler;
+import simulation.beefs.log.EventLog;
+import simulation.beefs.log.EventLog.Category;
 
 public class ReplicatedFile {
 	
-	private final String fullpath;
+	private final int fileId;
 	private final int expectedReplicationLevel;
 	
 	private long size = 0;
@@ -16,9 +21,16 @@ public class ReplicatedFile {
 	private Set<FileReplica> replicas;
 	
 	public ReplicatedFile(String fullpath, DataServer primary, int expectedReplicationLevel, Set<FileReplica> replicas) {
-		this.fullpath = fullpath;
+		this(PathDictionary.id(fullpath), primary, expectedReplicationLevel, replicas);
+	}
+	
+	/**
+	 * @param fileId the id the {@link PathDictionary} gave to the path of this file
+	 */
+	public ReplicatedFile(int fileId, DataServer primary, int expectedReplicationLevel, Set<FileReplica> replicas) {
+		this.fileId = fileId;
 		this.primary = primary;
-		this.replicas = (replicas != null) ? replicas : new HashSet<FileReplica>();
+		this.replicas = (replicas != null) ? replicas : new LinkedHashSet<FileReplica>();
 		this.expectedReplicationLevel = expectedReplicationLevel;
 	}
 	
@@ -27,7 +39,7 @@ public class ReplicatedFile {
 		for(FileReplica replica : replicas) {
 			replica.delete();
 		}
-		System.out.println(String.format("!%s deleted - %s", fullpath, EventScheduler.now()));
+		EventLog.fileDeleted(fileId);
 	}
 	
 	public void updateReplicas(Set<FileReplica> replicas) {
@@ -40,9 +52,7 @@ public class ReplicatedFile {
 		long bytesNotWritten = bytes - actualBytesWritten;
 		
 		if(bytesNotWritten != 0) {
-			String msg = String.format("%%primary write failed in %s (%d bytes not written) - %s", primary.host().name(), 
-					bytesNotWritten, EventScheduler.now());
-			System.out.println(msg);
+			EventLog.failedWrite(primary.host().name(), bytesNotWritten);
 		}
 		
 		if(actualBytesWritten > 0) {
@@ -59,7 +69,9 @@ public class ReplicatedFile {
 	}
 
 	private void logChange() {
-		System.out.println(String.format("!%s %d - %s", fullpath, replicasUpToDate(), EventScheduler.now()));
+		if(EventLog.isEnabled(Category.REPLICA_CHANGES)) {
+			EventLog.replicaChange(fileId, replicasUpToDate());
+		}
 	}
 
 	private int replicasUpToDate() {
@@ -77,11 +89,15 @@ public class ReplicatedFile {
 	}
 	
 	public Set<FileReplica> replicas() {
-		return new HashSet<FileReplica>(replicas);
+		return new LinkedHashSet<FileReplica>(replicas);
 	}
 	
 	public String fullPath() {
-		return fullpath;
+		return PathDictionary.path(fileId);
+	}
+	
+	public int fileId() {
+		return fileId;
 	}
 	
 	public long bytesWritten() {
@@ -115,6 +131,54 @@ public class ReplicatedFile {
 		}
  	}
 
+	void checkpoint(DataOutput out) throws IOException {
+		out.writeUTF(fullPath());
+		out.writeInt(expectedReplicationLevel);
+		out.writeLong(size);
+		out.writeLong(bytesWritten);
+		out.writeUTF(primary.host().name());
+		out.writeInt(replicas.size());
+		for(FileReplica replica : replicas) {
+			out.writeUTF(replica.dataServer().host().name());
+			out.writeLong(replica.size());
+			out.writeBoolean(replica.isConsistent());
+			out.writeBoolean(replica.isDeleted());
+		}
+	}
+	
+	/**
+	 * Reads what {@link #checkpoint(DataOutput)} wrote. The disk space of the file is not used again, the data
+	 * servers restore their free space themselves.
+	 */
+	static ReplicatedFile restore(DataInput in, Map<String, DataServer> dataServerByHost) throws IOException {
+		int fileId = PathDictionary.id(in.readUTF());
+		int expectedReplicationLevel = in.readInt();
+		long size = in.readLong();
+		long bytesWritten = in.readLong();
+		DataServer primary = dataServer(in.readUTF(), dataServerByHost);
+		int replicaCount = in.readInt();
+		Set<FileReplica> replicas = new LinkedHashSet<FileReplica>();
+		for(int i = 0; i < replicaCount; i++) {
+			DataServer dataServer = dataServer(in.readUTF(), dataServerByHost);
+			long replicaSize = in.readLong();
+			boolean consistent = in.readBoolean();
+			replicas.add(new FileReplica(dataServer, replicaSize, consistent, in.readBoolean()));
+		}
+		
+		ReplicatedFile file = new ReplicatedFile(fileId, primary, expectedReplicationLevel, replicas);
+		file.size = size;
+		file.bytesWritten = bytesWritten;
+		return file;
+	}
+	
+	private static DataServer dataServer(String host, Map<String, DataServer> dataServerByHost) throws IOException {
+		DataServer dataServer = dataServerByHost.get(host);
+		if(dataServer == null) {
+			throw new IOException("there is no data server on " + host);
+		}
+		return dataServer;
+	}
+
 	public void promoteReplica(FileReplica replica) {
 		primary.cleanSpace(bytesWritten);
 		
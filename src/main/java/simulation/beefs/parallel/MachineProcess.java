@@ -0,0 +1,230 @@
+package simulation.beefs.parallel;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import manelsim.Event;
+import manelsim.EventScheduler;
+import simulation.beefs.event.MachineDelaybleEvent;
+import simulation.beefs.event.machine.UserActivity;
+import simulation.beefs.event.machine.UserActivityTrace;
+import simulation.beefs.event.machine.UserIdleness;
+import simulation.beefs.model.Machine;
+import simulation.beefs.util.Micros;
+
+/**
+ *
+ * A logical process that owns the events of one machine: the ones of its idleness trace and the ones the machine
+ * schedules for its own transitions. They never reach the {@link EventScheduler}; the process runs them, in time order,
+ * when it is advanced, either by {@link MachineProcesses} together with the other machines or by the machine itself,
+ * up to the current simulation time, before anything else observes or changes it (see {@link Machine.Scheduler}).
+ * <br><br>
+ * A process is never advanced past the current simulation time, so every other event sees the machine exactly as it
+ * would be in a sequential run. The events of the machine that happen at the same time as an event of another source
+ * are run first.
+ * <br><br>
+ * The trace is read record by record: its idleness and activity periods go straight to the machine, without events.
+ *
+ */
+public class MachineProcess implements Machine.Scheduler {
+
+	private static class Scheduled {
+		final Event event;
+		final long time;
+		final long sequence;
+
+		Scheduled(Event event, long time, long sequence) {
+			this.event = event;
+			this.time = time;
+			this.sequence = sequence;
+		}
+	}
+
+	private final Machine machine;
+
+	private static final String USER_IDLENESS = UserIdleness.class.getSimpleName();
+	private static final String USER_ACTIVITY = UserActivity.class.getSimpleName();
+
+	private final UserActivityTrace trace;
+
+	// the next record of the trace, copied since reading the one after it overwrites the trace fields
+	private boolean hasTraceRecord;
+	private boolean traceIdleness;
+	private long traceBegin;
+	private long traceDuration;
+
+	// the events the machine schedules are never delayed, so their times can be the keys of the queue
+	private final PriorityQueue<Scheduled> scheduled = new PriorityQueue<Scheduled>(16, new Comparator<Scheduled>() {
+		@Override
+		public int compare(Scheduled s1, Scheduled s2) {
+			if(s1.time != s2.time) {
+				return s1.time < s2.time ? -1 : 1;
+			}
+			return s1.sequence < s2.sequence ? -1 : (s1.sequence == s2.sequence ? 0 : 1);
+		}
+	});
+
+	private long scheduledCount = 0;
+
+	private final Map<String, Long> eventsCountByType = new HashMap<String, Long>();
+
+	private long idlenessCount = 0;
+	private long activityCount = 0;
+
+	private boolean advancing = false;
+
+	// set by the MachineProcesses this process belongs to, if any
+	private MachineProcesses group = null;
+	int id;
+	long dueTime;
+
+	/**
+	 * @param trace the idleness events of <code>machine</code>
+	 */
+	public MachineProcess(Machine machine, UserActivityTrace trace) {
+		this.machine = machine;
+		this.trace = trace;
+		readTraceRecord();
+		machine.setScheduler(this);
+	}
+
+	public Machine machine() {
+		return machine;
+	}
+
+	@Override
+	public void schedule(Event event) {
+		scheduled.add(new Scheduled(event, timeOf(event), scheduledCount++));
+		if(!advancing) {
+			nextEventTimeChanged();
+		}
+	}
+
+	@Override
+	public void synchronize() {
+		if(!advancing) {
+			advanceTo(Micros.of(EventScheduler.now()));
+		}
+	}
+
+	@Override
+	public void synchronizeAll() {
+		if(group != null) {
+			group.advanceDue(Micros.of(EventScheduler.now()));
+		} else {
+			synchronize();
+		}
+	}
+
+	void joined(MachineProcesses group, int id) {
+		this.group = group;
+		this.id = id;
+	}
+
+	/**
+	 * Runs the events of the machine until <code>time</code>, inclusive.
+	 */
+	public void advanceTo(long time) {
+		if(advancing) {
+			return;
+		}
+		advancing = true;
+		try {
+			while(true) {
+				Scheduled nextScheduled = scheduled.peek();
+				long traceTime = traceTime();
+
+				if(nextScheduled != null && nextScheduled.time <= traceTime) {
+					if(nextScheduled.time > time) {
+						return;
+					}
+					Event next = scheduled.poll().event;
+					next.process();
+					count(next.getClass().getSimpleName());
+				} else {
+					if(!hasTraceRecord || traceTime > time) {
+						return;
+					}
+					// the same as processing a delayable UserIdleness or UserActivity
+					if(traceIdleness) {
+						machine.setIdle(traceTime, traceDuration);
+						idlenessCount++;
+					} else {
+						machine.setActive(traceTime, traceDuration);
+						activityCount++;
+					}
+					readTraceRecord();
+				}
+			}
+		} finally {
+			advancing = false;
+			nextEventTimeChanged();
+		}
+	}
+
+	/**
+	 * @return the time of the next event of the machine, or {@link Long#MAX_VALUE} if there is none
+	 */
+	public long nextEventTime() {
+		long next = traceTime();
+		Scheduled nextScheduled = scheduled.peek();
+		if(nextScheduled != null && nextScheduled.time < next) {
+			next = nextScheduled.time;
+		}
+		return next;
+	}
+
+	/**
+	 * @return how many events of each type this process ran, by simple class name
+	 */
+	public Map<String, Long> eventsCountByType() {
+		Map<String, Long> counts = new HashMap<String, Long>(eventsCountByType);
+		addCount(counts, USER_IDLENESS, idlenessCount);
+		addCount(counts, USER_ACTIVITY, activityCount);
+		return counts;
+	}
+
+	private void readTraceRecord() {
+		hasTraceRecord = trace.nextRecord();
+		if(hasTraceRecord) {
+			traceIdleness = trace.isIdleness();
+			traceBegin = trace.begin();
+			traceDuration = trace.duration();
+		}
+	}
+
+	/**
+	 * @return the time of the next record of the trace, delayed by the machine, or {@link Long#MAX_VALUE} if there is 
+	 * none
+	 */
+	private void nextEventTimeChanged() {
+		if(group != null) {
+			group.nextEventTimeChanged(this);
+		}
+	}
+
+	private long traceTime() {
+		return hasTraceRecord ? traceBegin + machine.lastKnownDelayMicros() : Long.MAX_VALUE;
+	}
+
+	private void count(String type) {
+		addCount(eventsCountByType, type, 1);
+	}
+
+	private static void addCount(Map<String, Long> counts, String type, long count) {
+		if(count > 0) {
+			Long current = counts.get(type);
+			counts.put(type, (current == null) ? count : current + count);
+		}
+	}
+
+	private static long timeOf(Event event) {
+		if(event instanceof MachineDelaybleEvent) {
+			return ((MachineDelaybleEvent) event).scheduledTimeMicros();
+		}
+		return Micros.of(event.getScheduledTime());
+	}
+
+}
@@ -0,0 +1,224 @@
+package simulation.beefs.parallel;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import manelsim.Event;
+import manelsim.EventScheduler;
+import simulation.beefs.model.Machine;
+import simulation.beefs.util.Micros;
+
+/**
+ *
+ * Runs the {@link MachineProcess machine processes} of a simulation on several threads. The machines only interact
+ * through the events of the file system and of the replication, which stay on the simulation thread and bring the
+ * machines they touch up to date on their own. Every <code>window</code> of simulation time, an {@link Advance} event
+ * brings all the other machines up to date at once, each on a thread of the pool, while the simulation thread waits.
+ * Those that observe many machines at once (see {@link Machine#synchronizeAll()}) only bring up to date the machines
+ * that have events due, found in logarithmic time.
+ * <br><br>
+ * The results are the ones of a sequential run in which the events of a machine come before the events of the other
+ * sources that happen at the same time.
+ *
+ */
+public class MachineProcesses {
+
+	private final List<MachineProcess> processes;
+
+	private final ExecutorService pool;
+
+	private final long window;
+
+	private final long end;
+
+	// the processes by the time of their next event. The time a process is kept at may be early, never late: a machine
+	// only postpones its events by growing its delay, and the process tells when it has new ones
+	private final TreeSet<MachineProcess> byDueTime = new TreeSet<MachineProcess>(new Comparator<MachineProcess>() {
+		@Override
+		public int compare(MachineProcess p1, MachineProcess p2) {
+			if(p1.dueTime != p2.dueTime) {
+				return p1.dueTime < p2.dueTime ? -1 : 1;
+			}
+			return p1.id - p2.id;
+		}
+	});
+
+	// while the pool advances the machines, the processes are put back in byDueTime afterwards
+	private boolean advancingAll = false;
+
+	/**
+	 * An event of the simulation thread that advances all machines to its time and schedules the next one.
+	 */
+	public class Advance extends Event {
+
+		private final long time;
+
+		Advance(long time) {
+			super(Micros.toTime(time));
+			this.time = time;
+		}
+
+		@Override
+		public void process() {
+			advanceAll(time);
+			long next = nextEventTime();
+			if(next == Long.MAX_VALUE || time >= end) {
+				shutdown();
+				return;
+			}
+			EventScheduler.schedule(new Advance(Math.min(Math.max(next, time + window), end)));
+		}
+
+	}
+
+	/**
+	 * @param threads how many machines are advanced at the same time. With 1, they are advanced on the simulation
+	 * thread.
+	 * @param window the simulation time, in microseconds, between two advances of all machines
+	 * @param end the end of the simulation, in microseconds. Machines are not advanced past it.
+	 */
+	public MachineProcesses(List<MachineProcess> processes, int threads, long window, long end) {
+		this.processes = new ArrayList<MachineProcess>(processes);
+		this.window = window;
+		this.end = end;
+		this.pool = (threads > 1) ? Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "machine-process-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		}) : null;
+		for(int i = 0; i < this.processes.size(); i++) {
+			MachineProcess process = this.processes.get(i);
+			process.joined(this, i);
+			process.dueTime = process.nextEventTime();
+			byDueTime.add(process);
+		}
+	}
+
+	/**
+	 * @return the event that starts advancing the machines, at the start of the simulation (in microseconds)
+	 */
+	public Advance firstAdvance(long start) {
+		return new Advance(start);
+	}
+
+	public void advanceAll(final long time) {
+		advancingAll = true;
+		try {
+			advanceAllProcesses(time);
+		} finally {
+			advancingAll = false;
+			byDueTime.clear();
+			for(MachineProcess process : processes) {
+				process.dueTime = process.nextEventTime();
+				byDueTime.add(process);
+			}
+		}
+	}
+
+	/**
+	 * Brings up to <code>time</code> only the machines that have events at or before it.
+	 */
+	public void advanceDue(long time) {
+		List<MachineProcess> due = new ArrayList<MachineProcess>();
+		while(!byDueTime.isEmpty() && byDueTime.first().dueTime <= time) {
+			due.add(byDueTime.pollFirst());
+		}
+		for(MachineProcess process : due) {
+			process.advanceTo(time);
+			nextEventTimeChanged(process);
+		}
+	}
+
+	/**
+	 * Called by a process when it may have an earlier next event: it was advanced or the machine scheduled an event.
+	 */
+	void nextEventTimeChanged(MachineProcess process) {
+		if(advancingAll) {
+			return;
+		}
+		byDueTime.remove(process);
+		process.dueTime = process.nextEventTime();
+		byDueTime.add(process);
+	}
+
+	private void advanceAllProcesses(final long time) {
+		if(pool == null || pool.isShutdown()) {
+			for(MachineProcess process : processes) {
+				process.advanceTo(time);
+			}
+			return;
+		}
+
+		List<Callable<Void>> advances = new ArrayList<Callable<Void>>(processes.size());
+		for(final MachineProcess process : processes) {
+			advances.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					process.advanceTo(time);
+					return null;
+				}
+			});
+		}
+		try {
+			for(Future<Void> advance : pool.invokeAll(advances)) {
+				advance.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("a machine process failed", e.getCause());
+		}
+	}
+
+	/**
+	 * Stops the threads of the pool. The machines are advanced on the calling thread from then on.
+	 */
+	public void shutdown() {
+		if(pool != null) {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * @return the time of the next event of any machine, or {@link Long#MAX_VALUE} if there is none
+	 */
+	public long nextEventTime() {
+		long next = Long.MAX_VALUE;
+		for(MachineProcess process : processes) {
+			next = Math.min(next, process.nextEventTime());
+		}
+		return next;
+	}
+
+	/**
+	 * @return how many events of each type the machines ran
+	 */
+	public Map<String, Long> eventsCountByType() {
+		Map<String, Long> counts = new TreeMap<String, Long>();
+		for(MachineProcess process : processes) {
+			for(Entry<String, Long> entry : process.eventsCountByType().entrySet()) {
+				Long count = counts.get(entry.getKey());
+				counts.put(entry.getKey(), (count == null) ? entry.getValue() : count + entry.getValue());
+			}
+		}
+		return counts;
+	}
+
+}
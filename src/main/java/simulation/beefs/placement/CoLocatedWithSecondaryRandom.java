@@ -1,62 +1,67 @@
 package simulation.beefs.placement;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.List;
+import java.util.LinkedHashSet;
+import java.util.Random;
 import java.util.Set;
 
 import simulation.beefs.model.DataServer;
+import simulation.beefs.model.DataServerIndex;
 import simulation.beefs.model.FileReplica;
 import simulation.beefs.model.FileSystemClient;
 import simulation.beefs.model.ReplicatedFile;
+import simulation.beefs.util.SplitRandom;
 
 public class CoLocatedWithSecondaryRandom extends DataPlacement {
 
+	private final DataServerIndex dataServerIndex;
+
 	public CoLocatedWithSecondaryRandom(Set<DataServer> dataServers) {
-		super(dataServers);
+		this(dataServers, new SplitRandom());
+	}
+
+	public CoLocatedWithSecondaryRandom(Set<DataServer> dataServers, Random random) {
+		super(dataServers, random);
+		this.dataServerIndex = new DataServerIndex(dataServers, random);
 	}
 
 	@Override
-	public ReplicatedFile createFile(FileSystemClient client, String fileName, int replicationLevel, long size) {
+	public ReplicatedFile createFile(FileSystemClient client, int fileId, int replicationLevel, long size) {
 
 		DataServer primary = null;
-		List<DataServer> availableDataServers = new ArrayList<DataServer>(dataServers);
+		Set<DataServer> unavailableDataServers = new HashSet<DataServer>();
 
 		DataServer colocatedDataServer = client.metadataServer().getDataServer(client.host().name());
-		availableDataServers.remove(colocatedDataServer);
-
-		Collections.shuffle(availableDataServers);
+		if(colocatedDataServer != null) {
+			unavailableDataServers.add(colocatedDataServer);
+		}
 
 		if(colocatedDataServer != null && colocatedDataServer.freeSpace() >= size) {
 			primary = colocatedDataServer;
-		} 
-
-		Iterator<DataServer> dsIterator = availableDataServers.iterator();
-		while(primary == null && dsIterator.hasNext()) {
-			DataServer dsCandidate = dsIterator.next();
-			if(dsCandidate.freeSpace() >= size) {
-				primary = dsCandidate;
-				availableDataServers.remove(dsCandidate);
-			}
+		} else {
+			primary = dataServerIndex.randomWithFreeSpace(size, unavailableDataServers);
 		}
 
 		ReplicatedFile rf = null;
 		if(primary != null) {
-			Set<FileReplica> replicas = createReplicas(availableDataServers, replicationLevel);
-			return new ReplicatedFile(fileName, primary, replicationLevel, replicas);
+			unavailableDataServers.add(primary);
+			Set<FileReplica> replicas = createReplicas(unavailableDataServers, replicationLevel);
+			return new ReplicatedFile(fileId, primary, replicationLevel, replicas);
 		}
 		
 		return rf;
 	}
 
-	private Set<FileReplica> createReplicas(List<DataServer> availableDataServers, int replicationLevel) {
-		Set<FileReplica> replicas = new HashSet<FileReplica>();
+	private Set<FileReplica> createReplicas(Set<DataServer> unavailableDataServers, int replicationLevel) {
+		Set<FileReplica> replicas = new LinkedHashSet<FileReplica>();
 
-		Iterator<DataServer> dsIterator = availableDataServers.iterator();
-		while(dsIterator.hasNext() && replicas.size() < replicationLevel) {
-			replicas.add(new FileReplica(dsIterator.next(), 0));
+		while(replicas.size() < replicationLevel) {
+			DataServer dataServer = dataServerIndex.randomWithFreeSpace(Long.MIN_VALUE, unavailableDataServers);
+			if(dataServer == null) {
+				break;
+			}
+			unavailableDataServers.add(dataServer);
+			replicas.add(new FileReplica(dataServer, 0));
 		}
 
 		return replicas;
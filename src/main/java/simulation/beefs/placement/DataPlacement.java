@@ -1,10 +1,15 @@
 package simulation.beefs.placement;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Set;
 
 import simulation.beefs.model.DataServer;
 import simulation.beefs.model.FileSystemClient;
+import simulation.beefs.model.PathDictionary;
 import simulation.beefs.model.ReplicatedFile;
+import simulation.beefs.util.SplitRandom;
 
 public abstract class DataPlacement {
 	
@@ -13,20 +18,49 @@ public abstract class DataPlacement {
 	
 	protected Set<DataServer> dataServers;
 	
+	protected final java.util.Random random;
+	
 	public DataPlacement(Set<DataServer> dataServers) {
+		this(dataServers, new SplitRandom());
+	}
+	
+	public DataPlacement(Set<DataServer> dataServers, java.util.Random random) {
 		this.dataServers = dataServers;
+		this.random = random;
 	}
 	
 	public static DataPlacement newDataPlacement(String type, Set<DataServer> dataServers) {
+		return newDataPlacement(type, dataServers, new SplitRandom());
+	}
+	
+	/**
+	 * @param random the source of the random choices of the policy, which should not be shared with other components
+	 */
+	public static DataPlacement newDataPlacement(String type, Set<DataServer> dataServers, java.util.Random random) {
 		if(CO_RANDOM.equals(type)) {
-			return new CoLocatedWithSecondaryRandom(dataServers);
+			return new CoLocatedWithSecondaryRandom(dataServers, random);
 		} else if(RANDOM.equals(type)) {
-			return new Random(dataServers);
+			return new Random(dataServers, random);
 		} else {
 			throw new IllegalArgumentException(type + " is not a valid DataPlacementAlgorithm type.");
 		}
 	}
 
-	public abstract ReplicatedFile createFile(FileSystemClient client, String fullpath, int replicationLevel, long size);
+	public ReplicatedFile createFile(FileSystemClient client, String fullpath, int replicationLevel, long size) {
+		return createFile(client, PathDictionary.id(fullpath), replicationLevel, size);
+	}
+
+	public abstract ReplicatedFile createFile(FileSystemClient client, int fileId, int replicationLevel, long size);
+	
+	/**
+	 * Writes the state that the next choices of this policy depend on.
+	 */
+	public void checkpoint(DataOutput out) throws IOException {
+		SplitRandom.checkpointable(random).checkpoint(out);
+	}
+	
+	public void restore(DataInput in) throws IOException {
+		SplitRandom.checkpointable(random).restore(in);
+	}
 	
 }
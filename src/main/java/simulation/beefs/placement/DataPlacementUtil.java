@@ -7,54 +7,41 @@ import java.util.Random;
 import java.util.Set;
 
 import simulation.beefs.model.DataServer;
+import simulation.beefs.util.SplitRandom;
 
 
 public class DataPlacementUtil {
 
 	public static Set<DataServer> chooseRandomDataServers(Set<DataServer> availableServers, int numberOfWantedServers) {
-		
-		List<DataServer> availableServersAsList = new ArrayList<DataServer>();
-		availableServersAsList.addAll(availableServers);
-
-		int numberOfSelectedDataServers = 
-			(availableServers.size() > numberOfWantedServers) ? numberOfWantedServers : availableServers.size();
-
-		Set<DataServer> randomDataServers = new HashSet<DataServer>();
+		return chooseRandomDataServers(availableServers, numberOfWantedServers, new SplitRandom());
+	}
 
-		List<Integer> randomList = random(availableServers.size());
+	public static Set<DataServer> chooseRandomDataServers(Set<DataServer> availableServers, int numberOfWantedServers, 
+			Random random) {
+		List<DataServer> availableServersAsList = new ArrayList<DataServer>(availableServers);
 
-		for (int i = 0; i < numberOfSelectedDataServers; i++) {
-			randomDataServers.add(availableServersAsList.get(randomList.get(i)));
-		}
+		int numberOfSelectedDataServers = sample(availableServersAsList, numberOfWantedServers, random);
 
-		return randomDataServers;
+		return new HashSet<DataServer>(availableServersAsList.subList(0, numberOfSelectedDataServers));
 	}
 	
 	/**
-	 * It returns a list containing unsorted integers between 0 (inclusive) and
-	 * n (exclusive). The values do not appear more than one time in the list.
+	 * Moves a uniform random sample of <code>k</code> elements of <code>pool</code> to its first positions, by a
+	 * partial Fisher-Yates shuffle. Only the first positions are touched, so it takes O(k) and the pool can be kept
+	 * and sampled again, since it is still a permutation of the same elements.
 	 * 
-	 * @param n
-	 *            Upper bound (excluded).
-	 * @return A list of n integers.
+	 * @return the size of the sample: <code>k</code>, or the size of the pool if it is smaller
 	 */
-	private static List<Integer> random(int n) {
-
-		// n is exclusive, so <=
-		if ((n <= 0))
-			throw new IllegalArgumentException(
-					"ceil value must be positive: n <" + n + ">");
-
-		Random random = new Random();
-
-		List<Integer> samples = new ArrayList<Integer>();
-		while (samples.size() < n) {
-			int randomValue = random.nextInt(n);
-			if (!samples.contains(randomValue)) {
-				samples.add(randomValue);
+	public static <T> int sample(List<T> pool, int k, Random random) {
+		int n = pool.size();
+		int sampleSize = Math.min(k, n);
+		for (int i = 0; i < sampleSize; i++) {
+			int j = i + random.nextInt(n - i);
+			if (j != i) {
+				pool.set(i, pool.set(j, pool.get(i)));
 			}
 		}
-		return samples;
+		return sampleSize;
 	}
 
 }
@@ -1,8 +1,15 @@
 package simulation.beefs.placement;
 
-import static simulation.beefs.placement.DataPlacementUtil.chooseRandomDataServers;
+import static simulation.beefs.placement.DataPlacementUtil.sample;
 
-import java.util.HashSet;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import simulation.beefs.model.DataServer;
@@ -12,33 +19,72 @@ import simulation.beefs.model.ReplicatedFile;
 
 public class Random extends DataPlacement {
 	
+	/**
+	 * The data servers sampled by {@link DataPlacementUtil#sample(List, int, java.util.Random)}, rebuilt when the size
+	 * of the set changes.
+	 */
+	private final List<DataServer> pool = new ArrayList<DataServer>();
+	
 	public Random(Set<DataServer> dataServers) {
 		super(dataServers);
 	}
+	
+	public Random(Set<DataServer> dataServers, java.util.Random random) {
+		super(dataServers, random);
+	}
 
 	@Override
-	public ReplicatedFile createFile(FileSystemClient client, String fileName, int replicationLevel, long size) {
+	public ReplicatedFile createFile(FileSystemClient client, int fileId, int replicationLevel, long size) {
+		if(pool.size() != dataServers.size()) {
+			pool.clear();
+			pool.addAll(dataServers);
+		}
 		
-		Set<DataServer> choosenDataServes = 
-			chooseRandomDataServers(dataServers, replicationLevel + 1);
+		if(pool.isEmpty()) {
+			throw new IllegalArgumentException("there are no data servers to place the file");
+		}
 		
-		DataServer primary = null;
-		Set<DataServer> secondaries = new HashSet<DataServer>();
+		int choosenDataServers = sample(pool, replicationLevel + 1, random);
 		
-		for(DataServer dataServer : choosenDataServes) {
-			if(primary == null) {
-				primary = dataServer;
-			} else {
-				secondaries.add(dataServer);
-			}
-		}
+		DataServer primary = pool.get(0);
 		
-		Set<FileReplica> replicas = new HashSet<FileReplica>();
-		for(DataServer ds : secondaries) {
-			replicas.add(new FileReplica(ds, 0));
+		Set<FileReplica> replicas = new LinkedHashSet<FileReplica>();
+		for(int i = 1; i < choosenDataServers; i++) {
+			replicas.add(new FileReplica(pool.get(i), 0));
 		}
 
-		return new ReplicatedFile(fileName, primary, replicationLevel, replicas);
+		return new ReplicatedFile(fileId, primary, replicationLevel, replicas);
+	}
+	
+	/**
+	 * Also writes the order of the pool, which is where the next sample starts from.
+	 */
+	@Override
+	public void checkpoint(DataOutput out) throws IOException {
+		super.checkpoint(out);
+		out.writeInt(pool.size());
+		for(DataServer dataServer : pool) {
+			out.writeUTF(dataServer.host().name());
+		}
+	}
+	
+	@Override
+	public void restore(DataInput in) throws IOException {
+		super.restore(in);
+		Map<String, DataServer> dataServerByHost = new HashMap<String, DataServer>();
+		for(DataServer dataServer : dataServers) {
+			dataServerByHost.put(dataServer.host().name(), dataServer);
+		}
+		pool.clear();
+		int size = in.readInt();
+		for(int i = 0; i < size; i++) {
+			String host = in.readUTF();
+			DataServer dataServer = dataServerByHost.get(host);
+			if(dataServer == null) {
+				throw new IOException("there is no data server on " + host);
+			}
+			pool.add(dataServer);
+		}
 	}
 
 }
@@ -1,15 +1,20 @@
 package simulation.beefs.replication;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.HashSet;
-import java.util.List;
+import java.util.LinkedHashSet;
+import java.util.Random;
 import java.util.Set;
 
 import manelsim.EventScheduler;
+import simulation.beefs.log.EventLog;
 import simulation.beefs.model.DataServer;
+import simulation.beefs.model.DataServerIndex;
 import simulation.beefs.model.FileReplica;
 import simulation.beefs.model.ReplicatedFile;
+import simulation.beefs.util.SplitRandom;
 
 /**
  * 
@@ -18,27 +23,32 @@ import simulation.beefs.model.ReplicatedFile;
  */
 public class MigrateReplicas extends Replicator {
 	
-	private final List<DataServer> dataServers;
+	private final DataServerIndex dataServerIndex;
 	private final boolean wakeOnLan;
+	private final Random random;
 	
 	public MigrateReplicas(Set<DataServer> dataServers, boolean wakeOnLan) {
+		this(dataServers, wakeOnLan, new SplitRandom());
+	}
+	
+	public MigrateReplicas(Set<DataServer> dataServers, boolean wakeOnLan, Random random) {
 		this.wakeOnLan = wakeOnLan;
+		this.random = random;
 		if(dataServers != null) {
-			this.dataServers = new ArrayList<DataServer>(dataServers);
+			this.dataServerIndex = new DataServerIndex(new LinkedHashSet<DataServer>(dataServers), random);
 		} else {
-			this.dataServers = new ArrayList<DataServer>();
+			this.dataServerIndex = new DataServerIndex(new HashSet<DataServer>(), random);
 		}
 	}
 
 	@Override
 	public void updateReplicas(ReplicatedFile file) {
-		Collections.shuffle(dataServers);
 		if(!file.primary().host().isReachable()) {
 			file.primary().host().wakeOnLan(EventScheduler.now());
 		}
 		
 		Set<DataServer> exceptions = new HashSet<DataServer>();
-		Set<FileReplica> newReplicas = new HashSet<FileReplica>();
+		Set<FileReplica> newReplicas = new LinkedHashSet<FileReplica>();
 
 		DataServer newDataServer = null;
 		for(FileReplica replica : file.replicas()) {
@@ -76,11 +86,20 @@ public class MigrateReplicas extends Replicator {
 		file.updateReplicas(newReplicas);
 	}
 
+	@Override
+	public void checkpoint(DataOutput out) throws IOException {
+		SplitRandom.checkpointable(random).checkpoint(out);
+	}
+	
+	@Override
+	public void restore(DataInput in) throws IOException {
+		SplitRandom.checkpointable(random).restore(in);
+	}
+
 	private DataServer giveMeOneAwakeDataServer(Set<DataServer> exceptions, long fileSize) {
-		for(DataServer ds : dataServers) {
-			if(ds.host().isReachable() && !exceptions.contains(ds) && ds.freeSpace() >= fileSize) {
-				return ds;
-			}
+		DataServer ds = dataServerIndex.randomReachableWithFreeSpace(fileSize, exceptions);
+		if(ds != null) {
+			return ds;
 		}
 		return wakeUpWhoIsSleepingForLonger(fileSize);
 	}
@@ -88,22 +107,11 @@ public class MigrateReplicas extends Replicator {
 	private DataServer wakeUpWhoIsSleepingForLonger(long fileSize) {
 		DataServer unfortunateDataServer = null;
 		if(wakeOnLan) {
-			for(DataServer ds : dataServers) {
-				if(!ds.host().isReachable()) {
-					if(ds.freeSpace() >= fileSize) {
-						if(unfortunateDataServer == null) {
-							unfortunateDataServer = ds;
-						} else if(ds.host().lastTransitionTime().
-								isEarlierThan(unfortunateDataServer.host().lastTransitionTime())) {
-							unfortunateDataServer = ds;
-						}					
-					}
-				}
-			}
+			unfortunateDataServer = dataServerIndex.longestUnreachableWithFreeSpace(fileSize);
 			if( unfortunateDataServer != null) {
 				unfortunateDataServer.host().wakeOnLan(EventScheduler.now());
 			} else {
-				System.out.println(String.format("@all disks full: could not replicate %d bytes - %s", fileSize, EventScheduler.now()));
+				EventLog.replicationFailed(fileSize);
 			}
 		}
 		return unfortunateDataServer;
@@ -1,6 +1,6 @@
 package simulation.beefs.replication;
 
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 import manelsim.EventScheduler;
@@ -17,7 +17,7 @@ public class NeverMigrateReplicas extends Replicator {
 
 	@Override
 	public void updateReplicas(ReplicatedFile file) {
-		Set<FileReplica> newReplicas = new HashSet<FileReplica>();
+		Set<FileReplica> newReplicas = new LinkedHashSet<FileReplica>();
 		wakeUpIfSleeping(file.primary().host());
 		for(FileReplica replica : file.replicas()) {
 			replica.delete();
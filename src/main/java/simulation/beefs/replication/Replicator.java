@@ -1,9 +1,14 @@
 package simulation.beefs.replication;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Random;
 import java.util.Set;
 
 import simulation.beefs.model.DataServer;
 import simulation.beefs.model.ReplicatedFile;
+import simulation.beefs.util.SplitRandom;
 
 public abstract class Replicator {
 	
@@ -13,11 +18,18 @@ public abstract class Replicator {
 	private static final String NEVER_MIGRATE_REPLICAS = "never_migrate_replicas";
 	
 	public static Replicator newReplicator(String type, Set<DataServer> dataServers) {
+		return newReplicator(type, dataServers, new SplitRandom());
+	}
+	
+	/**
+	 * @param random the source of the random choices of the replicator, which should not be shared with other components
+	 */
+	public static Replicator newReplicator(String type, Set<DataServer> dataServers, Random random) {
 		Replicator replicator = null;
 		if(MIGRATE_REPLICAS_WAKE_UP.equals(type)) {
-			replicator = new MigrateReplicas(dataServers, true);
+			replicator = new MigrateReplicas(dataServers, true, random);
 		} else if(MIGRATE_REPLICAS_NEVER_WAKE_UP.equals(type)) {
-			replicator = new MigrateReplicas(dataServers, false);
+			replicator = new MigrateReplicas(dataServers, false, random);
 		} else if(NEVER_MIGRATE_REPLICAS.equals(type)) {
 			replicator = new NeverMigrateReplicas();
 		} else if(NOOP.equals(type)) {
@@ -29,4 +41,11 @@ public abstract class Replicator {
 	}
 	
 	public abstract void updateReplicas(ReplicatedFile file);
+	
+	/**
+	 * Writes the state that the next choices of this replicator depend on. Replicators that make no choices have none.
+	 */
+	public void checkpoint(DataOutput out) throws IOException { }
+	
+	public void restore(DataInput in) throws IOException { }
 }
@@ -0,0 +1,159 @@
+package simulation.beefs.sweep;
+
+import java.util.Arrays;
+
+import simulation.beefs.energy.EnergyState;
+import simulation.beefs.energy.EnergyStateDurations;
+import simulation.beefs.event.machine.UserActivityTrace;
+
+/**
+ *
+ * What a machine does with its idleness trace when nothing but the trace wakes it up, for any sleep timeout, without
+ * simulating it again. An idle period of length d lasts d if d &lt;= timeout. Otherwise it is timeout of IDLE, one
+ * transition to sleep, max(d - timeout - transition, 0) of SLEEPING and, if activity follows, one transition to wake
+ * up; the activity periods are the same for every timeout.
+ * <br><br>
+ * The lengths of the idle periods are kept sorted, with the running counts and sums, so the time spent in each state
+ * for a timeout takes two binary searches. This is what a machine-only simulation (see
+ * {@link simulation.beefs.BeefsEnergySimulationConstants#MACHINE_ONLY}) of the trace ends with, except that the
+ * simulation end is applied to the trace as it is, not as the transitions delay it.
+ *
+ */
+public class IdlenessProfile {
+
+	// the distinct lengths of the idle periods, ascending, and how many periods are that long or shorter and their sum
+	private final long [] lengths;
+	private final long [] countsUpTo;
+	private final long [] sumsUpTo;
+
+	private final long activityCount;
+	private final long activityDuration;
+
+	// the length of the idle period that ends the trace, or -1 if the trace ends with activity
+	private final long lastIdleLength;
+
+	private IdlenessProfile(long [] idleLengths, int idleCount, long activityCount, long activityDuration,
+			long lastIdleLength) {
+		Arrays.sort(idleLengths, 0, idleCount);
+		int distinct = 0;
+		for(int i = 0; i < idleCount; i++) {
+			if(i == 0 || idleLengths[i] != idleLengths[i - 1]) {
+				distinct++;
+			}
+		}
+
+		this.lengths = new long[distinct];
+		this.countsUpTo = new long[distinct];
+		this.sumsUpTo = new long[distinct];
+		int j = -1;
+		for(int i = 0; i < idleCount; i++) {
+			if(i == 0 || idleLengths[i] != idleLengths[i - 1]) {
+				j++;
+				lengths[j] = idleLengths[i];
+				countsUpTo[j] = (j > 0) ? countsUpTo[j - 1] : 0;
+				sumsUpTo[j] = (j > 0) ? sumsUpTo[j - 1] : 0;
+			}
+			countsUpTo[j]++;
+			sumsUpTo[j] += idleLengths[i];
+		}
+
+		this.activityCount = activityCount;
+		this.activityDuration = activityDuration;
+		this.lastIdleLength = lastIdleLength;
+	}
+
+	/**
+	 * Reads the records of <code>trace</code> that begin up to <code>end</code>.
+	 * @param end in microseconds
+	 */
+	public static IdlenessProfile of(UserActivityTrace trace, long end) {
+		long [] idleLengths = new long[1024];
+		int idleCount = 0;
+		long activityCount = 0;
+		long activityDuration = 0;
+		long lastIdleLength = -1;
+
+		while(trace.nextRecord() && trace.begin() <= end) {
+			if(trace.isIdleness()) {
+				if(idleCount == idleLengths.length) {
+					idleLengths = Arrays.copyOf(idleLengths, idleLengths.length * 2);
+				}
+				idleLengths[idleCount++] = trace.duration();
+				lastIdleLength = trace.duration();
+			} else {
+				activityCount++;
+				activityDuration += trace.duration();
+				lastIdleLength = -1;
+			}
+		}
+
+		return new IdlenessProfile(idleLengths, idleCount, activityCount, activityDuration, lastIdleLength);
+	}
+
+	/**
+	 * @param toSleepTimeout in microseconds
+	 * @param transitionDuration in microseconds
+	 * @return the time spent in each state and how many times each state is entered
+	 */
+	public EnergyStateDurations durations(long toSleepTimeout, long transitionDuration) {
+		long idleCount = idleCount();
+		long awake = countUpTo(toSleepTimeout);
+		long sleeps = idleCount - awake;
+		long longSleeps = idleCount - countUpTo(toSleepTimeout + transitionDuration);
+
+		long idle = sumUpTo(toSleepTimeout) + sleeps * toSleepTimeout;
+		long sleeping = (idleSum() - sumUpTo(toSleepTimeout + transitionDuration)) -
+				longSleeps * (toSleepTimeout + transitionDuration);
+		long transitions = transitionCount(toSleepTimeout);
+
+		EnergyStateDurations durations = new EnergyStateDurations();
+		durations.add(EnergyState.ACTIVE, activityDuration, activityCount);
+		durations.add(EnergyState.IDLE, idle, idleCount);
+		durations.add(EnergyState.SLEEPING, sleeping, sleeps);
+		durations.add(EnergyState.TRANSITIONING, transitions * transitionDuration, transitions);
+		return durations;
+	}
+
+	/**
+	 * @param toSleepTimeout in microseconds
+	 * @return how many times the machine goes to sleep or wakes up
+	 */
+	public long transitionCount(long toSleepTimeout) {
+		long sleeps = idleCount() - countUpTo(toSleepTimeout);
+		long wakeUps = (lastIdleLength > toSleepTimeout) ? sleeps - 1 : sleeps;
+		return sleeps + wakeUps;
+	}
+
+	private long idleCount() {
+		return (lengths.length > 0) ? countsUpTo[lengths.length - 1] : 0;
+	}
+
+	private long idleSum() {
+		return (lengths.length > 0) ? sumsUpTo[lengths.length - 1] : 0;
+	}
+
+	/**
+	 * @return how many idle periods are at most <code>length</code> long
+	 */
+	private long countUpTo(long length) {
+		int i = lastUpTo(length);
+		return (i >= 0) ? countsUpTo[i] : 0;
+	}
+
+	/**
+	 * @return the sum of the idle periods that are at most <code>length</code> long
+	 */
+	private long sumUpTo(long length) {
+		int i = lastUpTo(length);
+		return (i >= 0) ? sumsUpTo[i] : 0;
+	}
+
+	/**
+	 * @return the position of the longest distinct length that is at most <code>length</code>, or -1
+	 */
+	private int lastUpTo(long length) {
+		int i = Arrays.binarySearch(lengths, length);
+		return (i >= 0) ? i : -i - 2;
+	}
+
+}
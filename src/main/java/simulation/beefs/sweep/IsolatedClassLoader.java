@@ -0,0 +1,56 @@
+package simulation.beefs.sweep;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+
+/**
+ *
+ * Loads its own copy of the ManelSim and simulation classes, so that their static state (the event scheduler, the
+ * event log, the path dictionary, ...) is not shared with the simulations running in other loaders. Every other class,
+ * the ones of the sweep included, comes from the parent.
+ *
+ */
+class IsolatedClassLoader extends URLClassLoader {
+
+	private static final String [] ISOLATED_PACKAGES = { "manelsim.", "simulation.beefs." };
+
+	private static final String SHARED_PACKAGE = ParameterSweep.class.getPackage().getName() + ".";
+
+	IsolatedClassLoader(URL [] classpath, ClassLoader parent) {
+		super(classpath, parent);
+	}
+
+	@Override
+	protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+		if(!isIsolated(name)) {
+			return super.loadClass(name, resolve);
+		}
+		synchronized (this) {
+			Class<?> loaded = findLoadedClass(name);
+			if(loaded == null) {
+				try {
+					loaded = findClass(name);
+				} catch (ClassNotFoundException e) {
+					loaded = super.loadClass(name, false);
+				}
+			}
+			if(resolve) {
+				resolveClass(loaded);
+			}
+			return loaded;
+		}
+	}
+
+	private static boolean isIsolated(String name) {
+		if(name.startsWith(SHARED_PACKAGE)) {
+			return false;
+		}
+		for(String isolatedPackage : ISOLATED_PACKAGES) {
+			if(name.startsWith(isolatedPackage)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
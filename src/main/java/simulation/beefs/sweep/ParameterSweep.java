@@ -0,0 +1,267 @@
+package simulation.beefs.sweep;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import simulation.beefs.BeefsEnergySimulationConstants;
+import simulation.beefs.trace.TraceConverter;
+
+/**
+ *
+ * Runs the simulation for every combination of a set of configuration values, several at a time in the same JVM.
+ * <br><br>
+ * The sweep file has one line per swept key, with the values separated by commas (Ex.: to_sleep_timeout=600,900,1800).
+ * The other keys come from the base configuration. The text traces of traces_dir are converted once to the binary
+ * format (see {@link TraceConverter}) before the runs start, so each run reads the compact traces, which the operating
+ * system keeps cached for all of them, instead of parsing the text again.
+ * <br><br>
+ * Each run has its own copy of the simulation classes (see {@link IsolatedClassLoader}), since the event scheduler and
+ * the event log are global. Run i gets its configuration in run-i.conf and what it prints, the summary included, in
+ * run-i.out. runs.tsv lists the swept values of each run. Event log files, timelines directories and checkpoint
+ * directories set in the base configuration get a per-run name, so a sweep started again with resume_from=latest
+ * resumes each run from its own checkpoints.
+ * <br><br>
+ * Usage: ParameterSweep &lt;run.conf&gt; &lt;sweep.conf&gt; &lt;output_dir&gt; [threads]
+ *
+ */
+public class ParameterSweep {
+
+	private static final String MANELSIM = "manelsim.ManelSim";
+
+	public static void main(String[] args) throws Exception {
+		if(args.length < 3 || args.length > 4) {
+			System.err.println("Usage: ParameterSweep <run.conf> <sweep.conf> <output_dir> [threads]");
+			System.exit(1);
+		}
+
+		Properties base = load(new File(args[0]));
+		Properties sweep = load(new File(args[1]));
+		File outputDir = new File(args[2]);
+		int threads = (args.length == 4) ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+		if(!outputDir.isDirectory() && !outputDir.mkdirs()) {
+			throw new IOException("could not create " + outputDir);
+		}
+
+		TraceConverter.convertAll(new File(base.getProperty(BeefsEnergySimulationConstants.TRACES_DIR)));
+
+		List<Map<String, String>> combinations = combinations(sweep);
+		writeRunsIndex(new File(outputDir, "runs.tsv"), combinations);
+
+		PrintStream stdout = System.out;
+		PerThreadOutputStream output = new PerThreadOutputStream(stdout);
+		System.setOut(new PrintStream(output, true));
+		try {
+			int failures = run(base, combinations, outputDir, threads, output, stdout);
+			stdout.println((combinations.size() - failures) + " of " + combinations.size() + " runs finished");
+		} finally {
+			System.setOut(stdout);
+		}
+	}
+
+	/**
+	 * @return every combination of the values of the sweep, ordered by key
+	 */
+	public static List<Map<String, String>> combinations(Properties sweep) {
+		List<String> keys = new ArrayList<String>(new TreeSet<String>(sweep.stringPropertyNames()));
+		List<String []> values = new ArrayList<String []>();
+		for(String key : keys) {
+			String [] keyValues = sweep.getProperty(key).split(",");
+			for(int i = 0; i < keyValues.length; i++) {
+				keyValues[i] = keyValues[i].trim();
+			}
+			values.add(keyValues);
+		}
+
+		List<Map<String, String>> combinations = new ArrayList<Map<String, String>>();
+		int [] choice = new int[keys.size()];
+		while(true) {
+			Map<String, String> combination = new LinkedHashMap<String, String>();
+			for(int i = 0; i < keys.size(); i++) {
+				combination.put(keys.get(i), values.get(i)[choice[i]]);
+			}
+			combinations.add(combination);
+
+			int i = keys.size() - 1;
+			while(i >= 0 && ++choice[i] == values.get(i).length) {
+				choice[i--] = 0;
+			}
+			if(i < 0) {
+				return combinations;
+			}
+		}
+	}
+
+	/**
+	 * @return the configuration of a run: the base one with the values of <code>combination</code> and per-run output
+	 * files
+	 */
+	public static Properties configuration(Properties base, Map<String, String> combination, File outputDir, int run) {
+		Properties config = new Properties();
+		config.putAll(base);
+		config.putAll(combination);
+		if(config.getProperty(BeefsEnergySimulationConstants.EVENT_LOG_FILE) != null) {
+			config.setProperty(BeefsEnergySimulationConstants.EVENT_LOG_FILE,
+					new File(outputDir, runName(run) + ".events").getPath());
+		}
+		if(config.getProperty(BeefsEnergySimulationConstants.TIMELINES_DIR) != null) {
+			File timelinesDir = new File(outputDir, runName(run) + "-timelines");
+			timelinesDir.mkdirs();
+			config.setProperty(BeefsEnergySimulationConstants.TIMELINES_DIR, timelinesDir.getPath());
+		}
+		if(config.getProperty(BeefsEnergySimulationConstants.CHECKPOINT_DIR) != null) {
+			File checkpointDir = new File(outputDir, runName(run) + "-checkpoints");
+			checkpointDir.mkdirs();
+			config.setProperty(BeefsEnergySimulationConstants.CHECKPOINT_DIR, checkpointDir.getPath());
+		}
+		String resumeFrom = config.getProperty(BeefsEnergySimulationConstants.RESUME_FROM);
+		if(resumeFrom != null && !BeefsEnergySimulationConstants.LATEST_CHECKPOINT.equals(resumeFrom)) {
+			// a checkpoint has the state of a single configuration
+			throw new IllegalArgumentException("the runs of a sweep can only resume from their latest checkpoint, not " + 
+					resumeFrom);
+		}
+		return config;
+	}
+
+	private static int run(Properties base, List<Map<String, String>> combinations, final File outputDir, int threads,
+			final PerThreadOutputStream output, final PrintStream log) throws IOException, InterruptedException {
+		final URL [] classpath = classpath();
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+		for(int i = 0; i < combinations.size(); i++) {
+			final int run = i;
+			final File conf = new File(outputDir, runName(run) + ".conf");
+			store(configuration(base, combinations.get(run), outputDir, run), conf);
+			results.add(executor.submit(new Callable<Boolean>() {
+				@Override
+				public Boolean call() throws Exception {
+					boolean finished = runIsolated(conf, new File(outputDir, runName(run) + ".out"), classpath, output);
+					synchronized (log) {
+						log.println(runName(run) + (finished ? " finished" : " failed"));
+					}
+					return finished;
+				}
+			}));
+		}
+		executor.shutdown();
+		executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+
+		int failures = 0;
+		for(Future<Boolean> result : results) {
+			try {
+				if(!result.get()) {
+					failures++;
+				}
+			} catch (Exception e) {
+				failures++;
+			}
+		}
+		return failures;
+	}
+
+	private static boolean runIsolated(File conf, File out, URL [] classpath, PerThreadOutputStream output)
+			throws IOException {
+		OutputStream runOutput = new BufferedOutputStream(new FileOutputStream(out), 1 << 16);
+		output.setTarget(runOutput);
+		IsolatedClassLoader loader = new IsolatedClassLoader(classpath, ParameterSweep.class.getClassLoader());
+		Thread thread = Thread.currentThread();
+		ClassLoader previousLoader = thread.getContextClassLoader();
+		thread.setContextClassLoader(loader);
+		try {
+			loader.loadClass(MANELSIM).getMethod("main", String[].class).invoke(null, (Object) new String[] {conf.getPath()});
+			return true;
+		} catch (InvocationTargetException e) {
+			PrintStream runErr = new PrintStream(runOutput);
+			e.getCause().printStackTrace(runErr);
+			runErr.flush();
+			return false;
+		} catch (Exception e) {
+			throw new IllegalStateException("could not start the simulation", e);
+		} finally {
+			thread.setContextClassLoader(previousLoader);
+			output.clearTarget();
+			runOutput.close();
+			if(loader instanceof Closeable) { // only from Java 7 on
+				((Closeable) loader).close();
+			}
+		}
+	}
+
+	private static URL [] classpath() throws MalformedURLException {
+		String [] entries = System.getProperty("java.class.path").split(File.pathSeparator);
+		URL [] classpath = new URL[entries.length];
+		for(int i = 0; i < entries.length; i++) {
+			classpath[i] = new File(entries[i]).toURI().toURL();
+		}
+		return classpath;
+	}
+
+	private static void writeRunsIndex(File file, List<Map<String, String>> combinations) throws IOException {
+		PrintWriter writer = new PrintWriter(new FileWriter(file));
+		try {
+			writer.print("run");
+			for(String key : combinations.get(0).keySet()) {
+				writer.print("\t" + key);
+			}
+			writer.println();
+			for(int run = 0; run < combinations.size(); run++) {
+				writer.print(runName(run));
+				for(String value : combinations.get(run).values()) {
+					writer.print("\t" + value);
+				}
+				writer.println();
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	private static String runName(int run) {
+		return "run-" + run;
+	}
+
+	private static Properties load(File file) throws IOException {
+		Properties properties = new Properties();
+		InputStream in = new FileInputStream(file);
+		try {
+			properties.load(in);
+		} finally {
+			in.close();
+		}
+		return properties;
+	}
+
+	private static void store(Properties properties, File file) throws IOException {
+		OutputStream out = new FileOutputStream(file);
+		try {
+			properties.store(out, null);
+		} finally {
+			out.close();
+		}
+	}
+
+}
@@ -0,0 +1,51 @@
+package simulation.beefs.sweep;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ *
+ * Sends what each thread writes to the stream set for it, or to a default stream. The target is inherited by the
+ * threads a simulation starts (Ex.: the writer of an asynchronous event log), so installed as the standard output it
+ * keeps the output of simulations that run concurrently apart.
+ *
+ */
+class PerThreadOutputStream extends OutputStream {
+
+	private final OutputStream defaultTarget;
+
+	private final InheritableThreadLocal<OutputStream> target = new InheritableThreadLocal<OutputStream>();
+
+	PerThreadOutputStream(OutputStream defaultTarget) {
+		this.defaultTarget = defaultTarget;
+	}
+
+	void setTarget(OutputStream out) {
+		target.set(out);
+	}
+
+	void clearTarget() {
+		target.remove();
+	}
+
+	private OutputStream target() {
+		OutputStream out = target.get();
+		return (out != null) ? out : defaultTarget;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		target().write(b);
+	}
+
+	@Override
+	public void write(byte [] b, int off, int len) throws IOException {
+		target().write(b, off, len);
+	}
+
+	@Override
+	public void flush() throws IOException {
+		target().flush();
+	}
+
+}
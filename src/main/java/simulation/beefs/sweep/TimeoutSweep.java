@@ -0,0 +1,173 @@
+package simulation.beefs.sweep;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import manelsim.Time;
+import manelsim.Time.Unit;
+import simulation.beefs.BeefsEnergySimulationConstants;
+import simulation.beefs.energy.DurationsConsumptionModel;
+import simulation.beefs.energy.EnergyConsumptionModel;
+import simulation.beefs.event.machine.UserActivityTraces;
+import simulation.beefs.trace.BinaryTraceFormat;
+import simulation.beefs.trace.TraceFiles;
+import simulation.beefs.trace.TraceIndex;
+import simulation.beefs.util.Micros;
+
+/**
+ *
+ * Gives the energy consumption and the transitions of the machines for many sleep timeouts at once, from the
+ * {@link IdlenessProfile idleness profiles} of their traces instead of a simulation per timeout. The file system is
+ * left out, as in a machine-only simulation, so it fits the sleep police alone (Ex.: replicator=noop).
+ * <br><br>
+ * The machines, the traces and the other parameters come from the simulation configuration; to_sleep_timeout is
+ * ignored. The timeouts, in seconds, are separated by commas and may be ranges first:last:step
+ * (Ex.: 60,120,300:3600:300). For each timeout, it prints a line per machine and one with the totals (machine "all"),
+ * separated by tabs: timeout, machine, kWh and transitions.
+ * <br><br>
+ * Usage: TimeoutSweep &lt;run.conf&gt; &lt;timeouts&gt; [threads]
+ *
+ */
+public class TimeoutSweep {
+
+	private static final FilenameFilter idlenessTracesFilter = new FilenameFilter() {
+		@Override
+		public boolean accept(File dir, String name) {
+			return name.startsWith("idleness-") && !BinaryTraceFormat.isBinaryTrace(name) && !TraceIndex.isIndex(name);
+		}
+	};
+
+	public static void main(String[] args) throws Exception {
+		if(args.length < 2 || args.length > 3) {
+			System.err.println("Usage: TimeoutSweep <run.conf> <timeouts> [threads]");
+			System.exit(1);
+		}
+
+		Properties config = new Properties();
+		InputStream in = new FileInputStream(args[0]);
+		try {
+			config.load(in);
+		} finally {
+			in.close();
+		}
+		long [] timeouts = timeouts(args[1]);
+		int threads = (args.length == 3) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+		Map<String, IdlenessProfile> profiles = profiles(config, threads);
+		EnergyConsumptionModel energyConsumptionModel = (EnergyConsumptionModel) Class.forName(
+				config.getProperty(BeefsEnergySimulationConstants.ENERGY_CONSUMPTION_MODEL)).newInstance();
+		long transitionDuration = Long.parseLong(
+				config.getProperty(BeefsEnergySimulationConstants.TRANSITION_DURATION)) * 1000;
+
+		print(profiles, timeouts, transitionDuration, energyConsumptionModel, System.out);
+	}
+
+	/**
+	 * @return the timeouts of <code>spec</code>, in microseconds
+	 */
+	public static long [] timeouts(String spec) {
+		List<Long> timeouts = new ArrayList<Long>();
+		for(String item : spec.split(",")) {
+			String [] range = item.trim().split(":");
+			if(range.length == 1) {
+				timeouts.add(Long.parseLong(range[0].trim()));
+			} else if(range.length == 3) {
+				long last = Long.parseLong(range[1].trim());
+				long step = Long.parseLong(range[2].trim());
+				if(step <= 0) {
+					throw new IllegalArgumentException("the step of " + item + " must be positive");
+				}
+				for(long timeout = Long.parseLong(range[0].trim()); timeout <= last; timeout += step) {
+					timeouts.add(timeout);
+				}
+			} else {
+				throw new IllegalArgumentException(item + " is not a timeout nor a range first:last:step");
+			}
+		}
+
+		long [] micros = new long[timeouts.size()];
+		for(int i = 0; i < micros.length; i++) {
+			micros[i] = timeouts.get(i) * Micros.PER_SECOND;
+		}
+		return micros;
+	}
+
+	public static void print(Map<String, IdlenessProfile> profiles, long [] timeouts, long transitionDuration,
+			EnergyConsumptionModel energyConsumptionModel, PrintStream out) {
+		for(long timeout : timeouts) {
+			long seconds = timeout / Micros.PER_SECOND;
+			double totalKWh = 0;
+			long totalTransitions = 0;
+			for(Entry<String, IdlenessProfile> entry : profiles.entrySet()) {
+				IdlenessProfile profile = entry.getValue();
+				double kWh = DurationsConsumptionModel.getConsumption(energyConsumptionModel,
+						profile.durations(timeout, transitionDuration));
+				long transitions = profile.transitionCount(timeout);
+				out.println(String.format("%d\t%s\t%f\t%d", seconds, entry.getKey(), kWh, transitions));
+				totalKWh += kWh;
+				totalTransitions += transitions;
+			}
+			out.println(String.format("%d\tall\t%f\t%d", seconds, totalKWh, totalTransitions));
+		}
+	}
+
+	/**
+	 * Reads the idleness traces of the machines of the simulation, several at a time.
+	 */
+	private static Map<String, IdlenessProfile> profiles(Properties config, int threads) throws Exception {
+		final File tracesDir = new File(config.getProperty(BeefsEnergySimulationConstants.TRACES_DIR));
+		if(!tracesDir.isDirectory()) {
+			throw new IllegalArgumentException(tracesDir + " doesn't exist or is not a directory");
+		}
+		final Time start =
+				new Time(Long.parseLong(config.getProperty(BeefsEnergySimulationConstants.EMULATION_START_TIME)), Unit.SECONDS);
+		final long end = Long.parseLong(config.getProperty("simulation_end")) * Micros.PER_SECOND;
+
+		// the machines of the simulation are the ones with both traces
+		Set<String> machineNames = new TreeSet<String>();
+		for(String traceFile : tracesDir.list(idlenessTracesFilter)) {
+			String machineName = TraceFiles.traceName(traceFile).substring("idleness-".length());
+			if(TraceFiles.find(tracesDir, "fs-" + machineName).exists()) {
+				machineNames.add(machineName);
+			}
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(threads, 1));
+		try {
+			Map<String, Future<IdlenessProfile>> futures = new LinkedHashMap<String, Future<IdlenessProfile>>();
+			for(final String machineName : machineNames) {
+				futures.put(machineName, pool.submit(new Callable<IdlenessProfile>() {
+					@Override
+					public IdlenessProfile call() throws IOException {
+						return IdlenessProfile.of(UserActivityTraces.open(tracesDir, machineName, null, start), end);
+					}
+				}));
+			}
+
+			Map<String, IdlenessProfile> profiles = new LinkedHashMap<String, IdlenessProfile>();
+			for(Entry<String, Future<IdlenessProfile>> future : futures.entrySet()) {
+				profiles.put(future.getKey(), future.getValue().get());
+			}
+			return profiles;
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+}
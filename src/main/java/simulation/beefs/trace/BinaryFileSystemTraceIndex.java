@@ -0,0 +1,112 @@
+package simulation.beefs.trace;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ *
+ * The sparse index written after the END record of a binary filesystem trace (see {@link BinaryTraceFormat}). As in a
+ * {@link TraceIndex}, every {@link #INTERVAL} records it keeps an offset of the trace and the greatest begin of the
+ * records before that offset. The records after an offset may refer to paths declared before it, so each entry also
+ * keeps how many paths were declared before its offset, and the index ends with all the paths of the trace by id.
+ * Seeking to an offset then only takes reading the index and the paths declared before it.
+ *
+ */
+public class BinaryFileSystemTraceIndex {
+
+	static final int INTERVAL = 4096;
+
+	private long [] keys = new long[1024];
+	private long [] offsets = new long[1024];
+	private int [] declaredPaths = new int[1024];
+	private int size = 0;
+
+	/**
+	 * @param key the greatest begin of the records before <code>offset</code>
+	 * @param pathCount the number of paths declared before <code>offset</code>
+	 */
+	public void add(long key, long offset, int pathCount) {
+		if(size == keys.length) {
+			keys = Arrays.copyOf(keys, size * 2);
+			offsets = Arrays.copyOf(offsets, size * 2);
+			declaredPaths = Arrays.copyOf(declaredPaths, size * 2);
+		}
+		keys[size] = key;
+		offsets[size] = offset;
+		declaredPaths[size] = pathCount;
+		size++;
+	}
+
+	/**
+	 * @param indexOffset the offset of the trace the index is written at, right after the END record
+	 * @param paths the paths of the trace, by id
+	 */
+	public void write(DataOutputStream out, long indexOffset, String [] paths) throws IOException {
+		out.writeInt(size);
+		for(int i = 0; i < size; i++) {
+			out.writeLong(keys[i]);
+			out.writeLong(offsets[i]);
+			out.writeInt(declaredPaths[i]);
+		}
+		out.writeInt(paths.length);
+		for(String path : paths) {
+			out.writeUTF(path);
+		}
+		out.writeLong(indexOffset);
+	}
+
+	/**
+	 * Positions <code>channel</code>, a binary filesystem trace, on the last indexed offset whose records all begin
+	 * before <code>start</code>, or right after the header if there is none.
+	 * @return the paths declared before that offset, by id
+	 */
+	public static String [] seek(FileChannel channel, long start) throws IOException {
+		long traceSize = channel.size();
+		if(traceSize < BinaryTraceFormat.HEADER_SIZE + 1 + 8) {
+			throw BinaryTraceFormat.truncated();
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(8);
+		BinaryTraceFormat.readFully(channel, buffer, traceSize - 8);
+		long indexOffset = buffer.getLong(0);
+		if(indexOffset <= BinaryTraceFormat.HEADER_SIZE || indexOffset > traceSize - 8) {
+			throw BinaryTraceFormat.truncated();
+		}
+		ByteBuffer end = ByteBuffer.allocate(1);
+		BinaryTraceFormat.readFully(channel, end, indexOffset - 1);
+		if(end.get(0) != BinaryTraceFormat.END) {
+			throw BinaryTraceFormat.truncated();
+		}
+
+		// not closed, it would close the channel
+		DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(
+				channel.position(indexOffset))));
+		long offset = BinaryTraceFormat.HEADER_SIZE;
+		int pathCount = 0;
+		int size = in.readInt();
+		for(int i = 0; i < size; i++) {
+			long key = in.readLong();
+			long entryOffset = in.readLong();
+			int entryPaths = in.readInt();
+			if(key < start) {
+				offset = entryOffset;
+				pathCount = entryPaths;
+			}
+		}
+
+		in.readInt(); // all the paths
+		String [] paths = new String[pathCount];
+		for(int i = 0; i < pathCount; i++) {
+			paths[i] = in.readUTF();
+		}
+
+		channel.position(offset);
+		return paths;
+	}
+
+}
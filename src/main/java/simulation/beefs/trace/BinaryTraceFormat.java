@@ -0,0 +1,139 @@
+package simulation.beefs.trace;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ *
+ * Layout of the binary traces written by {@link TraceConverter}.
+ * <br><br>
+ * Both trace types start with a header made of a magic number and a version. After the header, filesystem traces are a
+ * sequence of records that start with an operation code:
+ * <br><br>
+ * PATH &lt;path id:int&gt; &lt;path:utf&gt;<br>
+ * READ &lt;begin:long&gt; &lt;elapsed:long&gt; &lt;path id:int&gt; &lt;bytes transfered:long&gt;<br>
+ * WRITE &lt;begin:long&gt; &lt;elapsed:long&gt; &lt;path id:int&gt; &lt;bytes transfered:long&gt; &lt;file size:long&gt;<br>
+ * CLOSE &lt;begin:long&gt; &lt;path id:int&gt;<br>
+ * UNLINK &lt;begin:long&gt; &lt;path id:int&gt;<br>
+ * END
+ * <br><br>
+ * where times are in microseconds and a PATH record always comes before the first record that refers to its id. The
+ * END record is followed by the index described in {@link BinaryFileSystemTraceIndex}:
+ * <br><br>
+ * &lt;entries:int&gt; (&lt;greatest begin before:long&gt; &lt;offset:long&gt; &lt;paths declared before:int&gt;)*
+ * &lt;paths:int&gt; &lt;path:utf&gt;* &lt;offset of the index:long&gt;
+ * <br><br>
+ * Idleness traces are a sequence of fixed-width records:
+ * <br><br>
+ * &lt;IDLENESS|ACTIVITY|END&gt; &lt;start_timestamp:long&gt; &lt;duration:long&gt;
+ * <br><br>
+ * where times are in seconds and the fields of the END record are zero.
+ * <br><br>
+ * Both trace types have an END record after their last record, so a trace cut short is rejected by the readers instead
+ * of being read as a shorter trace. The converter writes each trace to a temporary file (Ex.: fs-cherne.bin.tmp) and only renames it to
+ * its final name once it is complete.
+ *
+ */
+public class BinaryTraceFormat {
+
+	public static final String SUFFIX = ".bin";
+
+	public static final int FS_MAGIC = 0x42465331; // BFS1
+	public static final int IDLENESS_MAGIC = 0x42494431; // BID1
+	public static final int VERSION = 3;
+
+	// filesystem trace op codes
+	public static final byte PATH = 0;
+	public static final byte READ = 1;
+	public static final byte WRITE = 2;
+	public static final byte CLOSE = 3;
+	public static final byte UNLINK = 4;
+	// also the type of the last idleness trace record
+	public static final byte END = 5;
+
+	// idleness trace record types
+	public static final byte IDLENESS = 0;
+	public static final byte ACTIVITY = 1;
+
+	public static final int HEADER_SIZE = 8;
+	public static final int IDLENESS_RECORD_SIZE = 17;
+
+	public static final String TMP_SUFFIX = ".tmp";
+
+	/**
+	 * @return the file <code>textTrace</code> is converted to
+	 */
+	public static File binaryTrace(File textTrace) {
+		return new File(textTrace.getParentFile(), TraceFiles.traceName(textTrace.getName()) + SUFFIX);
+	}
+
+	/**
+	 * @return the binary counterpart of <code>textTrace</code> if it is up to date with it, or null otherwise
+	 */
+	public static File convertedTrace(File textTrace) {
+		File binaryTrace = binaryTrace(textTrace);
+		return isUpToDate(binaryTrace, textTrace) ? binaryTrace : null;
+	}
+
+	/**
+	 * @return true if <code>binaryTrace</code> was converted, in the current version of the format, after the last
+	 * modification of <code>textTrace</code>
+	 */
+	public static boolean isUpToDate(File binaryTrace, File textTrace) {
+		if(!binaryTrace.exists() || binaryTrace.lastModified() < textTrace.lastModified()) {
+			return false;
+		}
+		try {
+			DataInputStream in = new DataInputStream(new FileInputStream(binaryTrace));
+			try {
+				in.readInt(); // magic
+				return in.readInt() == VERSION;
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	public static boolean isBinaryTrace(String fileName) {
+		return fileName.endsWith(SUFFIX) || fileName.endsWith(SUFFIX + TMP_SUFFIX);
+	}
+
+	public static void checkHeader(DataInputStream in, int expectedMagic) throws IOException {
+		int magic = in.readInt();
+		int version = in.readInt();
+		if(magic != expectedMagic || version != VERSION) {
+			throw new IOException(String.format("Unexpected binary trace header: magic %x, version %d", magic, version));
+		}
+	}
+
+	/**
+	 * Checks the header of the trace read by <code>channel</code> without moving it.
+	 */
+	public static void checkHeader(FileChannel channel, int expectedMagic) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		readFully(channel, header, 0);
+		checkHeader(new DataInputStream(new ByteArrayInputStream(header.array())), expectedMagic);
+	}
+
+	public static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		buffer.clear();
+		while(buffer.hasRemaining()) {
+			if(channel.read(buffer, position + buffer.position()) == -1) {
+				throw new EOFException();
+			}
+		}
+	}
+
+	public static IOException truncated() {
+		return new IOException("Truncated binary trace: it doesn't end with an END record");
+	}
+
+}
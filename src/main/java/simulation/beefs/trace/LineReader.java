@@ -0,0 +1,105 @@
+package simulation.beefs.trace;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ *
+ * Reads the lines of a trace as raw bytes. The bytes of the current line are kept in a buffer that is reused by the
+ * next line, so nothing is allocated per line and nothing is decoded.
+ *
+ */
+public class LineReader {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final InputStream in;
+
+	private final byte [] buffer = new byte[BUFFER_SIZE];
+	private int position = 0;
+	private int limit = 0;
+	private long bufferOffset = 0;
+
+	private byte [] line = new byte[256];
+	private int length = 0;
+	private long lineOffset = 0;
+
+	public LineReader(InputStream in) {
+		this.in = in;
+	}
+
+	/**
+	 * Advances to the next line. Line separators are not part of the line.
+	 * @return false if there are no more lines
+	 */
+	public boolean next() throws IOException {
+		length = 0;
+		lineOffset = bufferOffset + position;
+
+		boolean readSomething = false;
+		while(true) {
+			if(position == limit && !fill()) {
+				return readSomething;
+			}
+			readSomething = true;
+
+			int start = position;
+			while(position < limit && buffer[position] != '\n') {
+				position++;
+			}
+			append(start, position);
+
+			if(position < limit) {
+				position++; // skips the line separator
+				if(length > 0 && line[length - 1] == '\r') {
+					length--;
+				}
+				return true;
+			}
+		}
+	}
+
+	public byte [] line() {
+		return line;
+	}
+
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * @return the offset, in bytes from the beginning of the stream, of the current line
+	 */
+	public long offset() {
+		return lineOffset;
+	}
+
+	public void close() throws IOException {
+		in.close();
+	}
+
+	private boolean fill() throws IOException {
+		bufferOffset += limit;
+		position = 0;
+		limit = 0;
+
+		int read = in.read(buffer, 0, buffer.length);
+		if(read <= 0) {
+			return false;
+		}
+		limit = read;
+		return true;
+	}
+
+	private void append(int from, int to) {
+		int count = to - from;
+		if(length + count > line.length) {
+			byte [] bigger = new byte[Math.max(length + count, line.length * 2)];
+			System.arraycopy(line, 0, bigger, 0, length);
+			line = bigger;
+		}
+		System.arraycopy(buffer, from, line, length, count);
+		length += count;
+	}
+
+}
@@ -0,0 +1,292 @@
+package simulation.beefs.trace;
+
+import static simulation.beefs.trace.BinaryTraceFormat.ACTIVITY;
+import static simulation.beefs.trace.BinaryTraceFormat.CLOSE;
+import static simulation.beefs.trace.BinaryTraceFormat.END;
+import static simulation.beefs.trace.BinaryTraceFormat.FS_MAGIC;
+import static simulation.beefs.trace.BinaryTraceFormat.IDLENESS;
+import static simulation.beefs.trace.BinaryTraceFormat.IDLENESS_MAGIC;
+import static simulation.beefs.trace.BinaryTraceFormat.PATH;
+import static simulation.beefs.trace.BinaryTraceFormat.READ;
+import static simulation.beefs.trace.BinaryTraceFormat.UNLINK;
+import static simulation.beefs.trace.BinaryTraceFormat.VERSION;
+import static simulation.beefs.trace.BinaryTraceFormat.WRITE;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import simulation.beefs.event.filesystem.FileSystemTraceLineParser;
+import simulation.beefs.event.filesystem.SkippedTraceLines;
+import simulation.beefs.model.PathDictionary;
+
+/**
+ *
+ * Converts the text traces of a traces directory to the format described in {@link BinaryTraceFormat}. The converted
+ * traces are written next to the original ones and are picked up by the simulation initializer instead of them.
+ * Compressed text traces (see {@link TraceFiles}) are converted too; the converted trace drops the compression suffix.
+ * <br><br>
+ * Usage: TraceConverter &lt;traces_dir&gt;
+ *
+ */
+public class TraceConverter {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	public static void main(String[] args) throws IOException {
+		if(args.length != 1) {
+			System.err.println("Usage: TraceConverter <traces_dir>");
+			System.exit(1);
+		}
+
+		convertAll(new File(args[0]));
+
+		if(!SkippedTraceLines.unsupportedByOperation().isEmpty() || !SkippedTraceLines.malformedByOperation().isEmpty()) {
+			System.out.print(SkippedTraceLines.summary());
+		}
+	}
+
+	/**
+	 * Converts the text traces of <code>tracesDir</code> that were not converted since their last modification.
+	 */
+	public static void convertAll(File tracesDir) throws IOException {
+		if(!tracesDir.isDirectory()) {
+			throw new IllegalArgumentException(tracesDir + " doesn't exist or is not a directory");
+		}
+
+		for(File trace : tracesDir.listFiles()) {
+			String name = trace.getName();
+			if(BinaryTraceFormat.isBinaryTrace(name) || TraceIndex.isIndex(name)) {
+				continue;
+			}
+
+			File converted = BinaryTraceFormat.binaryTrace(trace);
+			if(BinaryTraceFormat.isUpToDate(converted, trace)) {
+				continue;
+			}
+
+			if(name.startsWith("fs-")) {
+				System.out.println("converting " + name);
+				convertFileSystemTrace(trace, converted);
+			} else if(name.startsWith("idleness-")) {
+				System.out.println("converting " + name);
+				convertIdlenessTrace(trace, converted);
+			}
+		}
+	}
+
+	public static void convertFileSystemTrace(File textTrace, File binaryTrace) throws IOException {
+		convertFileSystemTrace(textTrace, binaryTrace, BinaryFileSystemTraceIndex.INTERVAL);
+	}
+
+	/**
+	 * @param interval the number of records between the entries of the {@link BinaryFileSystemTraceIndex}
+	 */
+	static void convertFileSystemTrace(File textTrace, File binaryTrace, int interval) throws IOException {
+		File tmp = tmpFile(binaryTrace);
+		LineReader reader = new LineReader(TraceFiles.open(textTrace));
+		CountingOutputStream counter = new CountingOutputStream(
+				new BufferedOutputStream(new FileOutputStream(tmp), BUFFER_SIZE));
+		DataOutputStream out = new DataOutputStream(counter);
+		boolean complete = false;
+
+		try {
+			out.writeInt(FS_MAGIC);
+			out.writeInt(VERSION);
+
+			FileSystemTraceLineParser parser = new FileSystemTraceLineParser();
+			Map<Integer, Integer> pathIds = new HashMap<Integer, Integer>();
+			BinaryFileSystemTraceIndex index = new BinaryFileSystemTraceIndex();
+			long greatestBegin = Long.MIN_VALUE;
+			long records = 0;
+			while(reader.next()) {
+				int operation;
+				try {
+					operation = parser.parse(reader.line(), reader.length());
+				} catch(RuntimeException e) {
+					SkippedTraceLines.malformed(parser.operationName(), reader.line(), reader.length());
+					continue;
+				}
+				if(operation == FileSystemTraceLineParser.UNSUPPORTED) {
+					SkippedTraceLines.unsupported(parser.operationName());
+				} else if(operation != FileSystemTraceLineParser.SKIP) {
+					if(records > 0 && records % interval == 0) {
+						index.add(greatestBegin, counter.count(), pathIds.size());
+					}
+					writeFileSystemRecord(parser, pathIds, out);
+					greatestBegin = Math.max(greatestBegin, parser.begin());
+					records++;
+				}
+			}
+			out.writeByte(END);
+			index.write(out, counter.count(), paths(pathIds));
+			complete = true;
+		} finally {
+			reader.close();
+			out.close();
+			if(!complete) {
+				tmp.delete();
+			}
+		}
+		replace(binaryTrace, tmp);
+	}
+
+	/**
+	 * @param pathIds maps the {@link PathDictionary} ids of the paths already written to their ids in the trace
+	 */
+	private static void writeFileSystemRecord(FileSystemTraceLineParser parser, Map<Integer, Integer> pathIds, 
+			DataOutputStream out) throws IOException {
+
+		Integer pathId = pathIds.get(parser.fileId());
+		if(pathId == null) {
+			pathId = pathIds.size();
+			pathIds.put(parser.fileId(), pathId);
+			out.writeByte(PATH);
+			out.writeInt(pathId);
+			out.writeUTF(PathDictionary.path(parser.fileId()));
+		}
+
+		switch(parser.operation()) {
+		case FileSystemTraceLineParser.READ:
+			out.writeByte(READ);
+			out.writeLong(parser.begin());
+			out.writeLong(parser.elapsed());
+			out.writeInt(pathId);
+			out.writeLong(parser.bytesTransfered());
+			break;
+		case FileSystemTraceLineParser.WRITE:
+			out.writeByte(WRITE);
+			out.writeLong(parser.begin());
+			out.writeLong(parser.elapsed());
+			out.writeInt(pathId);
+			out.writeLong(parser.bytesTransfered());
+			out.writeLong(parser.fileSize());
+			break;
+		case FileSystemTraceLineParser.CLOSE:
+			out.writeByte(CLOSE);
+			out.writeLong(parser.begin());
+			out.writeInt(pathId);
+			break;
+		case FileSystemTraceLineParser.UNLINK:
+			out.writeByte(UNLINK);
+			out.writeLong(parser.begin());
+			out.writeInt(pathId);
+			break;
+		}
+	}
+
+	/**
+	 * @return the paths of <code>pathIds</code> by their ids in the trace
+	 */
+	private static String [] paths(Map<Integer, Integer> pathIds) {
+		String [] paths = new String[pathIds.size()];
+		for(Map.Entry<Integer, Integer> pathId : pathIds.entrySet()) {
+			paths[pathId.getValue()] = PathDictionary.path(pathId.getKey());
+		}
+		return paths;
+	}
+
+	public static void convertIdlenessTrace(File textTrace, File binaryTrace) throws IOException {
+		File tmp = tmpFile(binaryTrace);
+		BufferedReader reader = newReader(textTrace);
+		DataOutputStream out = newOutput(tmp);
+		boolean complete = false;
+
+		try {
+			out.writeInt(IDLENESS_MAGIC);
+			out.writeInt(VERSION);
+
+			String traceLine;
+			while((traceLine = reader.readLine()) != null) {
+				String [] tokens = traceLine.split("\\s");
+
+				if(tokens.length != 3) {
+					throw new RuntimeException("Bad formatted line: " + traceLine);
+				}
+
+				byte type;
+				if(tokens[0].equals("idleness")) {
+					type = IDLENESS;
+				} else if(tokens[0].equals("activity")) {
+					type = ACTIVITY;
+				} else {
+					throw new RuntimeException(tokens[0] + " is not recognized as a valid event type.");
+				}
+
+				out.writeByte(type);
+				out.writeLong(Long.parseLong(tokens[1]));
+				out.writeLong(Long.parseLong(tokens[2]));
+			}
+			out.writeByte(END);
+			out.writeLong(0);
+			out.writeLong(0);
+			complete = true;
+		} finally {
+			reader.close();
+			out.close();
+			if(!complete) {
+				tmp.delete();
+			}
+		}
+		replace(binaryTrace, tmp);
+	}
+
+	private static BufferedReader newReader(File trace) throws IOException {
+		return new BufferedReader(new InputStreamReader(TraceFiles.open(trace)), BUFFER_SIZE);
+	}
+
+	private static DataOutputStream newOutput(File trace) throws IOException {
+		return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(trace), BUFFER_SIZE));
+	}
+
+	/**
+	 * Counts the bytes written through it, which gives the offsets of the records for the index.
+	 */
+	private static class CountingOutputStream extends FilterOutputStream {
+		private long count = 0;
+
+		CountingOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		long count() {
+			return count;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(byte [] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			count += len;
+		}
+	}
+
+	private static File tmpFile(File binaryTrace) {
+		return new File(binaryTrace.getPath() + BinaryTraceFormat.TMP_SUFFIX);
+	}
+
+	/**
+	 * Replaces <code>binaryTrace</code> by the complete conversion in <code>tmp</code>.
+	 */
+	private static void replace(File binaryTrace, File tmp) throws IOException {
+		binaryTrace.delete();
+		if(!tmp.renameTo(binaryTrace)) {
+			tmp.delete();
+			throw new IOException("could not rename " + tmp);
+		}
+	}
+
+}
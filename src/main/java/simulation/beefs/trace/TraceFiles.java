@@ -0,0 +1,76 @@
+package simulation.beefs.trace;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipInputStream;
+
+/**
+ *
+ * Opens text traces that may be kept compressed. A trace named fs-cherne can also be stored as fs-cherne.gz (gzip) or
+ * fs-cherne.zip (the first entry of the archive is the trace). Compressed traces are decoded while they are read, so
+ * they never need to be decompressed to disk.
+ *
+ */
+public class TraceFiles {
+
+	public static final String GZIP_SUFFIX = ".gz";
+	public static final String ZIP_SUFFIX = ".zip";
+
+	private static final String [] COMPRESSED_SUFFIXES = { GZIP_SUFFIX, ZIP_SUFFIX };
+
+	// big enough to keep the inflater busy; the readers on top do their own buffering
+	private static final int BUFFER_SIZE = 1 << 18;
+
+	/**
+	 * @return the name of the trace stored in <code>fileName</code>, without the compression suffix
+	 */
+	public static String traceName(String fileName) {
+		for(String suffix : COMPRESSED_SUFFIXES) {
+			if(fileName.endsWith(suffix)) {
+				return fileName.substring(0, fileName.length() - suffix.length());
+			}
+		}
+		return fileName;
+	}
+
+	public static boolean isCompressed(File trace) {
+		return !traceName(trace.getName()).equals(trace.getName());
+	}
+
+	/**
+	 * @return the file that stores the trace <code>traceName</code> in <code>dir</code>, preferring the uncompressed
+	 * one. If there is none, the returned file doesn't exist.
+	 */
+	public static File find(File dir, String traceName) {
+		File trace = new File(dir, traceName);
+		if(!trace.exists()) {
+			for(String suffix : COMPRESSED_SUFFIXES) {
+				File compressed = new File(dir, traceName + suffix);
+				if(compressed.exists()) {
+					return compressed;
+				}
+			}
+		}
+		return trace;
+	}
+
+	public static InputStream open(File trace) throws IOException {
+		String name = trace.getName();
+		if(name.endsWith(GZIP_SUFFIX)) {
+			return new GZIPInputStream(new FileInputStream(trace), BUFFER_SIZE);
+		} else if(name.endsWith(ZIP_SUFFIX)) {
+			ZipInputStream zip = new ZipInputStream(new BufferedInputStream(new FileInputStream(trace), BUFFER_SIZE));
+			if(zip.getNextEntry() == null) {
+				zip.close();
+				throw new IOException(trace + " is an empty archive");
+			}
+			return zip;
+		}
+		return new FileInputStream(trace);
+	}
+
+}
@@ -0,0 +1,194 @@
+package simulation.beefs.trace;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ *
+ * A sparse index of a text trace, kept in a sidecar file next to it (Ex.: fs-cherne.idx). Every {@link #INTERVAL} lines
+ * it records a byte offset of the trace and the greatest key of the lines before that offset. The key of a line is
+ * given by a {@link LineKey}: the begin of the operation in filesystem traces and the end of the interval in idleness
+ * traces. Seeking to the last offset whose key is before the simulation start skips only lines that the trace readers
+ * would skip anyway.
+ * <br><br>
+ * The index is built the first time a trace is opened and rebuilt when the trace changes. Compressed traces can't be
+ * seeked, so they are not indexed.
+ *
+ */
+public class TraceIndex {
+
+	public interface LineKey {
+		long NONE = Long.MIN_VALUE;
+
+		/**
+		 * @return the key of the line, or {@link #NONE} if the line has no key (Ex.: a comment)
+		 */
+		long key(byte [] line, int length);
+	}
+
+	public static final String SUFFIX = ".idx";
+
+	static final int INTERVAL = 4096;
+
+	private static final int MAGIC = 0x42495831; // BIX1
+	private static final int VERSION = 1;
+
+	private long [] keys;
+	private long [] offsets;
+	private int size = 0;
+
+	private TraceIndex(int capacity) {
+		keys = new long[capacity];
+		offsets = new long[capacity];
+	}
+
+	private static final String TMP_SUFFIX = ".tmp";
+
+	public static boolean isIndex(String fileName) {
+		return fileName.endsWith(SUFFIX) || fileName.endsWith(SUFFIX + TMP_SUFFIX);
+	}
+
+	/**
+	 * @return <code>trace</code> opened at the last indexed offset whose lines are all keyed before
+	 * <code>start</code>
+	 */
+	public static InputStream openAt(File trace, long start, LineKey lineKey) throws IOException {
+		if(TraceFiles.isCompressed(trace)) {
+			return TraceFiles.open(trace);
+		}
+		FileInputStream in = new FileInputStream(trace);
+		in.getChannel().position(load(trace, lineKey).offsetBefore(start));
+		return in;
+	}
+
+	/**
+	 * @return the index of <code>trace</code>, building it if there is no up to date one
+	 */
+	public static TraceIndex load(File trace, LineKey lineKey) throws IOException {
+		return load(trace, lineKey, INTERVAL);
+	}
+
+	static TraceIndex load(File trace, LineKey lineKey, int interval) throws IOException {
+		File indexFile = new File(trace.getPath() + SUFFIX);
+		if(indexFile.exists()) {
+			TraceIndex index = read(indexFile, trace, interval);
+			if(index != null) {
+				return index;
+			}
+		}
+
+		TraceIndex index = build(trace, lineKey, interval);
+		try {
+			index.write(indexFile, trace, interval);
+		} catch (IOException e) {
+			System.err.println("Warning: could not write " + indexFile + ": " + e.getMessage());
+		}
+		return index;
+	}
+
+	/**
+	 * @return the offset to read from to find all the lines keyed at or after <code>start</code>
+	 */
+	public long offsetBefore(long start) {
+		// the last entry with a key before start
+		int low = 0;
+		int high = size;
+		while(low < high) {
+			int middle = (low + high) >>> 1;
+			if(keys[middle] < start) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return (low == 0) ? 0 : offsets[low - 1];
+	}
+
+	private static TraceIndex build(File trace, LineKey lineKey, int interval) throws IOException {
+		TraceIndex index = new TraceIndex(1024);
+		LineReader reader = new LineReader(new FileInputStream(trace));
+		try {
+			long greatestKey = LineKey.NONE;
+			long lines = 0;
+			while(reader.next()) {
+				if(lines > 0 && lines % interval == 0) {
+					index.add(greatestKey, reader.offset());
+				}
+				long key = lineKey.key(reader.line(), reader.length());
+				if(key > greatestKey) {
+					greatestKey = key;
+				}
+				lines++;
+			}
+		} finally {
+			reader.close();
+		}
+		return index;
+	}
+
+	private void add(long key, long offset) {
+		if(size == keys.length) {
+			keys = Arrays.copyOf(keys, size * 2);
+			offsets = Arrays.copyOf(offsets, size * 2);
+		}
+		keys[size] = key;
+		offsets[size] = offset;
+		size++;
+	}
+
+	/**
+	 * @return the index stored in <code>indexFile</code>, or null if it is not up to date with <code>trace</code>
+	 */
+	private static TraceIndex read(File indexFile, File trace, int interval) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+		try {
+			if(in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != trace.length() ||
+					in.readLong() != trace.lastModified() || in.readInt() != interval) {
+				return null;
+			}
+			int size = in.readInt();
+			TraceIndex index = new TraceIndex(Math.max(size, 1));
+			for(int i = 0; i < size; i++) {
+				index.add(in.readLong(), in.readLong());
+			}
+			return index;
+		} catch (IOException e) {
+			return null; // truncated or corrupted, it will be rebuilt
+		} finally {
+			in.close();
+		}
+	}
+
+	private void write(File indexFile, File trace, int interval) throws IOException {
+		File tmp = new File(indexFile.getPath() + TMP_SUFFIX);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(trace.length());
+			out.writeLong(trace.lastModified());
+			out.writeInt(interval);
+			out.writeInt(size);
+			for(int i = 0; i < size; i++) {
+				out.writeLong(keys[i]);
+				out.writeLong(offsets[i]);
+			}
+		} finally {
+			out.close();
+		}
+		indexFile.delete();
+		if(!tmp.renameTo(indexFile)) {
+			tmp.delete();
+			throw new IOException("could not rename " + tmp);
+		}
+	}
+
+}
@@ -0,0 +1,26 @@
+package simulation.beefs.util;
+
+import manelsim.Time;
+import manelsim.Time.Unit;
+
+/**
+ *
+ * Conversions between {@link Time} and the primitive microsecond counts the simulation uses internally. {@link Time}
+ * instances are only created where ManelSim needs them.
+ *
+ */
+public final class Micros {
+
+	public static final long PER_SECOND = 1000 * 1000;
+
+	private Micros() { }
+
+	public static long of(Time time) {
+		return time.asMicroseconds();
+	}
+
+	public static Time toTime(long micros) {
+		return (micros == 0) ? Time.GENESIS : new Time(micros, Unit.MICROSECONDS);
+	}
+
+}
@@ -0,0 +1,110 @@
+package simulation.beefs.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *
+ * A SplitMix64 generator that can be split in independent generators. The simulation gives one to each component that
+ * makes random choices (data placement, replication), all split from a single seeded root, so a seeded run makes the
+ * same choices whatever the order in which the components are created, and simulations that share a JVM do not contend
+ * for a shared {@link Random}. Unlike {@link Random}, it is not thread safe: each thread must use its own split.
+ *
+ */
+public class SplitRandom extends Random {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	private static final AtomicLong defaultSeeds = new AtomicLong(mix64(System.nanoTime()));
+
+	private long seed;
+
+	private long gamma;
+
+	/**
+	 * A generator with a seed that differs from the seeds of the other generators created by this constructor.
+	 */
+	public SplitRandom() {
+		this(mix64(defaultSeeds.addAndGet(GOLDEN_GAMMA)));
+	}
+
+	public SplitRandom(long seed) {
+		this(seed, GOLDEN_GAMMA);
+	}
+
+	private SplitRandom(long seed, long gamma) {
+		this.seed = seed;
+		this.gamma = gamma;
+	}
+
+	/**
+	 * @return a new generator, statistically independent of this one, whose values depend only on the current state of
+	 * this one
+	 */
+	public SplitRandom split() {
+		return new SplitRandom(nextLong(), mixGamma(nextSeed()));
+	}
+
+	/**
+	 * Writes the state of this generator, so that a generator restored from it makes the same choices.
+	 */
+	public void checkpoint(DataOutput out) throws IOException {
+		out.writeLong(seed);
+		out.writeLong(gamma);
+	}
+
+	public void restore(DataInput in) throws IOException {
+		seed = in.readLong();
+		gamma = in.readLong();
+	}
+
+	/**
+	 * @return <code>random</code>, if its state can be checkpointed
+	 * @throws IllegalStateException if it is not a {@link SplitRandom}
+	 */
+	public static SplitRandom checkpointable(Random random) {
+		if(!(random instanceof SplitRandom)) {
+			throw new IllegalStateException("the state of " + random.getClass().getName() + " can't be checkpointed");
+		}
+		return (SplitRandom) random;
+	}
+
+	@Override
+	public void setSeed(long seed) {
+		// called by the constructor of Random, before the fields of this class are set
+		this.seed = seed;
+	}
+
+	@Override
+	public long nextLong() {
+		return mix64(nextSeed());
+	}
+
+	@Override
+	protected int next(int bits) {
+		return (int) (mix64(nextSeed()) >>> (64 - bits));
+	}
+
+	private long nextSeed() {
+		return seed += gamma;
+	}
+
+	private static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	private static long mixGamma(long z) {
+		z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+		z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		z = (z ^ (z >>> 33)) | 1L;
+		return (Long.bitCount(z ^ (z >>> 1)) < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+	}
+
+}
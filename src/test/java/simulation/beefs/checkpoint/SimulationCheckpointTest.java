@@ -0,0 +1,273 @@
+package simulation.beefs.checkpoint;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import manelsim.Event;
+import manelsim.EventScheduler;
+import manelsim.EventSource;
+import manelsim.EventSourceMultiplexer;
+import manelsim.Time;
+import manelsim.Time.Unit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import simulation.beefs.event.filesystem.FileSystemTraceEventSource;
+import simulation.beefs.event.machine.UserActivityTraceEventSource;
+import simulation.beefs.model.DataServer;
+import simulation.beefs.model.FileSystemClient;
+import simulation.beefs.model.Machine;
+import simulation.beefs.model.Machine.State;
+import simulation.beefs.model.MetadataServer;
+import simulation.beefs.placement.DataPlacement;
+import simulation.beefs.replication.MigrateReplicas;
+import simulation.beefs.util.Micros;
+import simulation.beefs.util.SplitRandom;
+
+public class SimulationCheckpointTest {
+
+	private static final String [] HOSTS = { "jurupoca", "pepino", "abelhinha" };
+
+	// in seconds, past the end of the simulation
+	private static final String [] IDLENESS = {
+		"idleness\t0\t3600\nactivity\t3600\t600\nidleness\t4200\t7200\nactivity\t11400\t100\nidleness\t11500\t10000\n",
+		"idleness\t0\t600\nactivity\t600\t1200\nidleness\t1800\t5400\nactivity\t7200\t10\nidleness\t7210\t9000\n",
+		"activity\t0\t2000\nidleness\t2000\t1000\nactivity\t3000\t3000\nidleness\t6000\t3000\nactivity\t9000\t1000\n" +
+				"idleness\t10000\t9000\n"
+	};
+
+	// in microseconds
+	private static final String [] FS = {
+		"write\t100000000-10\t/j/a\t1024\t1024\nclose\t101000000-1\t/j/a\n" +
+				"write\t1000000000-10\t/j/b\t4096\t4096\nclose\t1001000000-1\t/j/b\n" +
+				"read\t3700000000-10\t/j/a\t512\nwrite\t3800000000-10\t/j/a\t2048\t3072\nclose\t3801000000-1\t/j/a\n" +
+				"read\t4300000000-10\t/p/a\t100\nunlink\t4400000000-1\t/j/b\n" +
+				"write\t4500000000-10\t/j/c\t100\t100\nclose\t4501000000-1\t/j/c\n" +
+				"write\t11420000000-10\t/j/d\t10\t10\nclose\t11421000000-1\t/j/d\nread\t11450000000-10\t/a/x\t10\n",
+		"write\t700000000-10\t/p/a\t1000000\t1000000\nclose\t701000000-1\t/p/a\nread\t1200000000-10\t/j/a\t100\n" +
+				"write\t1700000000-10\t/p/b\t10\t10\nclose\t1701000000-1\t/p/b\nread\t7205000000-10\t/j/c\t10\n" +
+				"write\t7206000000-10\t/p/a\t10\t1000010\nclose\t7207000000-1\t/p/a\n",
+		"write\t50000000-10\t/a/x\t500\t500\nclose\t51000000-1\t/a/x\nread\t3100000000-10\t/p/a\t100\n" +
+				"write\t3200000000-10\t/a/y\t10\t10\nclose\t3201000000-1\t/a/y\n" +
+				"write\t5400000000-10\t/a/z\t10\t10\nclose\t5401000000-1\t/a/z\nread\t5500000000-10\t/j/a\t10\n" +
+				"unlink\t5600000000-1\t/a/y\nwrite\t9100000000-10\t/a/x\t10\t510\nclose\t9101000000-1\t/a/x\n" +
+				"read\t9200000000-10\t/p/b\t5\n"
+	};
+
+	private static final long MIDDLE = 11456 * Micros.PER_SECOND;
+
+	private static final long END = 4 * 60 * 60 * Micros.PER_SECOND;
+
+	/**
+	 * The model of a small simulation of the traces above, built the same way every time.
+	 */
+	private static class Simulation {
+		final List<Machine> machines = new ArrayList<Machine>();
+		final List<DataServer> dataServers = new ArrayList<DataServer>();
+		final List<FileSystemClient> clients = new ArrayList<FileSystemClient>();
+		final List<CountingEventSource> sources = new ArrayList<CountingEventSource>();
+		final MetadataServer metadataServer;
+		final SimulationCheckpoint checkpoint;
+
+		Simulation() {
+			for(String host : HOSTS) {
+				Machine machine = new Machine(host, new Time(15*60, Unit.SECONDS), new Time(2500, Unit.MILLISECONDS));
+				machines.add(machine);
+				dataServers.add(new DataServer(machine, 1024L * 1024 * 1024));
+			}
+			Set<DataServer> dataServerSet = new LinkedHashSet<DataServer>(dataServers);
+			metadataServer = new MetadataServer(dataServerSet,
+					DataPlacement.newDataPlacement(DataPlacement.RANDOM, dataServerSet, new SplitRandom(7)),
+					new MigrateReplicas(dataServerSet, true, new SplitRandom(11)), 2, new Time(600, Unit.SECONDS));
+			for(int i = 0; i < HOSTS.length; i++) {
+				clients.add(new FileSystemClient(machines.get(i), metadataServer));
+				sources.add(new CountingEventSource(
+						new UserActivityTraceEventSource(machines.get(i), stream(IDLENESS[i]), Time.GENESIS)));
+			}
+			for(int i = 0; i < HOSTS.length; i++) {
+				sources.add(new CountingEventSource(new FileSystemTraceEventSource(clients.get(i), stream(FS[i]), 0)));
+			}
+			checkpoint = new SimulationCheckpoint(machines, dataServers, metadataServer, clients, sources);
+		}
+
+		EventSourceMultiplexer multiplexer() {
+			return new EventSourceMultiplexer(sources.toArray(new EventSource[sources.size()]));
+		}
+	}
+
+	private File dir;
+
+	@Before
+	public void setup() throws IOException {
+		dir = File.createTempFile("checkpoints", "");
+		dir.delete();
+		dir.mkdir();
+	}
+
+	@After
+	public void teardown() {
+		for(File file : dir.listFiles()) {
+			file.delete();
+		}
+		dir.delete();
+	}
+
+	@Test
+	public void a_resumed_simulation_should_end_like_the_uninterrupted_one() throws IOException {
+		Simulation uninterrupted = new Simulation();
+		EventSourceMultiplexer multiplexer = uninterrupted.multiplexer();
+		multiplexer.addNewEvent(new CheckpointEvent(MIDDLE, END, uninterrupted.checkpoint, dir, null));
+		EventScheduler.setup(Time.GENESIS, Micros.toTime(END), multiplexer);
+		EventScheduler.start();
+		File uninterruptedEnd = uninterrupted.checkpoint.write(dir, END,
+				new TreeMap<String, Long>(EventScheduler.eventsCountByType()));
+		byte [] expected = read(uninterruptedEnd);
+		uninterruptedEnd.delete();
+
+		Simulation resumed = new Simulation();
+		List<Event> pending = resumed.checkpoint.restore(new File(dir, SimulationCheckpoint.fileName(MIDDLE)));
+		assertEquals(MIDDLE, resumed.checkpoint.time());
+		// a read of /a/x waiting for abelhinha to wake up, the replicas update of /j/d and the idleness of jurupoca
+		Set<String> pendingTypes = new TreeSet<String>();
+		for(Event event : pending) {
+			pendingTypes.add(event.getClass().getSimpleName());
+		}
+		assertEquals("[Read, UpdateFileReplicas, UserIdleness]", pendingTypes.toString());
+		multiplexer = resumed.multiplexer();
+		for(Event event : pending) {
+			multiplexer.addNewEvent(event);
+		}
+		EventScheduler.setup(Micros.toTime(MIDDLE), Micros.toTime(END), multiplexer);
+		EventScheduler.start();
+		Map<String, Long> eventsCountByType = new TreeMap<String, Long>(resumed.checkpoint.eventsCountByType());
+		for(Entry<String, Long> entry : EventScheduler.eventsCountByType().entrySet()) {
+			Long count = eventsCountByType.get(entry.getKey());
+			eventsCountByType.put(entry.getKey(), (count == null) ? entry.getValue() : count + entry.getValue());
+		}
+
+		for(int i = 0; i < HOSTS.length; i++) {
+			for(State state : State.values()) {
+				assertEquals(uninterrupted.machines.get(i).stateDuration(state),
+						resumed.machines.get(i).stateDuration(state));
+			}
+			assertEquals(uninterrupted.dataServers.get(i).freeSpace(), resumed.dataServers.get(i).freeSpace());
+		}
+		assertArrayEquals(expected, read(resumed.checkpoint.write(dir, END, eventsCountByType)));
+	}
+
+	@Test
+	public void the_checkpoint_should_be_of_the_same_simulation() throws IOException {
+		Simulation simulation = new Simulation();
+		simulation.multiplexer();
+		File checkpoint = simulation.checkpoint.write(dir, MIDDLE, new TreeMap<String, Long>());
+
+		Simulation other = new Simulation();
+		other.machines.set(1, new Machine("cherne", new Time(15*60, Unit.SECONDS), new Time(2500, Unit.MILLISECONDS)));
+		try {
+			new SimulationCheckpoint(other.machines, other.dataServers, other.metadataServer, other.clients,
+					other.sources).restore(checkpoint);
+		} catch (IOException e) {
+			assertEquals("the checkpoint has pepino where the simulation has cherne", e.getMessage());
+			return;
+		}
+		throw new AssertionError("a checkpoint of another simulation was restored");
+	}
+
+	@Test
+	public void the_latest_checkpoint_should_be_the_one_of_the_latest_time() throws IOException {
+		assertNull(SimulationCheckpoint.latest(dir));
+
+		Simulation simulation = new Simulation();
+		simulation.multiplexer();
+		simulation.checkpoint.write(dir, 900 * Micros.PER_SECOND, new TreeMap<String, Long>());
+		File latest = simulation.checkpoint.write(dir, 86400 * Micros.PER_SECOND, new TreeMap<String, Long>());
+		simulation.checkpoint.write(dir, 3600 * Micros.PER_SECOND, new TreeMap<String, Long>());
+
+		assertEquals(latest, SimulationCheckpoint.latest(dir));
+		assertEquals(3, dir.listFiles().length);
+	}
+
+	@Test
+	public void the_position_should_leave_out_the_event_held_by_the_multiplexer() {
+		CountingEventSource source = new CountingEventSource(events(3));
+		assertEquals(0, source.position());
+		source.getNextEvent();
+		assertEquals(0, source.position());
+		source.getNextEvent();
+		assertEquals(1, source.position());
+		source.getNextEvent();
+		assertNull(source.getNextEvent());
+		assertEquals(3, source.position());
+	}
+
+	@Test
+	public void skipped_events_should_count_as_processed() {
+		CountingEventSource source = new CountingEventSource(events(3));
+		source.skip(2);
+		Event third = source.getNextEvent();
+
+		assertEquals(Micros.toTime(2), third.getScheduledTime());
+		assertEquals(2, source.position());
+	}
+
+	@Test(expected=IllegalStateException.class)
+	public void skipping_past_the_end_should_fail() {
+		new CountingEventSource(events(3)).skip(4);
+	}
+
+	/**
+	 * @return a source of <code>count</code> events, at 0, 1, 2, ... microseconds
+	 */
+	private static EventSource events(final int count) {
+		return new EventSource() {
+			private int next = 0;
+			@Override
+			public Event getNextEvent() {
+				if(next == count) {
+					return null;
+				}
+				return new Event(Micros.toTime(next++)) {
+					@Override
+					public void process() { }
+				};
+			}
+		};
+	}
+
+	private static InputStream stream(String trace) {
+		return new ByteArrayInputStream(trace.getBytes());
+	}
+
+	private static byte [] read(File file) throws IOException {
+		byte [] bytes = new byte[(int) file.length()];
+		InputStream in = new FileInputStream(file);
+		try {
+			int read = 0;
+			while(read < bytes.length) {
+				read += in.read(bytes, read, bytes.length - read);
+			}
+		} finally {
+			in.close();
+		}
+		return bytes;
+	}
+
+}
@@ -0,0 +1,64 @@
+package simulation.beefs.energy;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import manelsim.Time;
+import manelsim.Time.Unit;
+import manelsim.TimeInterval;
+
+import org.junit.Test;
+
+public class DurationsConsumptionModelTest {
+
+	/**
+	 * Only implements the intervals method, as the models written before the durations were accumulated.
+	 */
+	private static class HoursPerState implements EnergyConsumptionModel {
+		@Override
+		public double getConsumption(List<EnergyStateInterval> intervals) {
+			double consumption = 0;
+			for(EnergyStateInterval interval : intervals) {
+				consumption += (interval.getEnergyState().ordinal() + 1) * interval.getInterval().delta().asHours();
+			}
+			return consumption;
+		}
+	}
+
+	private final List<EnergyStateInterval> intervals = new ArrayList<EnergyStateInterval>();
+	private final EnergyStateDurations durations = new EnergyStateDurations();
+
+	private void add(EnergyState state, long beginHour, long endHour) {
+		EnergyStateInterval interval = new EnergyStateInterval(state,
+				new TimeInterval(new Time(beginHour * 3600, Unit.SECONDS), new Time(endHour * 3600, Unit.SECONDS)));
+		intervals.add(interval);
+		durations.add(interval);
+	}
+
+	private void addIntervals() {
+		add(EnergyState.ACTIVE, 0, 2);
+		add(EnergyState.IDLE, 2, 5);
+		add(EnergyState.SLEEPING, 5, 12);
+		add(EnergyState.ACTIVE, 12, 13);
+	}
+
+	@Test
+	public void a_model_of_intervals_should_be_evaluated_from_the_durations() {
+		addIntervals();
+		EnergyConsumptionModel model = new HoursPerState();
+
+		assertEquals(model.getConsumption(intervals), DurationsConsumptionModel.getConsumption(model, durations), 1e-9);
+	}
+
+	@Test
+	public void a_model_of_durations_should_give_the_same_consumption_from_the_intervals() {
+		addIntervals();
+		DurationsConsumptionModel model = new Conservative();
+
+		assertEquals(model.getConsumption(durations), model.getConsumption(intervals), 1e-9);
+		assertEquals(model.getConsumption(durations), DurationsConsumptionModel.getConsumption(model, durations), 1e-9);
+	}
+
+}
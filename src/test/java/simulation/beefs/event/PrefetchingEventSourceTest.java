@@ -0,0 +1,118 @@
+package simulation.beefs.event;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import manelsim.Event;
+import manelsim.EventSource;
+import manelsim.Time;
+import manelsim.Time.Unit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PrefetchingEventSourceTest {
+
+	private ExecutorService pool;
+
+	@Before
+	public void setup() {
+		pool = PrefetchingEventSource.newPool(2);
+	}
+
+	@After
+	public void teardown() {
+		pool.shutdownNow();
+	}
+
+	@Test
+	public void should_deliver_the_events_of_the_wrapped_source_in_order() {
+		List<Event> events = newEvents(10000);
+
+		EventSource prefetching = new PrefetchingEventSource(new ListEventSource(events), pool, 16);
+
+		for(Event expected : events) {
+			assertSame(expected, prefetching.getNextEvent());
+		}
+		assertNull(prefetching.getNextEvent());
+		assertNull(prefetching.getNextEvent());
+	}
+
+	@Test
+	public void more_sources_than_threads_should_all_be_served() {
+		List<List<Event>> allEvents = new ArrayList<List<Event>>();
+		List<EventSource> sources = new ArrayList<EventSource>();
+		for(int i = 0; i < 8; i++) {
+			List<Event> events = newEvents(1000);
+			allEvents.add(events);
+			sources.add(new PrefetchingEventSource(new ListEventSource(events), pool, 4));
+		}
+
+		// interleaves the sources like the multiplexer does
+		for(int event = 0; event < 1000; event++) {
+			for(int source = 0; source < sources.size(); source++) {
+				assertSame(allEvents.get(source).get(event), sources.get(source).getNextEvent());
+			}
+		}
+		for(EventSource source : sources) {
+			assertNull(source.getNextEvent());
+		}
+	}
+
+	@Test
+	public void failures_of_the_wrapped_source_should_reach_the_consumer() {
+		final List<Event> events = newEvents(3);
+		EventSource failing = new EventSource() {
+			private int count = 0;
+			@Override
+			public Event getNextEvent() {
+				if(count == events.size()) {
+					throw new IllegalStateException("bad trace");
+				}
+				return events.get(count++);
+			}
+		};
+
+		EventSource prefetching = new PrefetchingEventSource(failing, pool, 2);
+		for(Event expected : events) {
+			assertSame(expected, prefetching.getNextEvent());
+		}
+		try {
+			prefetching.getNextEvent();
+			fail();
+		} catch(RuntimeException e) {
+			assertEquals(IllegalStateException.class, e.getCause().getClass());
+		}
+	}
+
+	private static List<Event> newEvents(int count) {
+		List<Event> events = new ArrayList<Event>();
+		for(int i = 0; i < count; i++) {
+			events.add(new Event(new Time(i, Unit.SECONDS)) {
+				@Override
+				public void process() { }
+			});
+		}
+		return events;
+	}
+
+	private static class ListEventSource implements EventSource {
+		private final List<Event> events;
+		private int next = 0;
+		public ListEventSource(List<Event> events) {
+			this.events = events;
+		}
+		@Override
+		public Event getNextEvent() {
+			return (next < events.size()) ? events.get(next++) : null;
+		}
+	}
+
+}
@@ -2,6 +2,7 @@ package simulation.beefs.event.filesystem;
 
 import static org.junit.Assert.assertEquals;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.lang.reflect.Field;
 import java.util.HashSet;
@@ -19,6 +20,7 @@ import simulation.beefs.model.DataServer;
 import simulation.beefs.model.FileSystemClient;
 import simulation.beefs.model.Machine;
 import simulation.beefs.model.MetadataServer;
+import simulation.beefs.model.PathDictionary;
 import simulation.beefs.placement.DataPlacement;
 import simulation.beefs.replication.NeverMigrateReplicas;
 import simulation.beefs.replication.Replicator;
@@ -58,6 +60,49 @@ public class FileSystemTraceEventSourceTest {
 		assertEquals(10, eventCount);
 	}
 	
+	@Test
+	public void long_runs_of_skipped_lines_should_be_counted_by_operation() {
+		SkippedTraceLines.reset();
+		StringBuilder trace = new StringBuilder("read\t10-5\t/home/patrick/teste.txt\t1024\n");
+		for(int i = 0; i < 200000; i++) {
+			trace.append((i % 2 == 0) ? "open\t11-1\t/home/patrick/teste.txt\n" : "stat\t11-1\t/home/patrick\n");
+		}
+		trace.append("read\t12-x\t/home/patrick/teste.txt\t1024\n");
+		trace.append("close\t13-1\t/home/patrick/teste.txt\n");
+		EventSource eventSource = new FileSystemTraceEventSource(client, new ByteArrayInputStream(trace.toString().getBytes()));
+		
+		int eventCount = 0;
+		while(eventSource.getNextEvent() != null) {
+			eventCount++;
+		}
+		
+		assertEquals(2, eventCount);
+		assertEquals(Long.valueOf(100000), SkippedTraceLines.unsupportedByOperation().get("open"));
+		assertEquals(Long.valueOf(100000), SkippedTraceLines.unsupportedByOperation().get("stat"));
+		assertEquals(Long.valueOf(1), SkippedTraceLines.malformedByOperation().get("read"));
+		assertEquals("Skipped trace lines\tunsupported\tbad format\nopen\t100000\t0\nread\t0\t1\nstat\t100000\t0\n", 
+				SkippedTraceLines.summary());
+	}
+	
+	@Test
+	public void numbers_out_of_the_long_range_should_be_counted_as_malformed() {
+		SkippedTraceLines.reset();
+		String trace = "read\t10-5\t/home/patrick/teste.txt\t1024\n" +
+				"read\t11-5\t/home/patrick/teste.txt\t92233720368547758070\n" +
+				"write\t9223372036854775808-1\t/home/patrick/teste.txt\t10\t10\n" +
+				"close\t13-1\t/home/patrick/teste.txt\n";
+		EventSource eventSource = new FileSystemTraceEventSource(client, new ByteArrayInputStream(trace.getBytes()));
+		
+		int eventCount = 0;
+		while(eventSource.getNextEvent() != null) {
+			eventCount++;
+		}
+		
+		assertEquals(2, eventCount);
+		assertEquals(Long.valueOf(1), SkippedTraceLines.malformedByOperation().get("read"));
+		assertEquals(Long.valueOf(1), SkippedTraceLines.malformedByOperation().get("write"));
+	}
+	
 	@Test
 	public void testEventsAttributesAreOk() throws Exception {
 		InputStream eventsStream = 
@@ -73,10 +118,10 @@ public class FileSystemTraceEventSourceTest {
 					assertEquals(15L, field.get(event));
 				} else if(field.getName().equals("fileSize")) {
 					assertEquals(1024L, field.get(event));
-				} else if(field.getName().equals("filePath")) {
-					assertEquals("/home/patrick/mestrado/dissertacao.txt", field.get(event));
+				} else if(field.getName().equals("fileId")) {
+					assertEquals("/home/patrick/mestrado/dissertacao.txt", PathDictionary.path((Integer) field.get(event)));
 				} else if(field.getName().equals("duration")) {
-					assertEquals(new Time(1587, Unit.MICROSECONDS), field.get(event));
+					assertEquals(1587L, field.get(event));
 				} else if(field.getName().equals("client")) {
 					assertEquals(client, field.get(event));
 				}
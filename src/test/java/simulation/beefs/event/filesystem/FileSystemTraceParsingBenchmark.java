@@ -0,0 +1,236 @@
+package simulation.beefs.event.filesystem;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.StringTokenizer;
+
+import manelsim.Event;
+import manelsim.Time;
+import manelsim.Time.Unit;
+import simulation.beefs.model.FileSystemClient;
+import simulation.beefs.model.Machine;
+
+/**
+ *
+ * Compares the throughput of {@link FileSystemTraceEventSource} with the StringTokenizer based parsing it replaced. It
+ * is not a test, it's meant to be run by hand:
+ * <br><br>
+ * FileSystemTraceParsingBenchmark [&lt;lines&gt; [&lt;rounds&gt;]]
+ *
+ */
+public class FileSystemTraceParsingBenchmark {
+
+	private static final FileSystemClient CLIENT = 
+		new FileSystemClient(new Machine("benchmark", Time.GENESIS, Time.GENESIS), null);
+
+	public static void main(String[] args) throws IOException {
+		int lines = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+		byte [] trace = syntheticTrace(lines);
+		System.out.println(lines + " lines, " + trace.length + " bytes");
+
+		for(int round = 0; round < rounds; round++) {
+			long tokenizer = time(new TokenizerParsing(), trace, lines);
+			long lineParser = time(new LineParserParsing(), trace, lines);
+			System.out.println(String.format("round %d: tokenizer %d ns/line, line parser %d ns/line", 
+					round, tokenizer, lineParser));
+		}
+	}
+
+	private static long time(Parsing parsing, byte [] trace, int lines) throws IOException {
+		long start = System.nanoTime();
+		int events = parsing.parse(trace);
+		long elapsed = System.nanoTime() - start;
+		if(events != lines) {
+			throw new IllegalStateException(events + " events parsed out of " + lines + " lines");
+		}
+		return elapsed / lines;
+	}
+
+	private static byte [] syntheticTrace(int lines) {
+		StringBuilder trace = new StringBuilder();
+		long now = 1000000;
+		for(int i = 0; i < lines; i++) {
+			String path = "/home/user" + (i % 50) + "/dir " + (i % 7) + "/file" + (i % 1000) + ".txt";
+			switch(i % 4) {
+			case 0:
+				trace.append("read\t").append(now).append("-12\t").append(path).append("\t4096\n");
+				break;
+			case 1:
+				trace.append("write\t").append(now).append("-31\t").append(path).append("\t1024\t8192\n");
+				break;
+			case 2:
+				trace.append("close\t").append(now).append("-2\t").append(path.replace(' ', '_')).append("\n");
+				break;
+			default:
+				trace.append("unlink\t").append(now).append("-5\t").append(path.replace(' ', '_')).append("\n");
+			}
+			now += 17;
+		}
+		return trace.toString().getBytes();
+	}
+
+	private interface Parsing {
+		int parse(byte [] trace) throws IOException;
+	}
+
+	private static class LineParserParsing implements Parsing {
+		@Override
+		public int parse(byte [] trace) {
+			FileSystemTraceEventSource source = new FileSystemTraceEventSource(CLIENT, new ByteArrayInputStream(trace));
+			int events = 0;
+			while(source.getNextEvent() != null) {
+				events++;
+			}
+			return events;
+		}
+	}
+
+	/**
+	 * The parsing FileSystemTraceEventSource used to do, copied from it as it was.
+	 */
+	private static class TokenizerParsing implements Parsing {
+		private BufferedReader bufferedReader;
+
+		@Override
+		public int parse(byte [] trace) {
+			bufferedReader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(trace)));
+			int events = 0;
+			while(getNextEvent() != null) {
+				events++;
+			}
+			return events;
+		}
+
+		private Event getNextEvent() {
+
+			String traceLine;
+
+			try {
+				traceLine = readNextLine();
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+
+			if (traceLine == null)
+				return null;
+
+			try {
+				StringTokenizer tokenizer = new StringTokenizer(traceLine);
+				String operation = tokenizer.nextToken();
+
+				if (operation.equals("read")) {
+					return parseReadEvent(tokenizer);
+				} else if (operation.equals("write")) {
+					return parseWriteEvent(tokenizer);
+				} else if (operation.equals("close")) {
+					return parseCloseEvent(tokenizer);
+				} else if (operation.equals("unlink")) {
+					return parseUnlinkEvent(tokenizer);
+				} else {
+					return getNextEvent();
+				}
+			} catch(Throwable t ) {
+				System.err.println("Warning: Bad format line: " + traceLine);
+				return getNextEvent();
+			}
+		}
+
+		private String readNextLine() throws IOException {
+
+			String readLine = null;
+
+			while ((readLine = bufferedReader.readLine()) != null) {
+
+				if (!readLine.trim().equals("") && !readLine.startsWith("#")) {
+					return readLine;
+				}
+
+			}
+
+			return readLine;
+		}
+
+		private Unlink parseUnlinkEvent(StringTokenizer tokenizer) {
+			//begin-elapsed   fullpath
+
+			Time time = parseTime(tokenizer.nextToken())[0];
+			String targetPath = tokenizer.nextToken();
+
+			return new Unlink(CLIENT, time, targetPath);
+		}
+
+		private Close parseCloseEvent(StringTokenizer tokenizer) {
+			//begin-elapsed   fullpath
+
+			Time time = parseTime(tokenizer.nextToken())[0];
+			String targetPath = tokenizer.nextToken();
+
+			return new Close(CLIENT, time, targetPath);
+		}
+
+		private final static int EXPECTED_NUM_TOKENS_READ = 3;
+
+		private Read parseReadEvent(StringTokenizer tokenizer) {
+			//begin-elapsed   fullpath        length
+
+			//filePaths can have empty spaces
+			int actualNumTokens = tokenizer.countTokens();
+
+			Time [] timestampAndDuration = parseTime(tokenizer.nextToken());
+			String filePath = parsePath(1 + (actualNumTokens - EXPECTED_NUM_TOKENS_READ), tokenizer);
+			long length = Long.parseLong(tokenizer.nextToken());
+
+			return new Read(CLIENT, timestampAndDuration[0], timestampAndDuration[1], filePath, length);
+		}
+
+		private final static int EXPECTED_NUM_TOKENS_WRITE = 4;
+
+		private Write parseWriteEvent(StringTokenizer tokenizer) {
+			//begin-elapsed   fullpath        bytes_transfered	file_size
+
+			//filePaths can have empty spaces
+			int actualNumTokens = tokenizer.countTokens();
+
+			Time [] timestampAndDuration = parseTime(tokenizer.nextToken());
+
+			String filePath = parsePath(1 + (actualNumTokens - EXPECTED_NUM_TOKENS_WRITE), tokenizer);
+			long bytesTransfered = Long.parseLong(tokenizer.nextToken());
+			long fileSize = Long.parseLong(tokenizer.nextToken());
+
+			return new Write(CLIENT, timestampAndDuration[0], timestampAndDuration[1], filePath,
+					bytesTransfered, fileSize); 
+		}
+
+		private String parsePath(int numTokens, StringTokenizer tokenizer) {
+
+			if (numTokens < 0) {
+				throw new IllegalArgumentException();
+			}
+
+			StringBuffer buffer = new StringBuffer();
+			for (int i = 0; i < numTokens; i++) {
+				buffer.append(tokenizer.nextToken());
+			}
+
+			return buffer.toString();
+		}
+
+		private Time [] parseTime(String traceTimestamp) {
+			Time [] parsedTimes = new Time[2];
+
+			String [] timestampAndDuration = traceTimestamp.split("-");
+
+			parsedTimes[0] = 
+					new Time(Long.parseLong(timestampAndDuration[0]), Unit.MICROSECONDS);
+			parsedTimes[1] =
+					new Time(Long.parseLong(timestampAndDuration[1]), Unit.MICROSECONDS);
+
+			return parsedTimes; 
+		}
+	}
+
+}
@@ -0,0 +1,88 @@
+package simulation.beefs.event.filesystem;
+
+import static org.junit.Assert.assertEquals;
+import static simulation.beefs.util.TraceTestUtils.assertSameEvents;
+import static simulation.beefs.util.TraceTestUtils.copy;
+import static simulation.beefs.util.TraceTestUtils.drain;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import manelsim.Event;
+import manelsim.Time;
+import manelsim.Time.Unit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import simulation.beefs.model.DataServer;
+import simulation.beefs.model.FileSystemClient;
+import simulation.beefs.model.Machine;
+import simulation.beefs.model.MetadataServer;
+import simulation.beefs.placement.DataPlacement;
+import simulation.beefs.replication.NeverMigrateReplicas;
+import simulation.beefs.replication.Replicator;
+import simulation.beefs.util.FakeFileSystemTraceStream;
+
+public class MappedFileSystemTraceEventSourceTest {
+
+	private static final long TERABYTE = 1024L * 1024 * 1024 * 1024;
+
+	private static final Time TO_SLEEP_TIMEOUT = new Time(15*60, Unit.SECONDS);
+	private static final Time TRANSITION_DURATION = new Time(2500, Unit.MILLISECONDS);
+
+	private FileSystemClient client;
+	private File trace;
+
+	@Before
+	public void setup() throws IOException {
+		Machine jurupoca = new Machine("jurupoca", TO_SLEEP_TIMEOUT, TRANSITION_DURATION);
+
+		Set<DataServer> dataServers = new HashSet<DataServer>();
+		dataServers.add(new DataServer(jurupoca, TERABYTE));
+		DataPlacement dataPlacementAlgorithm = DataPlacement.newDataPlacement(DataPlacement.RANDOM, dataServers);
+		Replicator replicator = new NeverMigrateReplicas();
+		MetadataServer metadataServer = new MetadataServer(dataServers, dataPlacementAlgorithm, replicator, 0, Time.GENESIS);
+		client = new FileSystemClient(jurupoca, metadataServer);
+
+		trace = File.createTempFile("fs-", "");
+	}
+
+	@After
+	public void teardown() {
+		trace.delete();
+	}
+
+	@Test
+	public void gives_the_same_events_as_the_stream_reader() throws Exception {
+		copy(new FakeFileSystemTraceStream(1000, "/home/patrick/mestrado/dissertacao.txt", 1587, 15, 1024), trace);
+
+		assertSameEvents(drain(new FileSystemTraceEventSource(client, new FileInputStream(trace))),
+				drain(new MappedFileSystemTraceEventSource(client, trace, Long.MIN_VALUE, 256)));
+	}
+
+	@Test
+	public void handles_paths_with_spaces_comments_and_bad_lines() throws Exception {
+		String lines =
+				"# a comment\n" +
+				"read\t0-1428\t/home/thiagoepdc/My Documents/a file.txt\t16\n" +
+				"\n" +
+				"stat\t5-10\t/home/thiagoepdc/file.txt\n" +
+				"write\t10-84\t/home/thiagoepdc/My Documents/a file.txt\t512\t1024\n" +
+				"write\t11-84\t/home/thiagoepdc/file.txt\n" +
+				"close\t20-22\t/home/thiagoepdc/file.txt\n" +
+				"unlink\t30-2\t/home/thiagoepdc/file.txt"; // no line separator at the end
+		copy(new ByteArrayInputStream(lines.getBytes()), trace);
+
+		List<Event> mappedEvents = drain(new MappedFileSystemTraceEventSource(client, trace, Long.MIN_VALUE, 64));
+
+		assertEquals(4, mappedEvents.size());
+		assertSameEvents(drain(new FileSystemTraceEventSource(client, new FileInputStream(trace))), mappedEvents);
+	}
+}
@@ -0,0 +1,111 @@
+package simulation.beefs.log;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import manelsim.EventScheduler;
+import manelsim.EventSource;
+import manelsim.EventSourceMultiplexer;
+import manelsim.Time;
+
+import org.junit.Test;
+
+import simulation.beefs.log.EventLog.Category;
+import simulation.beefs.model.PathDictionary;
+
+public class EventLogTest {
+
+	private static final String TEXT =
+			"!/home/patrick/teste.txt 1 - 0\n" +
+			"!/home/patrick/teste.txt deleted - 1000000\n" +
+			"%primary write failed in jurupoca (1024 bytes not written) - 2000000\n" +
+			"*could not create file - 3000000\n" +
+			"delayed write\n" +
+			"@all disks full: could not replicate 2048 bytes - 5000000\n" +
+			"#6000000\tjurupoca\t4096\n";
+
+	@Test
+	public void text_sink_should_render_the_prefixed_lines() {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		logAll(new TextEventLogSink(new PrintStream(out)));
+
+		assertEquals(TEXT, out.toString());
+	}
+
+	@Test
+	public void binary_log_should_replay_the_same_records() throws IOException {
+		ByteArrayOutputStream binary = new ByteArrayOutputStream();
+		BinaryEventLogSink binarySink = new BinaryEventLogSink(binary);
+		logAll(binarySink);
+		binarySink.close();
+
+		ByteArrayOutputStream text = new ByteArrayOutputStream();
+		BinaryEventLogSink.replay(new ByteArrayInputStream(binary.toByteArray()), new TextEventLogSink(new PrintStream(text)));
+
+		assertEquals(TEXT, text.toString());
+	}
+
+	@Test
+	public void async_sink_should_keep_the_order_of_the_records() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		AsyncEventLogSink async = new AsyncEventLogSink(new TextEventLogSink(new PrintStream(out)), 3);
+
+		StringBuilder expected = new StringBuilder();
+		for(int i = 0; i < 1000; i++) {
+			logAll(async);
+			expected.append(TEXT);
+		}
+		async.flush();
+		assertEquals(expected.toString(), out.toString());
+
+		logAll(async);
+		expected.append(TEXT);
+		async.close();
+		assertEquals(expected.toString(), out.toString());
+	}
+
+	@Test
+	public void disabled_categories_should_not_reach_the_sink() throws IOException {
+		EventScheduler.setup(Time.GENESIS, Time.THE_FINAL_JUDGMENT, new EventSourceMultiplexer(new EventSource[0]));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		EventLog.setSink(new TextEventLogSink(new PrintStream(out)));
+		try {
+			EventLog.enable(EventLog.parseCategories("space_samples, DISK_FULL"));
+			assertFalse(EventLog.isEnabled(Category.REPLICA_CHANGES));
+
+			int fileId = PathDictionary.id("/home/patrick/teste.txt");
+			EventLog.replicaChange(fileId, 1);
+			EventLog.fileDeleted(fileId);
+			EventLog.delayedWrite();
+			EventLog.replicationFailed(2048);
+			EventLog.spaceSample("jurupoca", 4096);
+
+			assertEquals("@all disks full: could not replicate 2048 bytes - 0\n#0\tjurupoca\t4096\n", out.toString());
+			
+			EventLog.enable(EventLog.parseCategories(""));
+			EventLog.spaceSample("jurupoca", 4096);
+			assertEquals("@all disks full: could not replicate 2048 bytes - 0\n#0\tjurupoca\t4096\n", out.toString());
+		} finally {
+			EventLog.close();
+		}
+		assertTrue(EventLog.isEnabled(Category.REPLICA_CHANGES));
+	}
+
+	private static void logAll(EventLogSink sink) {
+		int fileId = PathDictionary.id("/home/patrick/teste.txt");
+		sink.replicaChange(0, fileId, 1);
+		sink.fileDeleted(1000000, fileId);
+		sink.failedWrite(2000000, "jurupoca", 1024);
+		sink.fileNotCreated(3000000);
+		sink.delayedWrite(4000000);
+		sink.replicationFailed(5000000, 2048);
+		sink.spaceSample(6000000, "jurupoca", 4096);
+	}
+
+}
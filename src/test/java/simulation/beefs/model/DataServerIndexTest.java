@@ -0,0 +1,102 @@
+package simulation.beefs.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import manelsim.EventScheduler;
+import manelsim.EventSource;
+import manelsim.EventSourceMultiplexer;
+import manelsim.Time;
+import manelsim.Time.Unit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class DataServerIndexTest {
+
+	private static final Set<DataServer> NONE = Collections.emptySet();
+
+	private Set<DataServer> dataServers;
+	private DataServer small;
+	private DataServer large;
+	private DataServerIndex index;
+
+	@Before
+	public void setup() {
+		EventScheduler.setup(Time.GENESIS, Time.THE_FINAL_JUDGMENT, new EventSourceMultiplexer(new EventSource[0]));
+
+		small = new DataServer(newMachine("jurupoca"), 1024);
+		large = new DataServer(newMachine("pepino"), 4096);
+		dataServers = new HashSet<DataServer>();
+		dataServers.add(small);
+		dataServers.add(large);
+		index = new DataServerIndex(dataServers);
+	}
+
+	@Test
+	public void only_servers_with_enough_free_space_should_be_chosen() {
+		for(int i = 0; i < 100; i++) {
+			assertSame(large, index.randomWithFreeSpace(2048, NONE));
+			DataServer any = index.randomWithFreeSpace(1024, NONE);
+			assertTrue(any == small || any == large);
+		}
+		assertEquals(2, index.countWithFreeSpace(1024));
+		assertNull(index.randomWithFreeSpace(2048, Collections.singleton(large)));
+		assertSame(small, index.randomWithFreeSpace(0, Collections.singleton(large)));
+
+		large.useDisk(3072);
+		small.cleanSpace(2048);
+		assertSame(small, index.randomWithFreeSpace(2048, NONE));
+		assertEquals(1, index.countWithFreeSpace(2048));
+	}
+
+	@Test
+	public void only_reachable_servers_should_be_chosen_as_reachable() {
+		assertEquals(0, index.countReachableWithFreeSpace(0));
+		assertNull(index.randomReachableWithFreeSpace(0, NONE));
+
+		small.host().setIdle(Time.GENESIS, new Time(10*60, Unit.SECONDS));
+		for(int i = 0; i < 100; i++) {
+			assertSame(small, index.randomReachableWithFreeSpace(0, NONE));
+		}
+		assertNull(index.randomReachableWithFreeSpace(2048, NONE));
+	}
+
+	@Test
+	public void who_is_sleeping_for_longer_should_be_chosen_first() {
+		Time fifteenMinutes = new Time(15*60, Unit.SECONDS);
+		small.host().setIdle(Time.GENESIS, fifteenMinutes.times(2));
+		large.host().setIdle(new Time(5*60, Unit.SECONDS), fifteenMinutes.times(2));
+		assertNull(index.longestUnreachableWithFreeSpace(0));
+
+		EventScheduler.start();
+
+		assertEquals(Machine.State.SLEEPING, large.host().state());
+		assertSame(small, index.longestUnreachableWithFreeSpace(1024));
+		assertSame(large, index.longestUnreachableWithFreeSpace(2048));
+		small.cleanSpace(2048);
+		assertSame(small, index.longestUnreachableWithFreeSpace(2048));
+	}
+
+	@Test
+	public void servers_added_to_the_set_should_be_picked_up() {
+		DataServer huge = new DataServer(newMachine("celacanto"), 8192);
+		dataServers.add(huge);
+		assertSame(huge, index.randomWithFreeSpace(8192, NONE));
+
+		dataServers.remove(large);
+		assertEquals(2, index.countWithFreeSpace(0));
+		assertNull(index.randomWithFreeSpace(0, dataServers));
+	}
+
+	private static Machine newMachine(String hostname) {
+		return new Machine(hostname, new Time(15*60, Unit.SECONDS), new Time(2500, Unit.MILLISECONDS));
+	}
+
+}
@@ -0,0 +1,92 @@
+package simulation.beefs.model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import manelsim.Event;
+import manelsim.EventScheduler;
+import manelsim.EventSource;
+import manelsim.EventSourceMultiplexer;
+import manelsim.Time;
+import manelsim.Time.Unit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import simulation.beefs.event.machine.Sleep;
+import simulation.beefs.model.Machine.State;
+
+public class MachineCheckpointTest {
+
+	private Time TO_SLEEP_TIMEOUT = new Time(15*60, Unit.SECONDS);
+	private Time TRANSITION_DURATION = new Time(2500, Unit.MILLISECONDS);
+	private Time IDLENESS_DURATION = new Time(60*60, Unit.SECONDS);
+
+	private Machine machine;
+
+	@Before
+	public void setup() {
+		machine = new Machine("jurupoca", TO_SLEEP_TIMEOUT, TRANSITION_DURATION);
+		EventScheduler.setup(Time.GENESIS, Time.THE_FINAL_JUDGMENT, new EventSourceMultiplexer(new EventSource[0]));
+
+		machine.setActive(Time.GENESIS, new Time(10*60, Unit.SECONDS));
+		machine.setIdle(new Time(10*60, Unit.SECONDS), IDLENESS_DURATION);
+	}
+
+	@Test
+	public void the_restored_machine_should_have_the_same_state_and_pending_events() throws IOException {
+		Machine restored = new Machine("jurupoca", TO_SLEEP_TIMEOUT, TRANSITION_DURATION);
+		List<Event> events = restored.restore(in(checkpoint(machine)));
+
+		assertEquals(State.IDLE, restored.state());
+		assertEquals(machine.stateDuration(State.ACTIVE), restored.stateDuration(State.ACTIVE));
+		assertEquals(1, restored.stateCount(State.IDLE));
+		assertEquals(1, events.size());
+		assertEquals(Sleep.class, events.get(0).getClass());
+		assertEquals(new Time(25*60, Unit.SECONDS), events.get(0).getScheduledTime());
+		assertArrayEquals(checkpoint(machine), checkpoint(restored));
+	}
+
+	@Test
+	public void the_restored_machine_should_go_on_like_the_checkpointed_one() throws IOException {
+		byte [] checkpoint = checkpoint(machine);
+		EventScheduler.start();
+
+		Machine restored = new Machine("jurupoca", TO_SLEEP_TIMEOUT, TRANSITION_DURATION);
+		EventSourceMultiplexer multiplexer = new EventSourceMultiplexer(new EventSource[0]);
+		for(Event event : restored.restore(in(checkpoint))) {
+			multiplexer.addNewEvent(event);
+		}
+		EventScheduler.setup(new Time(10*60, Unit.SECONDS), Time.THE_FINAL_JUDGMENT, multiplexer);
+		EventScheduler.start();
+
+		assertEquals(State.SLEEPING, restored.state());
+		assertEquals(machine.transitionCount(), restored.transitionCount());
+		assertArrayEquals(checkpoint(machine), checkpoint(restored));
+	}
+
+	@Test(expected=IllegalStateException.class)
+	public void only_a_fresh_machine_should_be_restored() throws IOException {
+		machine.restore(in(checkpoint(machine)));
+	}
+
+	private static byte [] checkpoint(Machine machine) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		machine.checkpoint(out);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	private static DataInputStream in(byte [] checkpoint) {
+		return new DataInputStream(new ByteArrayInputStream(checkpoint));
+	}
+
+}
@@ -0,0 +1,71 @@
+package simulation.beefs.model;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import org.junit.Test;
+
+import simulation.beefs.model.Machine.MachineStateInterval;
+import simulation.beefs.model.Machine.State;
+
+public class MachineTimelineTest {
+
+	private static final State [] CYCLE = {State.IDLE, State.GOING_SLEEP, State.SLEEPING, State.WAKING_UP, State.ACTIVE};
+
+	@Test
+	public void intervals_spanning_several_chunks_should_be_kept() {
+		MachineTimeline timeline = newTimeline(20000);
+		timeline.setEnd(19999, 1);
+
+		assertEquals(20000, timeline.size());
+		List<MachineStateInterval> intervals = timeline.asList();
+		assertEquals(20000, intervals.size());
+		for(int i = 0; i < 19999; i++) {
+			assertEquals(CYCLE[i % CYCLE.length], intervals.get(i).getState());
+			assertEquals(i * 10L, intervals.get(i).begin());
+			assertEquals(i * 10L + 10, intervals.get(i).end());
+		}
+		assertEquals(1, intervals.get(19999).end());
+	}
+
+	@Test(expected=UnsupportedOperationException.class)
+	public void the_list_view_should_be_read_only() {
+		newTimeline(1).asList().add(new MachineStateInterval(State.IDLE, 0, 1));
+	}
+
+	@Test
+	public void dumped_timeline_should_be_read_back() throws IOException {
+		MachineTimeline timeline = newTimeline(10000);
+		File dump = File.createTempFile("timeline-", ".bin");
+		try {
+			timeline.write("jurupoca", dump);
+
+			InputStream in = new FileInputStream(dump);
+			MachineTimeline read = MachineTimeline.read(in);
+			in.close();
+
+			assertEquals(timeline.size(), read.size());
+			for(int i = 0; i < timeline.size(); i++) {
+				assertEquals(timeline.state(i), read.state(i));
+				assertEquals(timeline.begin(i), read.begin(i));
+				assertEquals(timeline.end(i), read.end(i));
+			}
+		} finally {
+			dump.delete();
+		}
+	}
+
+	private static MachineTimeline newTimeline(int size) {
+		MachineTimeline timeline = new MachineTimeline();
+		for(int i = 0; i < size; i++) {
+			timeline.add(CYCLE[i % CYCLE.length], i * 10L, i * 10L + 10);
+		}
+		return timeline;
+	}
+
+}
@@ -2,6 +2,10 @@ package simulation.beefs.model;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+
 import manelsim.EventScheduler;
 import manelsim.EventSource;
 import manelsim.EventSourceMultiplexer;
@@ -12,6 +16,7 @@ import manelsim.TimeInterval;
 import org.junit.Before;
 import org.junit.Test;
 
+import simulation.beefs.model.Machine.MachineStateInterval;
 import simulation.beefs.model.Machine.State;
 
 /**
@@ -119,6 +124,52 @@ public class MachineTransitionsFromSleepingTest {
 		assertTrue(machine.userIdlenessIntervals().contains(expectedInterval));
 	}
 	
+	@Test
+	public void testIntervalQueriesKeepTheOrderOfTheStates() {
+		machine.setActive(TO_SLEEP_TIMEOUT.plus(TEN_MINUTES), TEN_MINUTES);
+		EventScheduler.start();
+		
+		List<TimeInterval> transitions = machine.transitionIntervals();
+		assertEquals(new TimeInterval(TO_SLEEP_TIMEOUT, TO_SLEEP_TIMEOUT.plus(TRANSITION_DURATION)), transitions.get(0));
+		assertEquals(new TimeInterval(TO_SLEEP_TIMEOUT.plus(TEN_MINUTES), 
+				TO_SLEEP_TIMEOUT.plus(TEN_MINUTES).plus(TRANSITION_DURATION)), transitions.get(1));
+		assertEquals(machine.transitionCount(), transitions.size());
+		
+		List<MachineStateInterval> stateIntervals = machine.stateIntervals();
+		assertEquals(5, stateIntervals.size());
+		assertEquals(State.IDLE, stateIntervals.get(0).getState());
+		assertEquals(State.GOING_SLEEP, stateIntervals.get(1).getState());
+		assertEquals(State.SLEEPING, stateIntervals.get(2).getState());
+		assertEquals(State.WAKING_UP, stateIntervals.get(3).getState());
+		assertEquals(State.ACTIVE, stateIntervals.get(4).getState());
+	}
+	
+	@Test
+	public void testStateTotalsWithoutKeepingIntervals() {
+		EventScheduler.setup(Time.GENESIS, Time.THE_FINAL_JUDGMENT, new EventSourceMultiplexer(new EventSource[0]));
+		Machine streaming = new Machine("jurupoca", TO_SLEEP_TIMEOUT, TRANSITION_DURATION, false);
+		streaming.setIdle(Time.GENESIS, TO_SLEEP_TIMEOUT.plus(TEN_MINUTES));
+		EventScheduler.start();
+		
+		streaming.wakeOnLan(TO_SLEEP_TIMEOUT.plus(TRANSITION_DURATION));
+		EventScheduler.start();
+		
+		assertEquals(State.IDLE, streaming.state());
+		assertEquals(2, streaming.transitionCount());
+		assertEquals(1, streaming.stateCount(State.SLEEPING));
+		assertEquals(2, streaming.stateCount(State.IDLE));
+		assertEquals(0, streaming.stateDuration(State.SLEEPING)); // wakeOnLan is fired immediately after the machine sleep
+		assertEquals(TRANSITION_DURATION.times(2).asMicroseconds(), streaming.stateDuration(State.GOING_SLEEP) + 
+				streaming.stateDuration(State.WAKING_UP));
+		assertEquals(TO_SLEEP_TIMEOUT.plus(TEN_MINUTES).minus(TRANSITION_DURATION.times(2)).asMicroseconds(), 
+				streaming.stateDuration(State.IDLE));
+		
+		try {
+			streaming.sleepIntervals();
+			fail();
+		} catch(IllegalStateException e) { }
+	}
+	
 	@Test(expected=IllegalArgumentException.class)
 	public void testNonContiguousTransitionToActive1() { //TimeInterval is after machine's current state interval 
 		machine.setActive(TO_SLEEP_TIMEOUT.plus(TEN_MINUTES.times(2)), TEN_MINUTES);
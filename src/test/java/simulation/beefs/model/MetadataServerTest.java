@@ -0,0 +1,114 @@
+package simulation.beefs.model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import manelsim.Event;
+import manelsim.EventScheduler;
+import manelsim.EventSource;
+import manelsim.EventSourceMultiplexer;
+import manelsim.Time;
+import manelsim.Time.Unit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import simulation.beefs.event.filesystem.UpdateFileReplicas;
+import simulation.beefs.placement.DataPlacement;
+import simulation.beefs.replication.NeverMigrateReplicas;
+
+public class MetadataServerTest {
+
+	private static final long TERABYTE = 1024L * 1024 * 1024 * 1024;
+
+	private Set<DataServer> dataServers;
+	private MetadataServer metadataServer;
+	private FileSystemClient client;
+
+	@Before
+	public void setup() {
+		EventScheduler.setup(Time.GENESIS, Time.THE_FINAL_JUDGMENT, new EventSourceMultiplexer(new EventSource[0]));
+
+		Machine jurupoca = new Machine("jurupoca", new Time(15*60, Unit.SECONDS), new Time(2500, Unit.MILLISECONDS));
+		Machine pepino = new Machine("pepino", new Time(15*60, Unit.SECONDS), new Time(2500, Unit.MILLISECONDS));
+		jurupoca.setIdle(Time.GENESIS, new Time(10*60, Unit.SECONDS));
+		pepino.setIdle(Time.GENESIS, new Time(10*60, Unit.SECONDS));
+		dataServers = new HashSet<DataServer>();
+		dataServers.add(new DataServer(jurupoca, TERABYTE));
+		dataServers.add(new DataServer(pepino, TERABYTE));
+
+		metadataServer = newMetadataServer();
+		client = new FileSystemClient(jurupoca, metadataServer);
+	}
+
+	@Test
+	public void processed_replicas_updates_should_be_forgotten() {
+		int fileId = PathDictionary.id("/home/patrick/teste.txt");
+		ReplicatedFile file = metadataServer.createOrOpen(client, fileId, 0);
+		file.write(1024, 0);
+		assertFalse(file.replicasAreConsistent());
+
+		metadataServer.close(fileId);
+		UpdateFileReplicas first = metadataServer.scheduledUpdateReplicas(fileId);
+		assertNotNull(first);
+
+		metadataServer.close(fileId);
+		assertNotSame(first, metadataServer.scheduledUpdateReplicas(fileId));
+
+		EventScheduler.start();
+
+		assertNull(metadataServer.scheduledUpdateReplicas(fileId));
+	}
+
+	@Test
+	public void the_restored_updates_should_keep_the_files_deleted_after_they_were_scheduled() throws IOException {
+		int deletedId = PathDictionary.id("/home/patrick/apagado.txt");
+		metadataServer.createOrOpen(client, deletedId, 0).write(1024, 0);
+		metadataServer.close(deletedId);
+		metadataServer.delete(deletedId);
+		int liveId = PathDictionary.id("/home/patrick/vivo.txt");
+		metadataServer.createOrOpen(client, liveId, 0).write(2048, 0);
+		metadataServer.close(liveId);
+		byte [] checkpoint = checkpoint(metadataServer);
+
+		MetadataServer restored = newMetadataServer();
+		List<Event> updates = restored.restore(new DataInputStream(new ByteArrayInputStream(checkpoint)));
+
+		assertEquals(2, updates.size());
+		assertArrayEquals(checkpoint, checkpoint(restored));
+		UpdateFileReplicas live = restored.scheduledUpdateReplicas(liveId);
+		assertSame(restored.createOrOpen(client, liveId, 0), live.file());
+		UpdateFileReplicas deleted = restored.scheduledUpdateReplicas(deletedId);
+		assertEquals("/home/patrick/apagado.txt", deleted.file().fullPath());
+		assertEquals(1024, deleted.file().size());
+		assertNotSame(restored.createOrOpen(client, deletedId, 0), deleted.file());
+	}
+
+	private MetadataServer newMetadataServer() {
+		return new MetadataServer(dataServers, DataPlacement.newDataPlacement(DataPlacement.RANDOM, dataServers),
+				new NeverMigrateReplicas(), 1, new Time(15*60, Unit.SECONDS));
+	}
+
+	private static byte [] checkpoint(MetadataServer metadataServer) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		metadataServer.checkpoint(out);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+}
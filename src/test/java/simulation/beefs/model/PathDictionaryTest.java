@@ -0,0 +1,68 @@
+package simulation.beefs.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+public class PathDictionaryTest {
+
+	@Test
+	public void should_give_the_same_id_to_the_same_path() {
+		int id = PathDictionary.id("/home/patrick/dicionario.txt");
+
+		assertEquals(id, PathDictionary.id(new String("/home/patrick/dicionario.txt")));
+		assertEquals("/home/patrick/dicionario.txt", PathDictionary.path(id));
+	}
+
+	@Test
+	public void should_give_different_ids_to_different_paths() {
+		int id1 = PathDictionary.id("/home/patrick/um.txt");
+		int id2 = PathDictionary.id("/home/patrick/dois.txt");
+
+		assertFalse(id1 == id2);
+		assertEquals("/home/patrick/um.txt", PathDictionary.path(id1));
+		assertEquals("/home/patrick/dois.txt", PathDictionary.path(id2));
+	}
+
+	@Test
+	public void concurrent_registrations_should_agree_on_the_ids() throws InterruptedException {
+		final int threads = 4;
+		final int paths = 100000;
+		final int [][] ids = new int[threads][paths];
+		final CountDownLatch start = new CountDownLatch(1);
+
+		Thread [] workers = new Thread[threads];
+		for(int t = 0; t < threads; t++) {
+			final int thread = t;
+			workers[t] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for(int i = 0; i < paths; i++) {
+						ids[thread][i] = PathDictionary.id("/concurrent/" + i);
+					}
+				}
+			};
+			workers[t].start();
+		}
+		start.countDown();
+		for(Thread worker : workers) {
+			worker.join();
+		}
+
+		for(int i = 0; i < paths; i++) {
+			for(int t = 1; t < threads; t++) {
+				assertEquals(ids[0][i], ids[t][i]);
+			}
+			assertEquals("/concurrent/" + i, PathDictionary.path(ids[0][i]));
+		}
+	}
+
+}
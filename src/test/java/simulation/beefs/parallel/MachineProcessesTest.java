@@ -0,0 +1,238 @@
+package simulation.beefs.parallel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import manelsim.Event;
+import manelsim.EventScheduler;
+import manelsim.EventSource;
+import manelsim.EventSourceMultiplexer;
+import manelsim.Time;
+import manelsim.Time.Unit;
+
+import org.junit.Test;
+
+import simulation.beefs.event.MachineDelaybleEvent;
+import simulation.beefs.event.machine.UserActivityTrace;
+import simulation.beefs.event.machine.UserActivityTraceEventSource;
+import simulation.beefs.model.DataServer;
+import simulation.beefs.model.FileReplica;
+import simulation.beefs.model.Machine;
+import simulation.beefs.model.Machine.State;
+import simulation.beefs.model.ReplicatedFile;
+import simulation.beefs.replication.MigrateReplicas;
+import simulation.beefs.replication.Replicator;
+import simulation.beefs.util.Micros;
+import simulation.beefs.util.SplitRandom;
+
+public class MachineProcessesTest {
+
+	private static final String [] TRACES = {
+		"idleness\t0\t3600\nactivity\t3600\t600\nidleness\t4200\t100\nactivity\t4300\t50\nidleness\t4350\t7200\n",
+		"idleness\t0\t600\nactivity\t600\t1200\nidleness\t1800\t5400\nactivity\t7200\t10\nidleness\t7210\t100\n",
+		"activity\t0\t2000\nidleness\t2000\t1000\nactivity\t3000\t3000\nidleness\t6000\t3000\n"
+	};
+
+	private static final long END = 5 * 60 * 60 * Micros.PER_SECOND;
+
+	@Test
+	public void machine_processes_should_end_like_the_sequential_simulation() {
+		List<Machine> sequential = runSequentially();
+
+		List<Machine> parallel = newMachines();
+		MachineProcesses machineProcesses = runProcesses(parallel, 600 * Micros.PER_SECOND);
+
+		assertSameStates(sequential, parallel);
+		assertTrue(parallel.get(0).stateCount(State.SLEEPING) > 0);
+		assertTrue(machineProcesses.eventsCountByType().containsKey("UserIdleness"));
+	}
+
+	@Test
+	public void machines_advanced_to_the_end_at_once_should_end_like_the_sequential_simulation() {
+		List<Machine> sequential = runSequentially();
+		Long userActivityEvents = EventScheduler.eventsCountByType().get("UserActivity");
+
+		List<Machine> machineOnly = newMachines();
+		MachineProcesses machineProcesses = runProcesses(machineOnly, END);
+
+		assertSameStates(sequential, machineOnly);
+		assertEquals(userActivityEvents, machineProcesses.eventsCountByType().get("UserActivity"));
+	}
+
+	@Test
+	public void replication_should_see_the_machines_as_in_the_sequential_simulation() {
+		List<Machine> sequential = newMachines();
+		List<String> sequentialReplicas = new ArrayList<String>();
+		runSequentially(sequential, replications(sequential, sequentialReplicas));
+
+		List<Machine> parallel = newMachines();
+		List<String> parallelReplicas = new ArrayList<String>();
+		runProcesses(parallel, 600 * Micros.PER_SECOND, replications(parallel, parallelReplicas));
+
+		assertEquals(sequentialReplicas, parallelReplicas);
+		assertSameStates(sequential, parallel);
+	}
+
+	@Test
+	public void delayed_events_should_happen_when_they_happen_in_the_sequential_simulation() {
+		List<Machine> sequential = newMachines();
+		List<Long> sequentialTimes = new ArrayList<Long>();
+		runSequentially(sequential, delayables(sequential.get(0), sequentialTimes));
+
+		// the machines are only advanced by the events that touch them
+		List<Machine> parallel = newMachines();
+		List<Long> parallelTimes = new ArrayList<Long>();
+		runProcesses(parallel, END, delayables(parallel.get(0), parallelTimes));
+
+		assertEquals(sequentialTimes, parallelTimes);
+		// the machine woke up at 3600 seconds
+		assertEquals(3702500 * Micros.PER_SECOND / 1000, (long) sequentialTimes.get(1));
+		assertSameStates(sequential, parallel);
+	}
+
+	@Test
+	public void only_the_machines_with_events_due_should_be_brought_up_to_date() {
+		List<Machine> machines = newMachines();
+		final List<String> advanced = new ArrayList<String>();
+		List<MachineProcess> processes = new ArrayList<MachineProcess>();
+		for(int i = 0; i < machines.size(); i++) {
+			processes.add(new MachineProcess(machines.get(i), trace(machines.get(i), TRACES[i])) {
+				@Override
+				public void advanceTo(long time) {
+					advanced.add(machine().name());
+					super.advanceTo(time);
+				}
+			});
+		}
+		MachineProcesses machineProcesses = new MachineProcesses(processes, 1, END, END);
+		machineProcesses.advanceAll(0);
+		advanced.clear();
+
+		// machine0 goes to sleep at 900 seconds, machine1 becomes active at 600 and idle at 1800, machine2 idle at 2000
+		machineProcesses.advanceDue(700 * Micros.PER_SECOND);
+		assertEquals("[machine1]", advanced.toString());
+		assertEquals(Long.valueOf(1), processes.get(1).eventsCountByType().get("UserActivity"));
+
+		advanced.clear();
+		machineProcesses.advanceDue(1000 * Micros.PER_SECOND);
+		assertEquals("[machine0]", advanced.toString());
+		assertTrue(processes.get(0).eventsCountByType().containsKey("Sleep"));
+	}
+
+	private static List<Machine> runSequentially() {
+		List<Machine> sequential = newMachines();
+		runSequentially(sequential, new ArrayList<Event>());
+		return sequential;
+	}
+
+	private static void runSequentially(List<Machine> machines, List<Event> events) {
+		EventSource [] traces = new EventSource[machines.size()];
+		for(int i = 0; i < traces.length; i++) {
+			traces[i] = trace(machines.get(i), TRACES[i]);
+		}
+		EventSourceMultiplexer multiplexer = new EventSourceMultiplexer(traces);
+		for(Event event : events) {
+			multiplexer.addNewEvent(event);
+		}
+		EventScheduler.setup(Time.GENESIS, Micros.toTime(END), multiplexer);
+		EventScheduler.start();
+	}
+
+	private static MachineProcesses runProcesses(List<Machine> machines, long window) {
+		return runProcesses(machines, window, new ArrayList<Event>());
+	}
+
+	private static MachineProcesses runProcesses(List<Machine> machines, long window, List<Event> events) {
+		List<MachineProcess> processes = new ArrayList<MachineProcess>();
+		for(int i = 0; i < machines.size(); i++) {
+			processes.add(new MachineProcess(machines.get(i), trace(machines.get(i), TRACES[i])));
+		}
+		MachineProcesses machineProcesses = new MachineProcesses(processes, 2, window, END);
+		EventSourceMultiplexer multiplexer = new EventSourceMultiplexer(new EventSource[0]);
+		multiplexer.addNewEvent(machineProcesses.firstAdvance(0));
+		for(Event event : events) {
+			multiplexer.addNewEvent(event);
+		}
+		EventScheduler.setup(Time.GENESIS, Micros.toTime(END), multiplexer);
+		EventScheduler.start();
+		return machineProcesses;
+	}
+
+	private static void assertSameStates(List<Machine> expected, List<Machine> actual) {
+		for(int i = 0; i < expected.size(); i++) {
+			for(State state : State.values()) {
+				assertEquals(expected.get(i).stateDuration(state), actual.get(i).stateDuration(state));
+				assertEquals(expected.get(i).stateCount(state), actual.get(i).stateCount(state));
+			}
+			assertEquals(expected.get(i).state(), actual.get(i).state());
+		}
+	}
+
+	/**
+	 * @return events that update the replicas of a file every 1000 seconds, with wake on lan, and add the hosts of
+	 * the new replicas to <code>replicaHosts</code>. They stop before the shortest trace ends.
+	 */
+	private static List<Event> replications(List<Machine> machines, final List<String> replicaHosts) {
+		List<DataServer> dataServers = new ArrayList<DataServer>();
+		for(Machine machine : machines) {
+			dataServers.add(new DataServer(machine, 1L << 40));
+		}
+		final Replicator replicator = new MigrateReplicas(new LinkedHashSet<DataServer>(dataServers), true, 
+				new SplitRandom(7));
+
+		List<Event> replications = new ArrayList<Event>();
+		for(int i = 0; i < 7; i++) {
+			Set<FileReplica> replicas = new LinkedHashSet<FileReplica>();
+			replicas.add(new FileReplica(dataServers.get((i + 1) % dataServers.size()), 1024));
+			final ReplicatedFile file = 
+					new ReplicatedFile("/file" + i, dataServers.get(i % dataServers.size()), 2, replicas);
+			replications.add(new Event(Micros.toTime((i + 1) * 1000 * Micros.PER_SECOND)) {
+				@Override
+				public void process() {
+					replicator.updateReplicas(file);
+					for(FileReplica replica : file.replicas()) {
+						replicaHosts.add(replica.dataServer().host().name());
+					}
+				}
+			});
+		}
+		return replications;
+	}
+
+	/**
+	 * @return delayable events of <code>machine</code> at 1000, 3700 and 4320 seconds that add the times they are
+	 * processed at to <code>times</code>
+	 */
+	private static List<Event> delayables(Machine machine, final List<Long> times) {
+		List<Event> events = new ArrayList<Event>();
+		for(long seconds : new long [] { 1000, 3700, 4320 }) {
+			events.add(new MachineDelaybleEvent(machine, seconds * Micros.PER_SECOND, true) {
+				@Override
+				protected void processOnTime() {
+					assertEquals(scheduledTimeMicros(), Micros.of(EventScheduler.now()));
+					times.add(scheduledTimeMicros());
+				}
+			});
+		}
+		return events;
+	}
+
+	private static List<Machine> newMachines() {
+		List<Machine> machines = new ArrayList<Machine>();
+		for(int i = 0; i < TRACES.length; i++) {
+			machines.add(new Machine("machine" + i, new Time(15*60, Unit.SECONDS), new Time(2500, Unit.MILLISECONDS)));
+		}
+		return machines;
+	}
+
+	private static UserActivityTrace trace(Machine machine, String trace) {
+		return new UserActivityTraceEventSource(machine, new ByteArrayInputStream(trace.getBytes()), Time.GENESIS);
+	}
+
+}
@@ -0,0 +1,87 @@
+package simulation.beefs.placement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import simulation.beefs.util.SplitRandom;
+
+public class DataPlacementUtilTest {
+
+	@Test
+	public void sample_should_pick_distinct_elements_of_the_pool() {
+		List<Integer> pool = new ArrayList<Integer>();
+		for(int i = 0; i < 100; i++) {
+			pool.add(i);
+		}
+		Random random = new Random(42);
+
+		for(int round = 0; round < 100; round++) {
+			assertEquals(5, DataPlacementUtil.sample(pool, 5, random));
+			Set<Integer> sample = new HashSet<Integer>(pool.subList(0, 5));
+			assertEquals(5, sample.size());
+			assertEquals(100, new HashSet<Integer>(pool).size());
+		}
+
+		assertEquals(100, DataPlacementUtil.sample(pool, 1000, random));
+		assertEquals(0, DataPlacementUtil.sample(new ArrayList<Integer>(), 3, random));
+	}
+
+	@Test
+	public void sample_should_be_repeatable_with_the_same_seed() {
+		List<Integer> pool1 = new ArrayList<Integer>();
+		List<Integer> pool2 = new ArrayList<Integer>();
+		for(int i = 0; i < 50; i++) {
+			pool1.add(i);
+			pool2.add(i);
+		}
+
+		DataPlacementUtil.sample(pool1, 10, new Random(7));
+		DataPlacementUtil.sample(pool2, 10, new Random(7));
+		assertEquals(pool1, pool2);
+
+		boolean allPicked = true;
+		int [] picks = new int[50];
+		Random random = new Random(7);
+		for(int round = 0; round < 10000; round++) {
+			DataPlacementUtil.sample(pool1, 1, random);
+			picks[pool1.get(0)]++;
+		}
+		for(int count : picks) {
+			allPicked &= count > 0;
+		}
+		assertTrue(allPicked);
+	}
+
+	@Test
+	public void splits_of_the_same_seed_should_make_the_same_choices() {
+		SplitRandom root1 = new SplitRandom(42);
+		SplitRandom root2 = new SplitRandom(42);
+		SplitRandom placement1 = root1.split();
+		SplitRandom replicator1 = root1.split();
+		SplitRandom placement2 = root2.split();
+		SplitRandom replicator2 = root2.split();
+
+		List<Integer> pool1 = new ArrayList<Integer>();
+		List<Integer> pool2 = new ArrayList<Integer>();
+		for(int i = 0; i < 1000; i++) {
+			pool1.add(i);
+			pool2.add(i);
+		}
+		for(int round = 0; round < 100; round++) {
+			DataPlacementUtil.sample(pool1, 3, placement1);
+			DataPlacementUtil.sample(pool2, 3, placement2);
+			assertEquals(replicator1.nextInt(1000), replicator2.nextInt(1000));
+		}
+		assertEquals(pool1, pool2);
+		assertTrue(placement1.nextLong() != replicator1.nextLong());
+	}
+
+}
@@ -1,5 +1,6 @@
 package simulation.beefs.replication;
 
+import static org.easymock.EasyMock.anyObject;
 import static org.easymock.EasyMock.createMock;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.expectLastCall;
@@ -142,6 +143,10 @@ public class MigrateReplicasTest {
 		expect(machine.state()).andStubReturn(state);
 		expect(machine.lastTransitionTime()).andStubReturn(lastTransition);
 		expect(machine.isReachable()).andStubReturn(reachable);
+		machine.addStateListener((Machine.StateListener) anyObject());
+		expectLastCall().anyTimes();
+		machine.synchronizeAll();
+		expectLastCall().anyTimes();
 		machine.wakeOnLan(Time.GENESIS);
 		replay(machine);
 		
@@ -0,0 +1,74 @@
+package simulation.beefs.sweep;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+
+import manelsim.Time;
+import manelsim.Time.Unit;
+
+import org.junit.Test;
+
+import simulation.beefs.energy.EnergyState;
+import simulation.beefs.energy.EnergyStateDurations;
+import simulation.beefs.event.machine.UserActivityTrace;
+import simulation.beefs.event.machine.UserActivityTraceEventSource;
+import simulation.beefs.model.Machine;
+import simulation.beefs.model.Machine.State;
+import simulation.beefs.parallel.MachineProcess;
+import simulation.beefs.util.Micros;
+
+public class IdlenessProfileTest {
+
+	private static final String [] TRACES = {
+		"idleness\t0\t3600\nactivity\t3600\t600\nidleness\t4200\t100\nactivity\t4300\t50\nidleness\t4350\t7200\n",
+		"activity\t0\t2000\nidleness\t2000\t901\nactivity\t2901\t3000\nidleness\t5901\t902\nactivity\t6803\t10\n"
+	};
+
+	private static final long [] TIMEOUTS = { 0, 60, 100, 899, 900, 3600, 7200, 10000 };
+
+	private static final long TRANSITION_DURATION = 2500 * 1000;
+
+	private static final long END = 100 * 60 * 60 * Micros.PER_SECOND;
+
+	@Test
+	public void the_profile_should_end_like_the_machine_replaying_the_trace() {
+		for(String trace : TRACES) {
+			IdlenessProfile profile = IdlenessProfile.of(trace(null, trace), END);
+			for(long timeout : TIMEOUTS) {
+				Machine machine = new Machine("machine", new Time(timeout, Unit.SECONDS),
+						new Time(TRANSITION_DURATION / 1000, Unit.MILLISECONDS), false);
+				new MachineProcess(machine, trace(machine, trace)).advanceTo(END);
+
+				EnergyStateDurations durations = profile.durations(timeout * Micros.PER_SECOND, TRANSITION_DURATION);
+				assertEquals(machine.stateDuration(State.ACTIVE), durations.duration(EnergyState.ACTIVE));
+				assertEquals(machine.stateDuration(State.IDLE), durations.duration(EnergyState.IDLE));
+				assertEquals(machine.stateDuration(State.SLEEPING), durations.duration(EnergyState.SLEEPING));
+				assertEquals(machine.stateDuration(State.GOING_SLEEP) + machine.stateDuration(State.WAKING_UP),
+						durations.duration(EnergyState.TRANSITIONING));
+				assertEquals(machine.stateCount(State.SLEEPING), durations.count(EnergyState.SLEEPING));
+				assertEquals(machine.transitionCount(), profile.transitionCount(timeout * Micros.PER_SECOND));
+			}
+		}
+	}
+
+	@Test
+	public void timeouts_should_be_listed_or_ranged() {
+		assertArrayEquals(new long [] {60, 120, 300, 600, 900}, seconds(TimeoutSweep.timeouts("60, 120,300:900:300")));
+		assertArrayEquals(new long [] {300}, seconds(TimeoutSweep.timeouts("300:400:300")));
+	}
+
+	private static long [] seconds(long [] micros) {
+		long [] seconds = new long[micros.length];
+		for(int i = 0; i < micros.length; i++) {
+			seconds[i] = micros[i] / Micros.PER_SECOND;
+		}
+		return seconds;
+	}
+
+	private static UserActivityTrace trace(Machine machine, String trace) {
+		return new UserActivityTraceEventSource(machine, new ByteArrayInputStream(trace.getBytes()), Time.GENESIS);
+	}
+
+}
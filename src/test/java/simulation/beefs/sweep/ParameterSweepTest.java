@@ -0,0 +1,193 @@
+package simulation.beefs.sweep;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Scanner;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import simulation.beefs.BeefsEnergySimulationConstants;
+
+public class ParameterSweepTest {
+
+	private File dir;
+
+	@Before
+	public void setup() throws IOException {
+		dir = File.createTempFile("sweep", "");
+		dir.delete();
+		dir.mkdir();
+	}
+
+	@After
+	public void teardown() {
+		delete(dir);
+	}
+
+	@Test
+	public void a_sweep_should_run_every_configuration_and_leave_no_thread_behind() throws Exception {
+		File tracesDir = new File(dir, "traces");
+		tracesDir.mkdir();
+		write(new File(tracesDir, "idleness-jurupoca"), "idleness\t0\t3600\nactivity\t3600\t600\nidleness\t4200\t7200\n");
+		write(new File(tracesDir, "fs-jurupoca"), "write\t1000000-10\t/home/patrick/a\t1024\t1024\n" + 
+				"close\t2000000-1\t/home/patrick/a\nread\t5000000000-10\t/home/patrick/a\t512\n");
+		write(new File(tracesDir, "idleness-pepino"), "activity\t0\t2000\nidleness\t2000\t9400\n");
+		write(new File(tracesDir, "fs-pepino"), "read\t3000000-10\t/home/patrick/a\t512\n");
+
+		Properties base = new Properties();
+		base.setProperty("initializer", "simulation.beefs.BeefsEnergySimulationInitializer");
+		base.setProperty("summarizer", "simulation.beefs.BeefsEnergySimulationSummarizer");
+		base.setProperty("simulation_start", "0");
+		base.setProperty("simulation_end", "10800");
+		base.setProperty(BeefsEnergySimulationConstants.TRACES_DIR, tracesDir.getPath());
+		base.setProperty(BeefsEnergySimulationConstants.PLACEMENT_POLICE, "random");
+		base.setProperty(BeefsEnergySimulationConstants.REPLICATION_LEVEL, "1");
+		base.setProperty(BeefsEnergySimulationConstants.TIME_TO_COHERENCE, "60");
+		base.setProperty(BeefsEnergySimulationConstants.REPLICATOR, "noop");
+		base.setProperty(BeefsEnergySimulationConstants.TRANSITION_DURATION, "2500");
+		base.setProperty("jurupoca" + BeefsEnergySimulationConstants.FREE_SPACE, "1099511627776");
+		base.setProperty("pepino" + BeefsEnergySimulationConstants.FREE_SPACE, "1099511627776");
+		base.setProperty(BeefsEnergySimulationConstants.ENERGY_CONSUMPTION_MODEL, "simulation.beefs.energy.Conservative");
+		base.setProperty(BeefsEnergySimulationConstants.RANDOM_SEED, "7");
+		base.setProperty(BeefsEnergySimulationConstants.PREFETCH_THREADS, "2");
+		File baseFile = new File(dir, "run.conf");
+		store(base, baseFile);
+		File sweepFile = new File(dir, "sweep.conf");
+		store(sweepOf(BeefsEnergySimulationConstants.TO_SLEEP_TIMEOUT, "600,1800,3600"), sweepFile);
+		File outputDir = new File(dir, "output");
+
+		Set<Thread> threadsBefore = new HashSet<Thread>(Thread.getAllStackTraces().keySet());
+		ParameterSweep.main(new String[] {baseFile.getPath(), sweepFile.getPath(), outputDir.getPath(), "2"});
+
+		assertTrue(new File(outputDir, "runs.tsv").isFile());
+		for(int run = 0; run < 3; run++) {
+			String out = read(new File(outputDir, "run-" + run + ".out"));
+			assertTrue(out, out.contains("$jurupoca\t"));
+			assertTrue(out, out.contains("$pepino\t"));
+		}
+		assertFalse(read(new File(outputDir, "run-0.out")).equals(read(new File(outputDir, "run-2.out"))));
+
+		// the threads of the runs must end, or they keep the classes of their runs loaded
+		for(Thread thread : Thread.getAllStackTraces().keySet()) {
+			if(!threadsBefore.contains(thread) && thread.getName().startsWith("trace-prefetch-")) {
+				thread.join(10000);
+				assertFalse(thread.getName() + " is still alive", thread.isAlive());
+			}
+		}
+	}
+
+	@Test
+	public void every_combination_of_the_swept_values_should_run() {
+		Properties sweep = new Properties();
+		sweep.setProperty("to_sleep_timeout", "600, 900,1800");
+		sweep.setProperty("replication_level", "1,2");
+
+		List<Map<String, String>> combinations = ParameterSweep.combinations(sweep);
+
+		assertEquals(6, combinations.size());
+		assertEquals("{replication_level=1, to_sleep_timeout=600}", combinations.get(0).toString());
+		assertEquals("{replication_level=1, to_sleep_timeout=900}", combinations.get(1).toString());
+		assertEquals("{replication_level=2, to_sleep_timeout=1800}", combinations.get(5).toString());
+		assertEquals(1, ParameterSweep.combinations(new Properties()).size());
+	}
+
+	@Test
+	public void runs_should_not_share_output_files() {
+		Properties base = new Properties();
+		base.setProperty("to_sleep_timeout", "900");
+		base.setProperty(BeefsEnergySimulationConstants.EVENT_LOG_FILE, "/tmp/events.log");
+		Map<String, String> combination = ParameterSweep.combinations(sweepOf("to_sleep_timeout", "600")).get(0);
+
+		Properties config = ParameterSweep.configuration(base, combination, new File("sweep"), 3);
+
+		assertEquals("600", config.getProperty("to_sleep_timeout"));
+		assertEquals(new File("sweep", "run-3.events").getPath(), 
+				config.getProperty(BeefsEnergySimulationConstants.EVENT_LOG_FILE));
+		assertNull(config.getProperty(BeefsEnergySimulationConstants.TIMELINES_DIR));
+		assertEquals("900", base.getProperty("to_sleep_timeout"));
+	}
+
+	@Test
+	public void runs_should_not_share_checkpoints() {
+		Properties base = new Properties();
+		base.setProperty(BeefsEnergySimulationConstants.CHECKPOINT_DIR, dir.getPath());
+		base.setProperty(BeefsEnergySimulationConstants.RESUME_FROM, BeefsEnergySimulationConstants.LATEST_CHECKPOINT);
+		Map<String, String> combination = ParameterSweep.combinations(sweepOf("to_sleep_timeout", "600")).get(0);
+
+		File checkpointDir0 = new File(ParameterSweep.configuration(base, combination, dir, 0).getProperty(
+				BeefsEnergySimulationConstants.CHECKPOINT_DIR));
+		File checkpointDir1 = new File(ParameterSweep.configuration(base, combination, dir, 1).getProperty(
+				BeefsEnergySimulationConstants.CHECKPOINT_DIR));
+
+		assertFalse(checkpointDir0.equals(checkpointDir1));
+		assertTrue(checkpointDir0.isDirectory());
+		assertEquals(checkpointDir0, new File(ParameterSweep.configuration(base, combination, dir, 0).getProperty(
+				BeefsEnergySimulationConstants.CHECKPOINT_DIR)));
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void runs_should_not_resume_from_the_same_checkpoint_file() {
+		Properties base = new Properties();
+		base.setProperty(BeefsEnergySimulationConstants.RESUME_FROM, new File(dir, "checkpoint-000000003600.bin").getPath());
+
+		ParameterSweep.configuration(base, ParameterSweep.combinations(new Properties()).get(0), dir, 0);
+	}
+
+	private static void write(File file, String content) throws IOException {
+		OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content.getBytes());
+		} finally {
+			out.close();
+		}
+	}
+
+	private static String read(File file) throws IOException {
+		Scanner scanner = new Scanner(file);
+		try {
+			return scanner.useDelimiter("\\A").hasNext() ? scanner.next() : "";
+		} finally {
+			scanner.close();
+		}
+	}
+
+	private static void store(Properties properties, File file) throws IOException {
+		OutputStream out = new FileOutputStream(file);
+		try {
+			properties.store(out, null);
+		} finally {
+			out.close();
+		}
+	}
+
+	private static void delete(File file) {
+		File [] files = file.listFiles();
+		if(files != null) {
+			for(File child : files) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	private static Properties sweepOf(String key, String values) {
+		Properties sweep = new Properties();
+		sweep.setProperty(key, values);
+		return sweep;
+	}
+
+}
@@ -0,0 +1,227 @@
+package simulation.beefs.trace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static simulation.beefs.util.TraceTestUtils.assertSameEvents;
+import static simulation.beefs.util.TraceTestUtils.copy;
+import static simulation.beefs.util.TraceTestUtils.drain;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import manelsim.Event;
+import manelsim.Time;
+import manelsim.Time.Unit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import simulation.beefs.event.filesystem.BinaryFileSystemTraceEventSource;
+import simulation.beefs.event.filesystem.FileSystemTraceEventSource;
+import simulation.beefs.event.machine.BinaryUserActivityTraceEventSource;
+import simulation.beefs.event.machine.UserActivityTraceEventSource;
+import simulation.beefs.model.DataServer;
+import simulation.beefs.model.FileSystemClient;
+import simulation.beefs.model.Machine;
+import simulation.beefs.model.MetadataServer;
+import simulation.beefs.placement.DataPlacement;
+import simulation.beefs.replication.NeverMigrateReplicas;
+import simulation.beefs.util.FakeFileSystemTraceStream;
+import simulation.beefs.util.FakeUserIdlenessTraceStream;
+
+public class TraceConverterTest {
+
+	private static final long TERABYTE = 1024L * 1024 * 1024 * 1024;
+
+	private static final Time TO_SLEEP_TIMEOUT = new Time(15*60, Unit.SECONDS);
+	private static final Time TRANSITION_DURATION = new Time(2500, Unit.MILLISECONDS);
+
+	private Machine jurupoca;
+	private FileSystemClient client;
+	private File textTrace;
+	private File binaryTrace;
+
+	@Before
+	public void setup() throws IOException {
+		jurupoca = new Machine("jurupoca", TO_SLEEP_TIMEOUT, TRANSITION_DURATION);
+
+		Set<DataServer> dataServers = new HashSet<DataServer>();
+		dataServers.add(new DataServer(jurupoca, TERABYTE));
+		DataPlacement dataPlacementAlgorithm = DataPlacement.newDataPlacement(DataPlacement.RANDOM, dataServers);
+		MetadataServer metadataServer =
+				new MetadataServer(dataServers, dataPlacementAlgorithm, new NeverMigrateReplicas(), 0, Time.GENESIS);
+		client = new FileSystemClient(jurupoca, metadataServer);
+
+		textTrace = File.createTempFile("trace", "");
+		binaryTrace = new File(textTrace.getPath() + BinaryTraceFormat.SUFFIX);
+	}
+
+	@After
+	public void teardown() {
+		textTrace.delete();
+		binaryTrace.delete();
+	}
+
+	@Test
+	public void binary_filesystem_trace_gives_the_same_events_as_the_text_one() throws Exception {
+		copy(new FakeFileSystemTraceStream(100, "/home/patrick/mestrado/dissertacao.txt", 1587, 15, 1024), textTrace);
+		TraceConverter.convertFileSystemTrace(textTrace, binaryTrace);
+
+		List<Event> textEvents =
+				drain(new FileSystemTraceEventSource(client, new FileInputStream(textTrace)));
+		List<Event> binaryEvents =
+				drain(new BinaryFileSystemTraceEventSource(client, new FileInputStream(binaryTrace)));
+
+		assertEquals(100, binaryEvents.size());
+		assertSameEvents(textEvents, binaryEvents);
+	}
+
+	@Test
+	public void binary_idleness_trace_gives_the_same_events_as_the_text_one() throws Exception {
+		copy(new FakeUserIdlenessTraceStream(100), textTrace);
+		TraceConverter.convertIdlenessTrace(textTrace, binaryTrace);
+
+		List<Event> textEvents =
+				drain(new UserActivityTraceEventSource(jurupoca, new FileInputStream(textTrace), Time.GENESIS));
+		List<Event> binaryEvents =
+				drain(new BinaryUserActivityTraceEventSource(jurupoca, new FileInputStream(binaryTrace), Time.GENESIS));
+
+		assertEquals(100, binaryEvents.size());
+		assertSameEvents(textEvents, binaryEvents);
+	}
+
+	@Test
+	public void binary_idleness_trace_seeks_to_the_same_event_the_text_one_advances_to() throws Exception {
+		copy(new FakeUserIdlenessTraceStream(100), textTrace);
+		TraceConverter.convertIdlenessTrace(textTrace, binaryTrace);
+
+		Event middle = drain(new UserActivityTraceEventSource(jurupoca, new FileInputStream(textTrace), Time.GENESIS))
+				.get(50);
+		Time start = middle.getScheduledTime().plus(new Time(1, Unit.SECONDS));
+
+		List<Event> textEvents =
+				drain(new UserActivityTraceEventSource(jurupoca, new FileInputStream(textTrace), start));
+		List<Event> seekedEvents = // a FileInputStream is seeked
+				drain(new BinaryUserActivityTraceEventSource(jurupoca, new FileInputStream(binaryTrace), start));
+		List<Event> skippedEvents = 
+				drain(new BinaryUserActivityTraceEventSource(jurupoca, 
+						new ByteArrayInputStream(readAll(binaryTrace)), start));
+
+		assertEquals(50, textEvents.size());
+		assertEquals(start, textEvents.get(0).getScheduledTime());
+		assertSameEvents(textEvents, seekedEvents);
+		assertSameEvents(textEvents, skippedEvents);
+	}
+
+	@Test
+	public void binary_filesystem_trace_seeks_to_the_same_events_the_text_one_skips_to() throws Exception {
+		StringBuilder trace = new StringBuilder();
+		for(int i = 0; i < 100; i++) { // a new path every 3 records
+			trace.append("read\t").append(1000 + i * 10).append("-5\t/p").append(i / 3).append("\t10\n");
+		}
+		copy(new ByteArrayInputStream(trace.toString().getBytes()), textTrace);
+		TraceConverter.convertFileSystemTrace(textTrace, binaryTrace, 10);
+		long start = 1000 + 55 * 10;
+
+		List<Event> textEvents =
+				drain(new FileSystemTraceEventSource(client, new FileInputStream(textTrace), start));
+		List<Event> seekedEvents = // a FileInputStream is seeked
+				drain(new BinaryFileSystemTraceEventSource(client, new FileInputStream(binaryTrace), start));
+		List<Event> skippedEvents =
+				drain(new BinaryFileSystemTraceEventSource(client, 
+						new ByteArrayInputStream(readAll(binaryTrace)), start));
+
+		assertEquals(45, textEvents.size());
+		assertSameEvents(textEvents, seekedEvents);
+		assertSameEvents(textEvents, skippedEvents);
+	}
+
+	@Test
+	public void binary_filesystem_trace_seek_should_skip_the_records_before_the_start() throws Exception {
+		copy(new FakeFileSystemTraceStream(100, "/home/patrick/mestrado/dissertacao.txt", 1587, 15, 1024), textTrace);
+		TraceConverter.convertFileSystemTrace(textTrace, binaryTrace, 10);
+
+		FileInputStream binaryStream = new FileInputStream(binaryTrace);
+		new BinaryFileSystemTraceEventSource(client, binaryStream, Long.MAX_VALUE);
+
+		assertTrue(binaryStream.getChannel().position() > BinaryTraceFormat.HEADER_SIZE);
+	}
+
+	@Test(expected=RuntimeException.class)
+	public void truncated_binary_filesystem_trace_should_fail_instead_of_ending_early() throws Exception {
+		copy(new FakeFileSystemTraceStream(100, "/home/patrick/mestrado/dissertacao.txt", 1587, 15, 1024), textTrace);
+		TraceConverter.convertFileSystemTrace(textTrace, binaryTrace);
+		byte [] trace = readAll(binaryTrace);
+		long indexOffset = new DataInputStream(new ByteArrayInputStream(trace, trace.length - 8, 8)).readLong();
+
+		// the END record, and the index after it, are cut
+		drain(new BinaryFileSystemTraceEventSource(client, 
+				new ByteArrayInputStream(trace, 0, (int) indexOffset - 1), Long.MIN_VALUE));
+	}
+
+	@Test(expected=RuntimeException.class)
+	public void truncated_binary_filesystem_trace_should_fail_when_seeked() throws Exception {
+		copy(new FakeFileSystemTraceStream(100, "/home/patrick/mestrado/dissertacao.txt", 1587, 15, 1024), textTrace);
+		TraceConverter.convertFileSystemTrace(textTrace, binaryTrace);
+		truncate(binaryTrace, 1);
+
+		new BinaryFileSystemTraceEventSource(client, new FileInputStream(binaryTrace), Long.MIN_VALUE);
+	}
+
+	@Test(expected=RuntimeException.class)
+	public void truncated_binary_idleness_trace_should_fail_instead_of_ending_early() throws Exception {
+		copy(new FakeUserIdlenessTraceStream(100), textTrace);
+		TraceConverter.convertIdlenessTrace(textTrace, binaryTrace);
+		truncate(binaryTrace, BinaryTraceFormat.IDLENESS_RECORD_SIZE);
+
+		drain(new BinaryUserActivityTraceEventSource(jurupoca, new ByteArrayInputStream(readAll(binaryTrace)), 
+				Time.GENESIS));
+	}
+
+	@Test(expected=RuntimeException.class)
+	public void truncated_binary_idleness_trace_should_fail_when_seeked() throws Exception {
+		copy(new FakeUserIdlenessTraceStream(100), textTrace);
+		TraceConverter.convertIdlenessTrace(textTrace, binaryTrace);
+		truncate(binaryTrace, BinaryTraceFormat.IDLENESS_RECORD_SIZE);
+
+		new BinaryUserActivityTraceEventSource(jurupoca, new FileInputStream(binaryTrace), Time.GENESIS);
+	}
+
+	@Test
+	public void a_failed_conversion_should_leave_no_binary_trace() throws Exception {
+		copy(new ByteArrayInputStream("idleness 0 10\nidleness 10\n".getBytes()), textTrace);
+		try {
+			TraceConverter.convertIdlenessTrace(textTrace, binaryTrace);
+		} catch(RuntimeException e) {
+			// the second line is malformed
+		}
+
+		assertFalse(binaryTrace.exists());
+		assertFalse(new File(binaryTrace.getPath() + BinaryTraceFormat.TMP_SUFFIX).exists());
+	}
+
+	private void truncate(File file, int bytes) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(raf.length() - bytes);
+		} finally {
+			raf.close();
+		}
+	}
+
+	private byte [] readAll(File file) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		copy(new FileInputStream(file), out);
+		return out.toByteArray();
+	}
+}
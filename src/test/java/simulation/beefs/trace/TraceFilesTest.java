@@ -0,0 +1,95 @@
+package simulation.beefs.trace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TraceFilesTest {
+
+	private static final String TRACE = "read\t10-5\t/home/patrick/teste.txt\t1024\nclose\t20-1\t/home/patrick/teste.txt\n";
+
+	private File dir;
+
+	@Before
+	public void setup() throws IOException {
+		dir = File.createTempFile("traces", "");
+		dir.delete();
+		dir.mkdir();
+	}
+
+	@After
+	public void teardown() {
+		for(File file : dir.listFiles()) {
+			file.delete();
+		}
+		dir.delete();
+	}
+
+	@Test
+	public void should_strip_the_compression_suffix_from_trace_names() {
+		assertEquals("fs-cherne", TraceFiles.traceName("fs-cherne.gz"));
+		assertEquals("fs-cherne", TraceFiles.traceName("fs-cherne.zip"));
+		assertEquals("fs-cherne", TraceFiles.traceName("fs-cherne"));
+		assertEquals("fs-cherne.bin", TraceFiles.traceName("fs-cherne.bin"));
+	}
+
+	@Test
+	public void should_read_gzip_traces() throws IOException {
+		OutputStream out = new GZIPOutputStream(new FileOutputStream(new File(dir, "fs-cherne.gz")));
+		out.write(TRACE.getBytes());
+		out.close();
+
+		File trace = TraceFiles.find(dir, "fs-cherne");
+		assertTrue(TraceFiles.isCompressed(trace));
+		assertEquals(TRACE, read(TraceFiles.open(trace)));
+	}
+
+	@Test
+	public void should_read_the_first_entry_of_zip_traces() throws IOException {
+		ZipOutputStream out = new ZipOutputStream(new FileOutputStream(new File(dir, "fs-cherne.zip")));
+		out.putNextEntry(new ZipEntry("fs-cherne"));
+		out.write(TRACE.getBytes());
+		out.closeEntry();
+		out.close();
+
+		assertEquals(TRACE, read(TraceFiles.open(TraceFiles.find(dir, "fs-cherne"))));
+	}
+
+	@Test
+	public void should_prefer_the_uncompressed_trace() throws IOException {
+		new File(dir, "fs-cherne.gz").createNewFile();
+		OutputStream out = new FileOutputStream(new File(dir, "fs-cherne"));
+		out.write(TRACE.getBytes());
+		out.close();
+
+		File trace = TraceFiles.find(dir, "fs-cherne");
+		assertFalse(TraceFiles.isCompressed(trace));
+		assertEquals(TRACE, read(TraceFiles.open(trace)));
+	}
+
+	private static String read(InputStream in) throws IOException {
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		byte [] buffer = new byte[1024];
+		int read;
+		while((read = in.read(buffer)) != -1) {
+			content.write(buffer, 0, read);
+		}
+		in.close();
+		return content.toString();
+	}
+
+}
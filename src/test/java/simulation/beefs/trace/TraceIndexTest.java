@@ -0,0 +1,120 @@
+package simulation.beefs.trace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static simulation.beefs.util.TraceTestUtils.drain;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import manelsim.Event;
+import manelsim.Time;
+import manelsim.Time.Unit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import simulation.beefs.event.filesystem.FileSystemTraceEventSource;
+import simulation.beefs.event.machine.UserActivityTraceEventSource;
+import simulation.beefs.model.DataServer;
+import simulation.beefs.model.FileSystemClient;
+import simulation.beefs.model.Machine;
+import simulation.beefs.model.MetadataServer;
+import simulation.beefs.placement.DataPlacement;
+import simulation.beefs.replication.NeverMigrateReplicas;
+
+public class TraceIndexTest {
+
+	private Machine jurupoca;
+	private FileSystemClient client;
+	private File trace;
+
+	@Before
+	public void setup() throws IOException {
+		jurupoca = new Machine("jurupoca", new Time(15*60, Unit.SECONDS), new Time(2500, Unit.MILLISECONDS));
+
+		Set<DataServer> dataServers = new HashSet<DataServer>();
+		dataServers.add(new DataServer(jurupoca, Long.MAX_VALUE));
+		DataPlacement dataPlacementAlgorithm = DataPlacement.newDataPlacement(DataPlacement.RANDOM, dataServers);
+		MetadataServer metadataServer =
+				new MetadataServer(dataServers, dataPlacementAlgorithm, new NeverMigrateReplicas(), 0, Time.GENESIS);
+		client = new FileSystemClient(jurupoca, metadataServer);
+
+		trace = File.createTempFile("fs-", "");
+	}
+
+	@After
+	public void teardown() {
+		trace.delete();
+		new File(trace.getPath() + TraceIndex.SUFFIX).delete();
+	}
+
+	@Test
+	public void fs_trace_read_from_the_indexed_offset_gives_the_events_after_the_start() throws IOException {
+		StringBuilder content = new StringBuilder("# a comment\n");
+		for(int i = 0; i < 10000; i++) {
+			content.append("read\t" + (i * 10) + "-5\t/home/patrick/file" + (i % 10) + ".txt\t1024\n");
+		}
+		write(content.toString());
+
+		long start = 51235;
+		InputStream indexed = TraceIndex.openAt(trace, start, FileSystemTraceEventSource.INDEX_KEY);
+		assertTrue(((FileInputStream) indexed).getChannel().position() > 0);
+
+		List<Event> events = drain(new FileSystemTraceEventSource(client, indexed, start));
+		List<Event> allEvents = drain(new FileSystemTraceEventSource(client, new FileInputStream(trace)));
+
+		assertEquals(10000 - 5124, events.size());
+		assertEquals(allEvents.subList(5124, 10000), events);
+		assertTrue(new File(trace.getPath() + TraceIndex.SUFFIX).exists());
+	}
+
+	@Test
+	public void idleness_trace_read_from_the_indexed_offset_gives_the_same_events() throws IOException {
+		StringBuilder content = new StringBuilder();
+		for(int i = 0; i < 10000; i++) {
+			content.append((i % 2 == 0) ? "idleness" : "activity").append("\t" + (i * 100) + "\t100\n");
+		}
+		write(content.toString());
+
+		Time start = new Time(612345, Unit.SECONDS);
+		InputStream indexed =
+				TraceIndex.openAt(trace, start.asMicroseconds(), UserActivityTraceEventSource.INDEX_KEY);
+		assertTrue(((FileInputStream) indexed).getChannel().position() > 0);
+
+		List<Event> events = drain(new UserActivityTraceEventSource(jurupoca, indexed, start));
+		List<Event> expected = drain(new UserActivityTraceEventSource(jurupoca, new FileInputStream(trace), start));
+
+		assertEquals(10000 - 6123, events.size());
+		assertEquals(expected, events);
+		assertEquals(start, events.get(0).getScheduledTime());
+	}
+
+	@Test
+	public void stale_index_should_be_rebuilt() throws IOException {
+		write("read\t10-5\t/a\t1\nread\t20-5\t/a\t1\nread\t30-5\t/a\t1\nread\t40-5\t/a\t1\n");
+		assertEquals(15 * 2, TraceIndex.load(trace, FileSystemTraceEventSource.INDEX_KEY, 2).offsetBefore(35));
+
+		write("read\t10-5\t/a\t1\nread\t20-5\t/a\t1\nread\t30-5\t/ab\t1\nread\t40-5\t/a\t1\n# comment\n");
+		trace.setLastModified(trace.lastModified() + 1000);
+		TraceIndex rebuilt = TraceIndex.load(trace, FileSystemTraceEventSource.INDEX_KEY, 2);
+		assertEquals(15 * 2, rebuilt.offsetBefore(35));
+		assertEquals(15 * 2 + 16 + 15, rebuilt.offsetBefore(45));
+		assertEquals(0, rebuilt.offsetBefore(20));
+	}
+
+	private void write(String content) throws IOException {
+		OutputStream out = new FileOutputStream(trace);
+		out.write(content.getBytes());
+		out.close();
+	}
+
+}
@@ -0,0 +1,67 @@
+package simulation.beefs.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+import manelsim.Event;
+import manelsim.EventSource;
+
+/**
+ * Helpers of the tests that read the same trace in different ways and compare the events.
+ */
+public class TraceTestUtils {
+
+	private TraceTestUtils() { }
+
+	public static List<Event> drain(EventSource eventSource) {
+		List<Event> events = new ArrayList<Event>();
+		Event event;
+		while((event = eventSource.getNextEvent()) != null) {
+			events.add(event);
+		}
+		return events;
+	}
+
+	/**
+	 * Asserts that the events are of the same classes, at the same times and have equal fields.
+	 */
+	public static void assertSameEvents(List<Event> expected, List<Event> actual) throws Exception {
+		assertEquals(expected.size(), actual.size());
+		for(int i = 0; i < expected.size(); i++) {
+			Event expectedEvent = expected.get(i);
+			Event actualEvent = actual.get(i);
+
+			assertEquals(expectedEvent.getClass(), actualEvent.getClass());
+			assertEquals(expectedEvent.getScheduledTime(), actualEvent.getScheduledTime());
+			for(Field field : expectedEvent.getClass().getDeclaredFields()) {
+				field.setAccessible(true);
+				assertEquals(field.get(expectedEvent), field.get(actualEvent));
+			}
+		}
+	}
+
+	public static void copy(InputStream in, File file) throws IOException {
+		copy(in, new FileOutputStream(file));
+	}
+
+	/**
+	 * Copies <code>in</code> to <code>out</code> and closes <code>out</code>.
+	 */
+	public static void copy(InputStream in, OutputStream out) throws IOException {
+		byte [] buffer = new byte[4096];
+		int read;
+		while((read = in.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+		}
+		out.close();
+	}
+
+}